@@ -3,7 +3,7 @@
  */
 package snap.data;
 import java.util.*;
-import snap.util.ListUtils;
+import snap.util.CSVReader;
 
 /**
  * This class provides functionality to import a list of connected maps.
@@ -19,6 +19,12 @@ public class BulkImporter {
     // List of created rows
     List <Row>        _createdRows = new ArrayList();
     
+    // Map of provided maps to created rows
+    Map <Map,Row>     _mapRows = new IdentityHashMap();
+    
+    // The number of rows created from CSV records before they are saved
+    static final int  CSV_BATCH_SIZE = 10000;
+    
 /**
  * Creates a new BulkImporter with given data site.
  */
@@ -39,6 +45,32 @@ public void bulkImport(Map <String, List<Map>> theMaps) throws Exception
     _site.flush();
 }
 
+/**
+ * Bulk import of CSV source (File, InputStream, bytes or CSV String) into rows for given entity name. Records are
+ * streamed from reader (matched to entity properties by header row names) and rows are saved in batches, so the
+ * source is never held in memory as a whole. If reader is null, a default reader that reads format is used.
+ * Returns the number of rows imported.
+ */
+public int bulkImportCSV(String anEntityName, Object aSource, CSVReader aReader) throws Exception
+{
+    // Get entity and reader (property types come from entity, so don't infer them from records)
+    Entity entity = getSite().getEntity(anEntityName);
+    CSVReader reader = aReader;
+    if(reader==null) { reader = new CSVReader(); reader.setTypeSampleCount(0); }
+    
+    // Read records and create rows, saving rows in batches
+    int count[] = new int[1];
+    reader.readMaps(aSource, anEntityName, aReader==null, map -> {
+        createRow(entity, map); count[0]++;
+        if(_providedMaps.size()>=CSV_BATCH_SIZE) saveRows();
+    });
+    
+    // Save remaining rows, flush site and return count
+    saveRows();
+    _site.flush();
+    return count[0];
+}
+
 /**
  * Returns importer data site.
  */
@@ -59,8 +91,7 @@ public Row createRow(String anEntityName, Map aMap)
 public Row createRow(Entity anEntity, Map aMap)
 {
     // Look for previously created row for provided object
-    int index = ListUtils.indexOfId(_providedMaps, aMap);
-    Row row = index>=0? _createdRows.get(index) : null;
+    Row row = _mapRows.get(aMap);
     if(row!=null)
         return row;
     
@@ -68,6 +99,7 @@ public Row createRow(Entity anEntity, Map aMap)
     row = getSite().createRow(anEntity, null);
     _providedMaps.add(aMap);
     _createdRows.add(row);
+    _mapRows.put(aMap, row);
     return row;
 }
 
@@ -128,6 +160,7 @@ public void saveRows()
     // Clear map/row lists
     _providedMaps.clear();
     _createdRows.clear();
+    _mapRows.clear();
 }
 
 }
\ No newline at end of file
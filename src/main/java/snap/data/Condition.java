@@ -2,7 +2,9 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.data;
+import java.math.BigDecimal;
 import java.util.*;
+import java.util.function.Predicate;
 import snap.util.*;
 
 /**
@@ -257,6 +259,150 @@ public boolean getValue(Entity anEntity, Object anObj)
     }
 }
 
+/**
+ * Returns a predicate that evaluates this condition for rows of given entity, with the same result as getValue().
+ * The property is found and the condition value converted just once, so the predicate is much faster for many rows.
+ * The predicate doesn't see later changes to this condition.
+ */
+public Predicate <Row> compile(Entity anEntity)
+{
+    // Get property from entity
+    Property property = anEntity.getProperty(getPropertyName());
+    if(property==null) {
+        System.err.println("RMCondition.compile: Entity property not found (" +
+            anEntity.getName() + '.' + getPropertyName() + ")"); return row -> false; }
+    
+    // Get operator and value
+    Operator op = getOperator();
+    Object value = op!=Operator.WithinLast? property.convertValue(getValue()) : getValue();
+    
+    // Get class of converted values (row values of this class don't need conversion)
+    Class vclass = value!=null && !property.isRelation()? value.getClass() : null;
+    
+    // Handle operators
+    switch(op) {
+        
+        // Handle Equals
+        case Equals: return row -> SnapUtils.equals(getRowValue(row, property, vclass), value);
+        
+        // Handle compare operators
+        case LessThan: case LessThanOrEqual: case GreaterThan: case GreaterThanOrEqual: {
+            Comparator comp = getComparator(value);
+            switch(op) {
+                case LessThan: return row -> comp.compare(getRowValue(row, property, vclass), value)<0;
+                case LessThanOrEqual: return row -> comp.compare(getRowValue(row, property, vclass), value)<=0;
+                case GreaterThan: return row -> comp.compare(getRowValue(row, property, vclass), value)>0;
+                default: return row -> comp.compare(getRowValue(row, property, vclass), value)>=0;
+            }
+        }
+            
+        // Handle StartsWith, EndsWith, Contains
+        case StartsWith: case EndsWith: case Contains: {
+            String s2 = SnapUtils.stringValue(value); if(s2==null) return row -> false;
+            switch(op) {
+                case StartsWith: return row -> {
+                    String s1 = SnapUtils.stringValue(getRowValue(row, property, vclass));
+                    return s1!=null && s1.startsWith(s2); };
+                case EndsWith: return row -> {
+                    String s1 = SnapUtils.stringValue(getRowValue(row, property, vclass));
+                    return s1!=null && s1.endsWith(s2); };
+                default: return row -> {
+                    String s1 = SnapUtils.stringValue(getRowValue(row, property, vclass));
+                    return s1!=null && s1.contains(s2); };
+            }
+        }
+            
+        // Handle WithinLast, WithinNext
+        case WithinLast: case WithinNext: {
+            long interval = Math.round(SnapUtils.doubleValue(value)*1000)*getDateConstraintMultiplier();
+            boolean last = op==Operator.WithinLast; DateParser parser = property.getDateParser();
+            return row -> {
+                long time = getRowMillis(row, property, vclass, parser); if(time==DateParser.FAIL) return false;
+                long now = System.currentTimeMillis();
+                return last? now - time <= interval : time>=now && time<now + interval;
+            };
+        }
+            
+        // Handle Before, After
+        case Before: case After: {
+            Date date2 = SnapUtils.getDate(value); if(date2==null) return row -> false;
+            boolean before = op==Operator.Before; long time2 = date2.getTime(); DateParser parser = property.getDateParser();
+            return row -> {
+                long time1 = getRowMillis(row, property, vclass, parser); if(time1==DateParser.FAIL) return false;
+                return before? time1<time2 : time1>=time2;
+            };
+        }
+            
+        // Handle Empty
+        case Empty: return row -> getRowValue(row, property, vclass)==null;
+            
+        // Handle anything else
+        default: return row -> {
+            throw new UnsupportedOperationException("RMCondition compile operator not supported " + op); };
+    }
+}
+
+/**
+ * Returns the converted value of property for given row (skips conversion if value is already given class).
+ */
+private static Object getRowValue(Row aRow, Property aProp, Class aClass)
+{
+    Object value = aRow.getValue(aProp);
+    return aClass!=null && aClass.isInstance(value)? value : aProp.convertValue(value);
+}
+
+/**
+ * Returns the date millis of property for given row (or DateParser.FAIL), parsing date strings without creating dates.
+ */
+private static long getRowMillis(Row aRow, Property aProp, Class aClass, DateParser aParser)
+{
+    // If raw value is date string (and property would convert it to date or leave it), just parse
+    Object value = aRow.getValue(aProp);
+    if(value instanceof String && (aProp.getType()==Property.Type.Date || aProp.getType()==Property.Type.String))
+        return aParser.parseMillis((String)value);
+    
+    // Otherwise, convert value and get millis
+    value = aClass!=null && aClass.isInstance(value)? value : aProp.convertValue(value);
+    if(value instanceof Date) return ((Date)value).getTime();
+    if(value instanceof Long) return (Long)value;
+    return value!=null? aParser.parseMillis(value.toString()) : DateParser.FAIL;
+}
+
+/**
+ * Returns a comparator for row values and given (converted) condition value. Uses primitive compare for row values
+ * of same class as condition value and falls back to SnapUtils.compare().
+ */
+private static Comparator getComparator(Object aValue)
+{
+    // Handle Integer, Long, Short, Byte
+    if(aValue instanceof Integer || aValue instanceof Long || aValue instanceof Short || aValue instanceof Byte) {
+        Class vclass = aValue.getClass(); long v2 = ((Number)aValue).longValue();
+        return (v1,v) -> v1!=null && v1.getClass()==vclass? Long.compare(((Number)v1).longValue(), v2) :
+            SnapUtils.compare(v1, v);
+    }
+    
+    // Handle Double, Float
+    if(aValue instanceof Double || aValue instanceof Float) {
+        Class vclass = aValue.getClass(); double v2 = ((Number)aValue).doubleValue();
+        return (v1,v) -> v1!=null && v1.getClass()==vclass? Double.compare(((Number)v1).doubleValue(), v2) :
+            SnapUtils.compare(v1, v);
+    }
+    
+    // Handle BigDecimal, String
+    if(aValue instanceof BigDecimal)
+        return (v1,v) -> v1 instanceof BigDecimal? ((BigDecimal)v1).compareTo((BigDecimal)v) : SnapUtils.compare(v1,v);
+    if(aValue instanceof String)
+        return (v1,v) -> v1 instanceof String? ((String)v1).compareTo((String)v) : SnapUtils.compare(v1, v);
+    
+    // Handle Date
+    if(aValue instanceof Date) { long v2 = ((Date)aValue).getTime();
+        return (v1,v) -> v1!=null && v1.getClass()==Date.class? Long.compare(((Date)v1).getTime(), v2) :
+            SnapUtils.compare(v1, v); }
+    
+    // Handle anything else
+    return (v1,v) -> SnapUtils.compare(v1, v);
+}
+
 /**
  * Standard equals implementation.
  */
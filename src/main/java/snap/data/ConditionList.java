@@ -3,6 +3,7 @@
  */
 package snap.data;
 import java.util.*;
+import java.util.function.Predicate;
 import snap.util.*;
 
 /**
@@ -155,6 +156,32 @@ public boolean getValue(Entity anEntity, Object anObj)
     return result;
 }
 
+/**
+ * Override to compile conditions and evaluate list like getValue().
+ */
+public Predicate <Row> compile(Entity anEntity)
+{
+    // Get compiled conditions and operators
+    int count = getConditionCount();
+    Predicate <Row> preds[] = new Predicate[count];
+    Operator ops[] = new Operator[count];
+    for(int i=0; i<count; i++) { preds[i] = getCondition(i).compile(anEntity); ops[i] = getOperator(i); }
+    
+    // Handle single condition
+    if(count==1) return preds[0];
+    
+    // Return predicate for list
+    return row -> {
+        boolean result = false;
+        for(int i=0; i<count; i++) { Operator op = ops[i];
+            if(op==Operator.Or && result)
+                break;
+            result = (i==0 || op==Operator.Or || result) && preds[i].test(row);
+        }
+        return result;
+    };
+}
+
 /**
  * Catches child property changes and forwards them to our listener.
  */
@@ -0,0 +1,794 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.data;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import snap.util.*;
+
+/**
+ * A columnar snapshot of the rows of a DataTable, for fast filter, sort and group-by over many rows.
+ *
+ * Each (non-relation) property is kept in a primitive column: numbers as doubles (NaN for null), dates as millis
+ * (Long.MIN_VALUE for null) and anything else as int codes into a dictionary of distinct values (-1 for null).
+ * Filters give the same result as Condition.compile(): number and date compares are range tests on the arrays, other
+ * conditions are evaluated once per dictionary value and anything else runs the compiled predicate on the rows.
+ * Large tables are processed in chunks in parallel.
+ *
+ * The snapshot follows the table: rows saved or removed and row value changes are applied before the next operation
+ * (a removed row is replaced by the last row), entity changes rebuild it. Row indexes returned by filter() and sort()
+ * are only valid until then.
+ */
+public class DataColumns implements PropChangeListener, DeepChangeListener {
+
+    // The table
+    DataTable              _table;
+
+    // The entity
+    Entity                 _entity;
+
+    // The rows and row count
+    Row                    _rows[] = new Row[0];
+    int                    _rowCount;
+
+    // The index of each row
+    Map <Row,Integer>      _indexes = new IdentityHashMap();
+
+    // The column for each property name
+    Map <String,Column>    _columns = new HashMap();
+
+    // The rows added, removed and changed since last update (and whether snapshot needs rebuild)
+    Set <Row>              _added = newRowSet(), _removed = newRowSet(), _changed = newRowSet();
+    boolean                _stale = true;
+
+    // The lock for pending changes (events don't take snapshot lock, which is held while fetching rows from site)
+    final Object           _pendingLock = new Object();
+
+    // The row count at which work is split into parallel chunks
+    static final int       PARALLEL_MIN = 1<<16;
+
+/**
+ * Creates a new DataColumns for given table.
+ */
+public DataColumns(DataTable aTable)
+{
+    _table = aTable; _entity = aTable.getEntity();
+    aTable.addPropChangeListener(this);
+    aTable.getSite().addListener(DeepChangeListener.class, this);
+    _entity.addPropChangeListener(this);
+}
+
+/**
+ * Returns the table.
+ */
+public DataTable getTable()  { return _table; }
+
+/**
+ * Returns the number of rows.
+ */
+public synchronized int getRowCount()  { update(); return _rowCount; }
+
+/**
+ * Returns the row at given index.
+ */
+public synchronized Row getRow(int anIndex)  { update(); return _rows[anIndex]; }
+
+/**
+ * Returns the rows at given indexes (all rows if null).
+ */
+public synchronized List <Row> getRows(int theRows[])
+{
+    update();
+    int count = theRows!=null? theRows.length : _rowCount; Row rows[] = new Row[count];
+    for(int i=0;i<count;i++) rows[i] = _rows[theRows!=null? theRows[i] : i];
+    return new ArrayList(Arrays.asList(rows));
+}
+
+/**
+ * Returns the rows for given query (condition, sorts and fetch limit).
+ */
+public synchronized List <Row> getRows(Query aQuery)
+{
+    update();
+    int rows[] = aQuery.getCondition()!=null? filter(aQuery.getCondition()) : null;
+    if(aQuery.getSortCount()>0) rows = sort(rows, aQuery.getSorts());
+    if(rows!=null && rows.length>aQuery.getFetchLimit()) rows = Arrays.copyOf(rows, aQuery.getFetchLimit());
+    else if(rows==null && _rowCount>aQuery.getFetchLimit()) rows = IntStream.range(0, aQuery.getFetchLimit()).toArray();
+    return getRows(rows);
+}
+
+/**
+ * Returns the indexes of rows that satisfy given condition (in ascending order).
+ */
+public synchronized int[] filter(Condition aCondition)
+{
+    // Get match bits
+    update();
+    long bits[] = getBits(aCondition);
+
+    // Get count of matches and indexes
+    int count = 0; for(long word : bits) count += Long.bitCount(word);
+    int rows[] = new int[count], index = 0;
+    for(int i=0;i<bits.length;i++) for(long word=bits[i];word!=0;word&=word-1)
+        rows[index++] = (i<<6) + Long.numberOfTrailingZeros(word);
+    return rows;
+}
+
+/**
+ * Returns the match bits (one per row) for given condition.
+ */
+protected long[] getBits(Condition aCondition)
+{
+    // Handle ConditionList: like ConditionList.compile(), And binds tighter than Or (Or of runs of And conditions)
+    if(aCondition instanceof ConditionList) { ConditionList clist = (ConditionList)aCondition;
+        long bits[] = new long[(_rowCount+63)>>6], term[] = null;
+        for(int i=0, iMax=clist.getConditionCount();i<iMax;i++) { long bits2[] = getBits(clist.getCondition(i));
+            if(i>0 && clist.getOperator(i)!=Condition.Operator.Or) for(int j=0;j<term.length;j++) term[j] &= bits2[j];
+            else { if(term!=null) for(int j=0;j<bits.length;j++) bits[j] |= term[j]; term = bits2; }
+        }
+        if(term!=null) for(int j=0;j<bits.length;j++) bits[j] |= term[j];
+        return bits;
+    }
+
+    // Get property column and compiled predicate (if no column, just test rows)
+    long bits[] = new long[(_rowCount+63)>>6];
+    Column col = _columns.get(aCondition.getPropertyName());
+    Predicate <Row> pred = aCondition.compile(_entity);
+    if(col==null) {
+        for(int i=0;i<_rowCount;i++) if(pred.test(_rows[i])) bits[i>>6] |= 1L<<i;
+        return bits;
+    }
+
+    // Get column filter (if not supported by column, test rows in chunks)
+    Filter filter = col.getFilter(aCondition, pred);
+    if(filter==null) filter = (start,end,theBits) -> {
+        for(int i=start;i<end;i++) if(pred.test(_rows[i])) theBits[i>>6] |= 1L<<i; };
+
+    // Run filter in chunks (chunks start on word boundaries) and return bits
+    Filter f = filter;
+    runChunks(_rowCount, (index,start,end) -> f.filter(start, end, bits));
+    return bits;
+}
+
+/**
+ * Returns the given row indexes (all rows if null) sorted by given sorts (stable).
+ */
+public synchronized int[] sort(int theRows[], List <Sort> theSorts)
+{
+    // Get row indexes
+    update();
+    int count = theRows!=null? theRows.length : _rowCount;
+    int rows[] = theRows!=null? theRows.clone() : IntStream.range(0, count).toArray();
+
+    // If any sort key isn't a column, sort rows with sorts
+    for(Sort sort : theSorts) if(!_columns.containsKey(sort.getKey())) {
+        Integer boxed[] = new Integer[count]; for(int i=0;i<count;i++) boxed[i] = rows[i];
+        Arrays.sort(boxed, (i1,i2) -> { Row r1 = _rows[i1], r2 = _rows[i2];
+            for(Sort s : theSorts) { int c = s.compare(r1, r2); if(c!=0) return c; }
+            return 0; });
+        for(int i=0;i<count;i++) rows[i] = boxed[i];
+        return rows;
+    }
+
+    // Sort by each key from last to first with stable radix sort on column sort keys
+    long keys[] = new long[count], keys2[] = new long[count]; int rows2[] = new int[count];
+    for(int i=theSorts.size()-1;i>=0;i--) { Sort sort = theSorts.get(i); Column col = _columns.get(sort.getKey());
+        col.getSortKeys(rows, count, keys, sort.getOrder()==Sort.ORDER_DESCEND);
+        if(radixSort(keys, rows, keys2, rows2, count)) { int r[] = rows; rows = rows2; rows2 = r; }
+    }
+    return rows;
+}
+
+/**
+ * Returns groups of given row indexes (all rows if null) for given key (one group if null), with count, sum, min and
+ * max of given value keys for each group.
+ */
+public synchronized Groups groupBy(int theRows[], String aKey, String ... theValueKeys)
+{
+    // Get row count and group key column
+    update();
+    int count = theRows!=null? theRows.length : _rowCount;
+    Column col = aKey!=null? _columns.get(aKey) : null;
+    if(aKey!=null && col==null) throw new IllegalArgumentException("DataColumns.groupBy: Not a column: " + aKey);
+
+    // Get group of each row and first row of each group
+    int groups[] = new int[count], gcount = 0; int firsts[] = new int[16];
+    if(col instanceof DictColumn) { int codes[] = ((DictColumn)col)._codes;
+        int map[] = new int[((DictColumn)col)._dict.size()+1]; Arrays.fill(map, -1);
+        for(int i=0;i<count;i++) { int row = theRows!=null? theRows[i] : i, c = codes[row] + 1, g = map[c];
+            if(g<0) { g = map[c] = gcount++; if(g==firsts.length) firsts = Arrays.copyOf(firsts, g*2); firsts[g] = row; }
+            groups[i] = g; }
+    }
+    else if(col!=null) { LongIntMap map = new LongIntMap();
+        for(int i=0;i<count;i++) { int row = theRows!=null? theRows[i] : i, g = map.get(col.getGroupKey(row));
+            if(g<0) { map.put(col.getGroupKey(row), g = gcount++);
+                if(g==firsts.length) firsts = Arrays.copyOf(firsts, g*2); firsts[g] = row; }
+            groups[i] = g; }
+    }
+    else if(count>0) { gcount = 1; firsts[0] = theRows!=null? theRows[0] : 0; }
+
+    // Create groups with keys and row counts
+    Groups grps = new Groups(gcount, theValueKeys);
+    for(int g=0;g<gcount;g++) grps._keys[g] = col!=null? col.getValue(firsts[g]) : null;
+    for(int i=0;i<count;i++) grps._rowCounts[groups[i]]++;
+
+    // Get aggregates for each value key: get partials for chunks in parallel, then merge
+    for(int k=0;k<theValueKeys.length;k++) { Column vcol = _columns.get(theValueKeys[k]);
+        if(vcol==null) throw new IllegalArgumentException("DataColumns.groupBy: Not a column: " + theValueKeys[k]);
+        double vals[] = vcol.getDoubles(_rowCount);
+        int ccount = getChunkCount(count), gc = gcount;
+        double sums[][] = new double[ccount][gc], mins[][] = new double[ccount][gc], maxs[][] = new double[ccount][gc];
+        int counts[][] = new int[ccount][gc];
+        runChunks(count, (index,start,end) -> {
+            double sum[] = sums[index], min[] = mins[index], max[] = maxs[index]; int cnt[] = counts[index];
+            Arrays.fill(min, Double.POSITIVE_INFINITY); Arrays.fill(max, Double.NEGATIVE_INFINITY);
+            for(int i=start;i<end;i++) { double v = vals[theRows!=null? theRows[i] : i]; if(v!=v) continue;
+                int g = groups[i]; sum[g] += v; cnt[g]++;
+                if(v<min[g]) min[g] = v; if(v>max[g]) max[g] = v; }
+        });
+        for(int g=0;g<gcount;g++) {
+            double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY; int cnt = 0;
+            for(int c=0;c<ccount;c++) { sum += sums[c][g]; cnt += counts[c][g];
+                min = Math.min(min, mins[c][g]); max = Math.max(max, maxs[c][g]); }
+            grps._sums[k][g] = sum; grps._counts[k][g] = cnt;
+            grps._mins[k][g] = cnt>0? min : Double.NaN; grps._maxs[k][g] = cnt>0? max : Double.NaN;
+        }
+    }
+
+    // Return groups
+    return grps;
+}
+
+/**
+ * Applies pending table changes (or rebuilds snapshot if stale).
+ */
+protected synchronized void update()
+{
+    // Get pending changes
+    Row added[], removed[], changed[];
+    synchronized (_pendingLock) {
+        if(_stale) { _stale = false; _added.clear(); _removed.clear(); _changed.clear(); added = null; removed = null;
+            changed = null; }
+        else {
+            if(_added.isEmpty() && _removed.isEmpty() && _changed.isEmpty()) return;
+            added = _added.toArray(new Row[0]); removed = _removed.toArray(new Row[0]);
+            changed = _changed.toArray(new Row[0]);
+            _added.clear(); _removed.clear(); _changed.clear();
+        }
+    }
+
+    // If stale, rebuild
+    if(added==null) { rebuild(); return; }
+
+    // Remove rows, add rows and update changed rows (if a value doesn't fit column, rebuild)
+    for(Row row : removed) removeRow(row);
+    for(Row row : added) if(!_indexes.containsKey(row) && !addRow(row)) { rebuild(); return; }
+    for(Row row : changed) { Integer index = _indexes.get(row);
+        if(index!=null && !setValues(index, row)) { rebuild(); return; } }
+}
+
+/**
+ * Rebuilds snapshot from table rows.
+ */
+protected void rebuild()
+{
+    // Get rows
+    List <Row> rows = _table.getSite().getRows(new Query(_entity));
+    _rows = rows!=null? rows.toArray(new Row[0]) : new Row[0]; _rowCount = _rows.length;
+    _indexes.clear(); for(int i=0;i<_rowCount;i++) _indexes.put(_rows[i], i);
+
+    // Create columns for properties
+    _columns.clear();
+    for(Property prop : _entity.getProperties()) { if(prop.isRelation()) continue;
+        Object values[] = new Object[_rowCount];
+        for(int i=0;i<_rowCount;i++) values[i] = prop.convertValue(_rows[i].getValue(prop));
+        _columns.put(prop.getName(), Column.create(prop, values));
+    }
+}
+
+/**
+ * Adds a row to end of snapshot. Returns false if a value doesn't fit its column.
+ */
+private boolean addRow(Row aRow)
+{
+    if(_rowCount==_rows.length) { int size = Math.max(_rowCount*2, 16);
+        _rows = Arrays.copyOf(_rows, size); for(Column col : _columns.values()) col.setCapacity(size); }
+    _rows[_rowCount] = aRow; _indexes.put(aRow, _rowCount);
+    return setValues(_rowCount++, aRow);
+}
+
+/**
+ * Removes a row from snapshot (replaces it with last row).
+ */
+private void removeRow(Row aRow)
+{
+    Integer index = _indexes.remove(aRow); if(index==null) return;
+    int last = --_rowCount;
+    if(index!=last) { _rows[index] = _rows[last]; _indexes.put(_rows[index], index);
+        for(Column col : _columns.values()) col.copy(last, index); }
+    _rows[last] = null;
+}
+
+/**
+ * Sets the column values at given index from row. Returns false if a value doesn't fit its column.
+ */
+private boolean setValues(int anIndex, Row aRow)
+{
+    for(Column col : _columns.values())
+        if(!col.set(anIndex, col._prop.convertValue(aRow.getValue(col._prop)))) return false;
+    return true;
+}
+
+/**
+ * PropChangeListener method to queue table row adds/removes and rebuild for entity changes.
+ */
+public void propertyChange(PropChange anEvent)
+{
+    synchronized (_pendingLock) {
+        if(anEvent.getSource()==_entity) _stale = true;
+        else if(DataTable.LocalRow_Prop.equals(anEvent.getPropertyName())) {
+            Row row = (Row)anEvent.getNewValue(), old = (Row)anEvent.getOldValue();
+            if(old!=null && old!=row) { _added.remove(old); _changed.remove(old); _removed.add(old); }
+            if(row!=null) { _removed.remove(row); _added.add(row); }
+        }
+    }
+}
+
+/**
+ * DeepChangeListener method to queue row value changes.
+ */
+public void deepChange(PropChangeListener aSource, PropChange anEvent)
+{
+    Object src = anEvent.getSource();
+    if(src instanceof Row && ((Row)src).getEntity()==_entity)
+        synchronized (_pendingLock) { _changed.add((Row)src); }
+}
+
+/**
+ * Returns the number of chunks to split given count of work into.
+ */
+private static int getChunkCount(int aCount)
+{
+    int par = ForkJoinPool.getCommonPoolParallelism();
+    return aCount<PARALLEL_MIN || par<=1? 1 : Math.min(par*4, aCount/(PARALLEL_MIN/4));
+}
+
+/**
+ * Runs given task on chunks of given count of work (in parallel if big). Chunks start on multiples of 64.
+ */
+private static void runChunks(int aCount, ChunkTask aTask)
+{
+    int ccount = getChunkCount(aCount); if(ccount==1) { aTask.run(0, 0, aCount); return; }
+    int csize = ((aCount + ccount - 1)/ccount + 63) & ~63;
+    IntStream.range(0, ccount).parallel().forEach(i ->
+        aTask.run(i, Math.min(i*csize, aCount), Math.min(i*csize + csize, aCount)));
+}
+
+/**
+ * Sorts given rows by given keys with stable LSD radix sort (skipping bytes that are the same for all keys). Returns
+ * whether result is in second arrays.
+ */
+private static boolean radixSort(long theKeys[], int theRows[], long theKeys2[], int theRows2[], int aCount)
+{
+    // Get bits that vary across keys (as unsigned)
+    long or = 0, and = -1; for(int i=0;i<aCount;i++) { long k = theKeys[i] ^ Long.MIN_VALUE; or |= k; and &= k; }
+    long diff = or ^ and;
+
+    // Do a counting sort pass for each byte that varies
+    long keys[] = theKeys, keys2[] = theKeys2; int rows[] = theRows, rows2[] = theRows2; boolean swapped = false;
+    int counts[] = new int[257];
+    for(int shift=0;shift<64;shift+=8) { if(((diff>>>shift) & 255)==0) continue;
+        Arrays.fill(counts, 0);
+        for(int i=0;i<aCount;i++) counts[(int)(((keys[i] ^ Long.MIN_VALUE)>>>shift) & 255) + 1]++;
+        for(int i=0;i<256;i++) counts[i+1] += counts[i];
+        for(int i=0;i<aCount;i++) { int b = (int)(((keys[i] ^ Long.MIN_VALUE)>>>shift) & 255), j = counts[b]++;
+            keys2[j] = keys[i]; rows2[j] = rows[i]; }
+        long k[] = keys; keys = keys2; keys2 = k; int r[] = rows; rows = rows2; rows2 = r; swapped = !swapped;
+    }
+    return swapped;
+}
+
+/**
+ * Returns a new identity set of rows.
+ */
+private static Set <Row> newRowSet()  { return Collections.newSetFromMap(new IdentityHashMap()); }
+
+/**
+ * The result of a group-by: a key, row count and value aggregates for each group.
+ */
+public static class Groups {
+
+    // The group keys and row counts
+    Object      _keys[]; int _rowCounts[];
+
+    // The value keys and the count (of non-null values), sum, min and max of each value key for each group
+    String      _valueKeys[]; int _counts[][]; double _sums[][], _mins[][], _maxs[][];
+
+    /** Creates new groups. */
+    Groups(int aCount, String theValueKeys[])
+    {
+        _keys = new Object[aCount]; _rowCounts = new int[aCount]; _valueKeys = theValueKeys;
+        int vcount = theValueKeys.length; _counts = new int[vcount][aCount];
+        _sums = new double[vcount][aCount]; _mins = new double[vcount][aCount]; _maxs = new double[vcount][aCount];
+    }
+
+    /** Returns the number of groups. */
+    public int getCount()  { return _keys.length; }
+
+    /** Returns the key value of given group. */
+    public Object getKey(int anIndex)  { return _keys[anIndex]; }
+
+    /** Returns the number of rows in given group. */
+    public int getRowCount(int anIndex)  { return _rowCounts[anIndex]; }
+
+    /** Returns the number of non-null values of given value key in given group. */
+    public int getCount(int anIndex, String aKey)  { return _counts[getValueIndex(aKey)][anIndex]; }
+
+    /** Returns the sum of given value key in given group. */
+    public double getSum(int anIndex, String aKey)  { return _sums[getValueIndex(aKey)][anIndex]; }
+
+    /** Returns the min of given value key in given group (NaN if no values). */
+    public double getMin(int anIndex, String aKey)  { return _mins[getValueIndex(aKey)][anIndex]; }
+
+    /** Returns the max of given value key in given group (NaN if no values). */
+    public double getMax(int anIndex, String aKey)  { return _maxs[getValueIndex(aKey)][anIndex]; }
+
+    /** Returns the average of given value key in given group (NaN if no values). */
+    public double getAverage(int anIndex, String aKey)
+    {
+        int vindex = getValueIndex(aKey), count = _counts[vindex][anIndex];
+        return count>0? _sums[vindex][anIndex]/count : Double.NaN;
+    }
+
+    /** Returns the index of given value key. */
+    int getValueIndex(String aKey)
+    {
+        for(int i=0;i<_valueKeys.length;i++) if(_valueKeys[i].equals(aKey)) return i;
+        throw new IllegalArgumentException("DataColumns.Groups: Value key not aggregated: " + aKey);
+    }
+}
+
+/**
+ * A task for a chunk of work.
+ */
+private interface ChunkTask {
+    void run(int anIndex, int aStart, int anEnd);
+}
+
+/**
+ * A filter that sets the match bits for a range of rows.
+ */
+private interface Filter {
+    void filter(int aStart, int anEnd, long theBits[]);
+}
+
+/**
+ * A column of property values.
+ */
+private abstract static class Column {
+
+    // The property
+    Property    _prop;
+
+    /** Creates column for given property and converted values: numbers, dates or dictionary codes. */
+    static Column create(Property aProp, Object theValues[])
+    {
+        // Get whether all non-null values are numbers that fit double or all are dates (and whether any non-null)
+        boolean nums = true, dates = true, any = false;
+        for(Object v : theValues) { if(v==null) continue; any = true;
+            if(nums && !NumberColumn.isNumber(v)) nums = false;
+            if(dates && !DateColumn.isDate(v)) dates = false;
+            if(!nums && !dates) break; }
+
+        // Create column and set values
+        Column col = any && nums? new NumberColumn() : any && dates? new DateColumn() : new DictColumn();
+        col._prop = aProp; col.setCapacity(theValues.length);
+        for(int i=0;i<theValues.length;i++) col.set(i, theValues[i]);
+        return col;
+    }
+
+    /** Sets the capacity. */
+    abstract void setCapacity(int aSize);
+
+    /** Sets converted value at given index. Returns false if value doesn't fit column. */
+    abstract boolean set(int anIndex, Object aValue);
+
+    /** Returns the value at given index. */
+    abstract Object getValue(int anIndex);
+
+    /** Copies value at one index to another. */
+    abstract void copy(int aFrom, int aTo);
+
+    /** Returns a filter for condition (or null if condition isn't supported). */
+    abstract Filter getFilter(Condition aCondition, Predicate <Row> aPred);
+
+    /** Fills given keys with sort keys for given rows, ordered like Sort.Compare() of values. */
+    abstract void getSortKeys(int theRows[], int aCount, long theKeys[], boolean isDescend);
+
+    /** Returns a key that is equal for equal values. */
+    abstract long getGroupKey(int anIndex);
+
+    /** Returns the values as doubles (NaN for null or non-number). */
+    abstract double[] getDoubles(int aCount);
+}
+
+/**
+ * A column of millis (dates) or double bits (numbers), with a null key. Compares are range tests on ordered keys.
+ */
+private abstract static class RangeColumn extends Column {
+
+    /** Returns the ordered key at given index (NULL if null). */
+    abstract long getKey(int anIndex);
+
+    /** Returns the key of a (non-null) value. */
+    abstract long getKey(Object aValue);
+
+    /** Returns whether given (converted) value is the class of column values for compare. */
+    abstract boolean isCompareClass(Object aValue);
+
+    /** Returns a filter that matches keys in range, and null keys if requested. */
+    abstract Filter getFilter(long aMin, long aMax, boolean doNulls);
+
+    /** Override to map compare operators to ranges. */
+    Filter getFilter(Condition aCondition, Predicate <Row> aPred)
+    {
+        // Handle Empty
+        Condition.Operator op = aCondition.getOperator();
+        if(op==Condition.Operator.Empty) return getFilter(1, 0, true);
+
+        // Handle compare operators: null row values are less than others, null condition value is less than others
+        Object value = _prop.convertValue(aCondition.getValue());
+        if(value==null) switch(op) {
+            case Equals: return getFilter(1, 0, true);
+            case LessThan: return getFilter(1, 0, false);
+            case LessThanOrEqual: return getFilter(1, 0, true);
+            case GreaterThan: return getFilter(Long.MIN_VALUE, Long.MAX_VALUE, false);
+            case GreaterThanOrEqual: return getFilter(Long.MIN_VALUE, Long.MAX_VALUE, true);
+            default: return null;
+        }
+        if(!isCompareClass(value)) return null; long key = getKey(value);
+        switch(op) {
+            case Equals: return getFilter(key, key, false);
+            case LessThan: return key==Long.MIN_VALUE? getFilter(1, 0, true) : getFilter(Long.MIN_VALUE, key-1, true);
+            case LessThanOrEqual: return getFilter(Long.MIN_VALUE, key, true);
+            case GreaterThan: return key==Long.MAX_VALUE? getFilter(1, 0, false) : getFilter(key+1, Long.MAX_VALUE,false);
+            case GreaterThanOrEqual: return getFilter(key, Long.MAX_VALUE, false);
+            default: return null;
+        }
+    }
+
+    /** Returns the group key. */
+    long getGroupKey(int anIndex)  { return getKey(anIndex); }
+}
+
+/**
+ * A column of numbers that fit in a double.
+ */
+private static class NumberColumn extends RangeColumn {
+
+    // The values (NaN for null) and the class of all values (null if mixed)
+    double      _values[]; Class _vclass; boolean _any;
+
+    /** Returns whether value is number that fits double exactly. */
+    static boolean isNumber(Object aValue)
+    {
+        if(aValue instanceof Double) return !((Double)aValue).isNaN();
+        if(aValue instanceof Float) return !((Float)aValue).isNaN();
+        if(aValue instanceof Long) { long v = (Long)aValue; return v<=(1L<<53) && v>=-(1L<<53); }
+        return aValue instanceof Integer || aValue instanceof Short || aValue instanceof Byte;
+    }
+
+    /** Returns an ordered key for double (ordered like Double.compare). */
+    static long getKey(double aValue)
+    {
+        long bits = Double.doubleToRawLongBits(aValue);
+        return bits ^ ((bits>>63) & Long.MAX_VALUE);
+    }
+
+    void setCapacity(int aSize)  { _values = _values!=null? Arrays.copyOf(_values, aSize) : new double[aSize]; }
+    boolean set(int anIndex, Object aValue)
+    {
+        if(aValue==null) { _values[anIndex] = Double.NaN; return true; }
+        if(!isNumber(aValue)) return false;
+        if(!_any) { _any = true; _vclass = aValue.getClass(); }
+        else if(_vclass!=aValue.getClass()) _vclass = null;
+        _values[anIndex] = ((Number)aValue).doubleValue(); return true;
+    }
+    Object getValue(int anIndex)  { double v = _values[anIndex]; return v==v? _prop.convertValue(v) : null; }
+    void copy(int aFrom, int aTo)  { _values[aTo] = _values[aFrom]; }
+    long getKey(int anIndex)  { double v = _values[anIndex]; return v==v? getKey(v) : Long.MIN_VALUE; }
+    long getKey(Object aValue)  { return getKey(((Number)aValue).doubleValue()); }
+    boolean isCompareClass(Object aValue)  { return _vclass!=null && aValue.getClass()==_vclass && isNumber(aValue); }
+    Filter getFilter(long aMin, long aMax, boolean doNulls)
+    {
+        double vals[] = _values;
+        return (start,end,bits) -> {
+            for(int i=start;i<end;i++) { double v = vals[i]; boolean match;
+                if(v!=v) match = doNulls; else { long k = getKey(v); match = k>=aMin && k<=aMax; }
+                if(match) bits[i>>6] |= 1L<<i; }
+        };
+    }
+    void getSortKeys(int theRows[], int aCount, long theKeys[], boolean isDescend)
+    {
+        // Sort.Compare() compares doubleValue (so -0 equals 0) and puts null numbers first
+        for(int i=0;i<aCount;i++) { double v = _values[theRows[i]];
+            long k = v==v? getKey(v + 0.0) : Long.MIN_VALUE; theKeys[i] = isDescend? ~k : k; }
+    }
+    long getGroupKey(int anIndex)  { return Double.doubleToLongBits(_values[anIndex]); }
+    double[] getDoubles(int aCount)  { return _values; }
+}
+
+/**
+ * A column of dates (as millis).
+ */
+private static class DateColumn extends RangeColumn {
+
+    // The millis (Long.MIN_VALUE for null)
+    long        _values[];
+
+    /** Returns whether value is a plain date. */
+    static boolean isDate(Object aValue)
+    {
+        return aValue!=null && aValue.getClass()==Date.class && ((Date)aValue).getTime()!=Long.MIN_VALUE;
+    }
+
+    void setCapacity(int aSize)  { _values = _values!=null? Arrays.copyOf(_values, aSize) : new long[aSize]; }
+    boolean set(int anIndex, Object aValue)
+    {
+        if(aValue==null) { _values[anIndex] = Long.MIN_VALUE; return true; }
+        if(!isDate(aValue)) return false;
+        _values[anIndex] = ((Date)aValue).getTime(); return true;
+    }
+    Object getValue(int anIndex)  { long v = _values[anIndex]; return v!=Long.MIN_VALUE? new Date(v) : null; }
+    void copy(int aFrom, int aTo)  { _values[aTo] = _values[aFrom]; }
+    long getKey(int anIndex)  { return _values[anIndex]; }
+    long getKey(Object aValue)  { return ((Date)aValue).getTime(); }
+    boolean isCompareClass(Object aValue)  { return aValue.getClass()==Date.class; }
+    Filter getFilter(long aMin, long aMax, boolean doNulls)
+    {
+        long vals[] = _values;
+        return (start,end,bits) -> {
+            for(int i=start;i<end;i++) { long v = vals[i];
+                if(v==Long.MIN_VALUE? doNulls : v>=aMin && v<=aMax) bits[i>>6] |= 1L<<i; }
+        };
+    }
+
+    /** Override to add date operators (like Condition.compile(), null rows never match these). */
+    Filter getFilter(Condition aCondition, Predicate <Row> aPred)
+    {
+        Condition.Operator op = aCondition.getOperator();
+        switch(op) {
+            case WithinLast: case WithinNext: {
+                Object value = op!=Condition.Operator.WithinLast? _prop.convertValue(aCondition.getValue()) :
+                    aCondition.getValue();
+                long interval = Math.round(SnapUtils.doubleValue(value)*1000)*aCondition.getDateConstraintMultiplier();
+                long now = System.currentTimeMillis();
+                if(op==Condition.Operator.WithinLast) return getFilter(now - interval, Long.MAX_VALUE, false);
+                return interval<=0? getFilter(1, 0, false) : getFilter(now, now + interval - 1, false);
+            }
+            case Before: case After: {
+                Date date = SnapUtils.getDate(_prop.convertValue(aCondition.getValue()));
+                if(date==null) return getFilter(1, 0, false); long time = date.getTime();
+                if(op==Condition.Operator.Before)
+                    return time==Long.MIN_VALUE? getFilter(1, 0, false) : getFilter(Long.MIN_VALUE + 1, time - 1, false);
+                return getFilter(time, Long.MAX_VALUE, false);
+            }
+            default: return super.getFilter(aCondition, aPred);
+        }
+    }
+    void getSortKeys(int theRows[], int aCount, long theKeys[], boolean isDescend)
+    {
+        // Sort.Compare() puts null dates first (null is Long.MIN_VALUE)
+        for(int i=0;i<aCount;i++) { long k = _values[theRows[i]]; theKeys[i] = isDescend? ~k : k; }
+    }
+    double[] getDoubles(int aCount)
+    {
+        double vals[] = new double[aCount];
+        for(int i=0;i<aCount;i++) { long v = _values[i]; vals[i] = v!=Long.MIN_VALUE? v : Double.NaN; }
+        return vals;
+    }
+}
+
+/**
+ * A column of codes into a dictionary of distinct values.
+ */
+private static class DictColumn extends Column {
+
+    // The codes (-1 for null), the distinct values and the code for each value
+    int         _codes[]; List _dict = new ArrayList(); Map <Object,Integer> _dictCodes = new HashMap();
+
+    void setCapacity(int aSize)  { _codes = _codes!=null? Arrays.copyOf(_codes, aSize) : new int[aSize]; }
+    boolean set(int anIndex, Object aValue)
+    {
+        if(aValue==null) { _codes[anIndex] = -1; return true; }
+        Integer code = _dictCodes.get(aValue);
+        if(code==null) { _dictCodes.put(aValue, code = _dict.size()); _dict.add(aValue); }
+        _codes[anIndex] = code; return true;
+    }
+    Object getValue(int anIndex)  { int c = _codes[anIndex]; return c>=0? _dict.get(c) : null; }
+    void copy(int aFrom, int aTo)  { _codes[aTo] = _codes[aFrom]; }
+
+    /** Override to evaluate compiled condition once for null and each distinct value. */
+    Filter getFilter(Condition aCondition, Predicate <Row> aPred)
+    {
+        // Get match for each code (plus one) with a probe row that has value
+        boolean matches[] = new boolean[_dict.size()+1];
+        for(int c=-1;c<_dict.size();c++) { Row probe = new Row(); probe.setEntity(_prop.getEntity());
+            if(c>=0) probe.put(_prop, _dict.get(c));
+            matches[c+1] = aPred.test(probe); }
+
+        // Return filter
+        int codes[] = _codes;
+        return (start,end,bits) -> {
+            for(int i=start;i<end;i++) if(matches[codes[i]+1]) bits[i>>6] |= 1L<<i; };
+    }
+    void getSortKeys(int theRows[], int aCount, long theKeys[], boolean isDescend)
+    {
+        // Get rank for each code (plus one) in Sort.Compare() order (equal values get same rank)
+        int count = _dict.size(); Integer order[] = new Integer[count+1];
+        for(int i=0;i<=count;i++) order[i] = i - 1;
+        Arrays.sort(order, (c1,c2) -> Sort.Compare(c1>=0? _dict.get(c1) : null, c2>=0? _dict.get(c2) : null));
+        long ranks[] = new long[count+1]; long rank = 0;
+        for(int i=0;i<=count;i++) { int c = order[i];
+            if(i>0) { int c0 = order[i-1];
+                if(Sort.Compare(c0>=0? _dict.get(c0) : null, c>=0? _dict.get(c) : null)!=0) rank++; }
+            ranks[c+1] = isDescend? ~rank : rank; }
+
+        // Set keys
+        for(int i=0;i<aCount;i++) theKeys[i] = ranks[_codes[theRows[i]]+1];
+    }
+    long getGroupKey(int anIndex)  { return _codes[anIndex]; }
+    double[] getDoubles(int aCount)
+    {
+        double dvals[] = new double[_dict.size()+1]; dvals[0] = Double.NaN;
+        for(int c=0;c<_dict.size();c++) { Object v = _dict.get(c);
+            dvals[c+1] = v instanceof Number? ((Number)v).doubleValue() : Double.NaN; }
+        double vals[] = new double[aCount];
+        for(int i=0;i<aCount;i++) vals[i] = dvals[_codes[i]+1];
+        return vals;
+    }
+}
+
+/**
+ * A simple open addressing map of long keys to int values.
+ */
+private static class LongIntMap {
+
+    // The keys, values (-1 for empty) and size
+    long        _keys[] = new long[64]; int _vals[] = newVals(64), _size;
+
+    /** Returns value for key (-1 if not found). */
+    int get(long aKey)
+    {
+        int mask = _keys.length - 1;
+        for(int i=hash(aKey, mask);;i=(i+1)&mask) { int v = _vals[i];
+            if(v<0 || _keys[i]==aKey) return v; }
+    }
+
+    /** Puts value for key (key must not be present). */
+    void put(long aKey, int aValue)
+    {
+        if(++_size*2>_keys.length) { long keys[] = _keys; int vals[] = _vals;
+            _keys = new long[keys.length*2]; _vals = newVals(keys.length*2);
+            for(int i=0;i<keys.length;i++) if(vals[i]>=0) putImpl(keys[i], vals[i]); }
+        putImpl(aKey, aValue);
+    }
+
+    /** Puts value in first empty slot for key. */
+    void putImpl(long aKey, int aValue)
+    {
+        int mask = _keys.length - 1, i = hash(aKey, mask);
+        while(_vals[i]>=0) i = (i+1)&mask;
+        _keys[i] = aKey; _vals[i] = aValue;
+    }
+
+    /** Returns hash slot for key. */
+    static int hash(long aKey, int aMask)  { long h = aKey*0x9E3779B97F4A7C15L; return (int)(h ^ (h>>>32)) & aMask; }
+
+    /** Returns new values array filled with -1. */
+    static int[] newVals(int aSize)  { int vals[] = new int[aSize]; Arrays.fill(vals, -1); return vals; }
+}
+
+}
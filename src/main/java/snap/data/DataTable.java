@@ -22,6 +22,9 @@ public class DataTable extends SnapObject {
     // The rows that have been loaded locally
     Map <Object,Row>             _localRows = new HashMap();
     
+    // The columnar snapshot of rows
+    DataColumns                  _columns;
+    
     // A map of properties associated with file
     Map                          _props = new HashMap();
     
@@ -73,9 +76,9 @@ public synchronized Row getLocalRow(Object aPrimaryValue)  { return _localRows.g
  */
 protected synchronized void addLocalRow(Row aRow)
 {
-    // Put row (just return if identical)
-    Row old = _localRows.put(aRow.getPrimaryValue(), aRow); if(aRow==old || !aRow.getExists()) return;
-    firePropChange(LocalRow_Prop, aRow, old);
+    // Put row (just return if row doesn't exist yet - a new row is put when created and added again when saved)
+    Row old = _localRows.put(aRow.getPrimaryValue(), aRow); if(!aRow.getExists()) return;
+    firePropChange(LocalRow_Prop, aRow!=old? old : null, aRow);
 }
 
 /**
@@ -85,9 +88,14 @@ protected synchronized void removeLocalRow(Row aRow)
 {
     // Remove row
     Row old = _localRows.remove(aRow.getPrimaryValue()); if(old==null) return;
-    firePropChange(LocalRow_Prop, null, old);
+    firePropChange(LocalRow_Prop, old, null);
 }
 
+/**
+ * Returns a columnar snapshot of table rows for fast filter, sort and group-by (it follows row changes).
+ */
+public synchronized DataColumns getColumns()  { return _columns!=null? _columns : (_columns = new DataColumns(this)); }
+
 /**
  * Standard toString implementation.
  */
@@ -3,6 +3,7 @@
  */
 package snap.data;
 import java.util.*;
+import java.util.function.Predicate;
 import snap.util.*;
 
 /**
@@ -22,6 +23,9 @@ public class DataTableView implements PropChangeListener {
     // The data rows
     List <Row>         _rows;
     
+    // The compiled query condition
+    Predicate <Row>    _filter;
+    
 /**
  * Returns the data site.
  */
@@ -55,18 +59,37 @@ protected void setName(String aName)  { _name = aName; }
 /**
  * Returns the query.
  */
-public Query getQuery()  { return _query!=null? _query : (_query=createQuery()); }
+public Query getQuery()
+{
+    if(_query==null) { _query = createQuery(); _query.addPropChangeListener(this); }
+    return _query;
+}
 
 /**
  * Sets the query.
  */
-public void setQuery(Query aQuery)  { _query = aQuery; }
+public void setQuery(Query aQuery)
+{
+    if(_query!=null) _query.removePropChangeListener(this);
+    _query = aQuery; _filter = null;
+    if(_query!=null) _query.addPropChangeListener(this);
+}
 
 /**
  * Creates the default query.
  */
 protected Query createQuery()  { return new Query(getTableEntity()); }
 
+/**
+ * Returns the compiled query condition (or null if no condition).
+ */
+protected Predicate <Row> getFilter()
+{
+    if(_filter!=null) return _filter;
+    Condition condition = getQuery().getCondition();
+    return _filter = condition!=null? condition.compile(getTableEntity()) : null;
+}
+
 /**
  * Returns whether rows for this table view have been set.
  */
@@ -95,7 +118,7 @@ protected void removeRow(Row aRow)  { _rows.remove(aRow); }
 /**
  * Clears existing objects from this table.
  */
-public void refresh()  { _query = null; _rows = null; }
+public void refresh()  { setQuery(null); _rows = null; }
 
 /**
  * Property change.
@@ -109,19 +132,22 @@ public void propertyChange(PropChange anEvent)
         // Handle LocalRow Add
         if(nrow!=null) {
             if(!isRowsSet()) return;
-            Condition condition = getQuery().getCondition();
-            if(condition==null || condition.getValue(getTableEntity(), nrow))
+            Predicate <Row> filter = getFilter();
+            if(filter==null || filter.test(nrow))
                 addRow(nrow);
         }
         
         // Handle LocalRow Remove
         else if(orow!=null) {
             if(!isRowsSet()) return;
-            Condition condition = getQuery().getCondition();
-            if(condition==null || condition.getValue(getTableEntity(), orow))
+            Predicate <Row> filter = getFilter();
+            if(filter==null || filter.test(orow))
                 removeRow(orow);
         }
     }
+    
+    // Handle Query change: Clear compiled condition
+    else if(anEvent.getSource()!=getTable()) _filter = null;
 }
 
 /**
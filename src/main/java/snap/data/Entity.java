@@ -3,6 +3,7 @@
  */
 package snap.data;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import snap.util.*;
 import snap.web.WebFile;
 
@@ -24,6 +25,12 @@ public class Entity extends SnapObject implements PropChangeListener,JSONArchive
     // Entity properties
     List <Property>    _props = new ArrayList();
     
+    // The number of property slots assigned (each property gets the index of its values in rows)
+    int                _slotCount;
+    
+    // A cache of properties found for names by getProperty(name)
+    Map <String,Property> _propsForNames = new ConcurrentHashMap();
+    
     // The class that this entity represents
     Class              _class;
     
@@ -109,6 +116,11 @@ public Property getProperty(int anIndex)  { return _props.get(anIndex); }
  */
 public List <Property> getProperties()  { return _props; }
 
+/**
+ * Returns the number of property slots (the size of the row values array for this entity).
+ */
+public int getSlotCount()  { return _slotCount; }
+
 /**
  * Sets a list of properties.
  */
@@ -123,8 +135,10 @@ public void setProperties(List <Property> theProps)
  */
 public void addProperty(Property aProperty)
 {
+    // Get duplicate property and remove (new property takes its slot, so row values are kept)
     Property duplicate = getProperty(aProperty.getName());
     int index = duplicate==null? getPropertyCount() : removeProperty(duplicate);
+    if(duplicate!=null && duplicate!=aProperty) { aProperty.setEntity(this); aProperty._slot = duplicate._slot; }
     addProperty(aProperty, index);
 }
 
@@ -133,11 +147,14 @@ public void addProperty(Property aProperty)
  */
 public void addProperty(Property aProperty, int anIndex)
 {
-    // Add property to list
+    // Add property to list and assign slot (unless property was already in this entity)
     _props.add(anIndex, aProperty);
+    if(aProperty.getEntity()!=this || aProperty._slot<0 || aProperty._slot>=_slotCount)
+        aProperty._slot = _slotCount++;
     aProperty.setEntity(this);  // Set Property.Entity to this
     aProperty.addPropChangeListener(this);  // Start listening to PropertyChanges
     _attrs = _attrsSorted = _relations = _relationsSorted = _primaries = null;  // Reset cached lists
+    _propsForNames.clear();
     
     // Fire property change event
     firePropChange("Property", null, aProperty, anIndex);
@@ -157,6 +174,7 @@ public Object removeProperty(int anIndex)
     Property property = _props.remove(anIndex);
     property.removePropChangeListener(this);  // Stop listening to PropertyChanges
     _attrs = _attrsSorted = _relations = _relationsSorted = _primaries = null;  // Reset cached lists
+    _propsForNames.clear();
 
     // Fire property change event and return
     firePropChange("Property", property, null, anIndex);
@@ -177,6 +195,18 @@ public int removeProperty(Property aProperty)
  * Returns the property with the given name.
  */
 public Property getProperty(String aName)
+{
+    // Get cached property for name
+    Property prop = aName!=null? _propsForNames.get(aName) : null; if(prop!=null) return prop;
+    prop = getPropertyImpl(aName);
+    if(prop!=null) _propsForNames.put(aName, prop);
+    return prop;
+}
+
+/**
+ * Returns the property with the given name (without cache).
+ */
+protected Property getPropertyImpl(String aName)
 {
     // Get name (if it has prefix of a standard accessor, strip is/get)
     String name = aName; if(name==null || name.length()==0) return null;
@@ -365,7 +395,11 @@ public String getDescriptorKeyGuess()
 /**
  * PropChangeListener implementation to forward Property property changes to entity property change listener.
  */
-public void propertyChange(PropChange anEvent)  { firePropChange(anEvent); }
+public void propertyChange(PropChange anEvent)
+{
+    if(anEvent.getPropertyName()=="Name") _propsForNames.clear();
+    firePropChange(anEvent);
+}
 
 /**
  * Returns the source file.
@@ -399,7 +433,7 @@ public Entity clone()
 {
     // Do normal version, reset property list and clone properties
     Entity clone = (Entity)super.clone();
-    clone._props = new ArrayList();
+    clone._props = new ArrayList(); clone._slotCount = 0; clone._propsForNames = new ConcurrentHashMap();
     for(Property property : getProperties()) clone.addProperty(property.clone());
     return clone;
 }
@@ -4,13 +4,17 @@
 package snap.data;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.function.Predicate;
 import snap.util.CSVReader;
 import snap.util.ListUtils;
+import snap.util.PropChange;
 import snap.util.SnapUtils;
 import snap.util.StringUtils;
 import snap.web.WebFile;
@@ -26,9 +30,33 @@ public class FileDataSite extends DataSite {
     // Dirty entity set
     Set <Entity>                  _dirtyEntities = new HashSet();
     
+    // The map of property indexes for each entity (created on demand by queries)
+    Map <Entity, Map<String,RowIndex>>  _indexes = new HashMap();
+    
+    // The current max value of auto-generated properties
+    Map <Property,Integer>        _autoGenMax = new HashMap();
+    
+    // Whether to save table data to binary row logs instead of CSV
+    boolean                       _useRowLog;
+    
+    // The row logs for entities
+    Map <Entity, RowLog>          _rowLogs = new HashMap();
+    
     // Table data file extension
     static final String           TableEntityFileExt = ".entity"; 
     static final String           TableDataFileExt = ".csv"; 
+    static final String           TableLogFileExt = ".rowlog"; 
+
+/**
+ * Returns whether to save table data to binary row logs instead of CSV files. Saving a row log only appends changed
+ * rows, instead of rewriting the whole table. Table data is read from the row log if present, otherwise from CSV.
+ */
+public boolean isUseRowLog()  { return _useRowLog; }
+
+/**
+ * Sets whether to save table data to binary row logs instead of CSV files.
+ */
+public void setUseRowLog(boolean aValue)  { _useRowLog = aValue; }
 
 /**
  * Get entity by loading from entity file.
@@ -65,6 +93,10 @@ protected void deleteEntityImpl(Entity anEntity) throws Exception
     WebFile tfile = getTableDataFile(anEntity.getName(), false);
     if(tfile!=null)
         tfile.delete();
+    WebFile lfile = getTableLogFile(anEntity.getName(), false);
+    if(lfile!=null)
+        lfile.delete();
+    synchronized (this) { _rowLogs.remove(anEntity); }
 }
 
 /**
@@ -72,20 +104,163 @@ protected void deleteEntityImpl(Entity anEntity) throws Exception
  */
 protected List <Row> getRowsImpl(Entity anEntity, Query aQuery)
 {
-    // Get entity rows
+    // Get condition (and compiled condition), sorts and fetch limit
     Condition condition = aQuery.getCondition();
-    Row entityRows[] = getEntityRows(anEntity).toArray(new Row[0]);
+    Predicate <Row> filter = condition!=null? condition.compile(anEntity) : row -> true;
+    List <Sort> sorts = aQuery.getSorts();
+    int limit = aQuery.getFetchLimit();
+    
+    // Get candidate rows from best index for condition (or all entity rows if no index applies)
+    List <Row> indexRows = getIndexedRows(anEntity, condition);
+    Row entityRows[] = (indexRows!=null? indexRows : getEntityRows(anEntity)).toArray(new Row[0]);
     
-    // Create fetch list and add rows that satisfy condition
+    // If no sorts, add rows that satisfy condition until fetch limit is hit
     List <Row> rows = new ArrayList();
-    for(Row row : entityRows)
-        if(condition==null || condition.getValue(anEntity, row))
-            rows.add(row);
+    if(sorts.size()==0) {
+        for(Row row : entityRows) {
+            if(rows.size()>=limit) break;
+            if(filter.test(row))
+                rows.add(row);
+        }
+    }
+    
+    // If sorts and fetch limit is less than rows, keep a heap of the best row indexes so far (worst at head).
+    // Ties are broken by index, so rows with equal keys keep their order, as with stable sort.
+    else if(limit<entityRows.length) {
+        Comparator <Row> rcomp = Sort.getComparator(sorts);
+        Comparator <Integer> comp = (i,j) -> { int c = rcomp.compare(entityRows[i], entityRows[j]);
+            return c!=0? c : Integer.compare(i, j); };
+        PriorityQueue <Integer> heap = new PriorityQueue(Math.max(limit,1)+1, comp.reversed());
+        for(int i=0; i<entityRows.length; i++) {
+            if(filter.test(entityRows[i])) {
+                heap.add(i); if(heap.size()>limit) heap.poll(); }
+        }
+        List <Integer> indexes = new ArrayList(heap); Collections.sort(indexes, comp);
+        for(int index : indexes) rows.add(entityRows[index]);
+    }
+    
+    // Otherwise, add rows that satisfy condition and sort
+    else {
+        for(Row row : entityRows)
+            if(filter.test(row))
+                rows.add(row);
+        Sort.sort(rows, sorts);
+    }
     
     // Return rows
     return rows;
 }
 
+/**
+ * Returns the rows that might satisfy given condition using the best property index, or null if no index applies.
+ * Only simple conditions and condition lists joined by And are considered. An Equals index is preferred (smallest
+ * match count wins), then the first supported range.
+ */
+protected List <Row> getIndexedRows(Entity anEntity, Condition aCondition)
+{
+    // Get simple conditions that must all be true (just return null if none)
+    List <Condition> conditions = getIndexableConditions(aCondition); if(conditions==null) return null;
+    
+    // Iterate over conditions to find the best index
+    List <Row> bestRows = null; Condition range = null;
+    for(Condition condition : conditions) {
+        
+        // Get property and value (skip if property can't be indexed)
+        Property property = anEntity.getProperty(condition.getPropertyName());
+        if(!RowIndex.isSupported(property)) continue;
+        Condition.Operator op = condition.getOperator();
+        
+        // Handle Equals: Get rows for value and use if smallest so far
+        if(op==Condition.Operator.Equals) {
+            Object value = property.convertValue(condition.getValue());
+            List <Row> rows = getRowIndex(anEntity, property).getRows(value);
+            if(bestRows==null || rows.size()<bestRows.size()) bestRows = rows;
+            if(rows.size()==0) break;
+        }
+        
+        // Handle supported range: Remember first
+        else if(range==null && RowIndex.isRangeSupported(property, op)) range = condition;
+    }
+    
+    // If no Equals index, try range
+    if(bestRows==null && range!=null) {
+        Property property = anEntity.getProperty(range.getPropertyName());
+        bestRows = getRowIndex(anEntity, property).getRows(range.getOperator(), property.convertValue(range.getValue()));
+    }
+    
+    // Return rows
+    return bestRows;
+}
+
+/**
+ * Returns the simple conditions that must all be true for given condition (or null if there are none).
+ */
+private List <Condition> getIndexableConditions(Condition aCondition)
+{
+    // Handle simple condition
+    if(aCondition==null || aCondition.isNegated()) return null;
+    if(!(aCondition instanceof ConditionList))
+        return aCondition.getIgnoreCase()? null : Collections.singletonList(aCondition);
+    
+    // Handle list: Only use if all operators (after the first) are And
+    ConditionList clist = (ConditionList)aCondition;
+    List <Condition> conditions = new ArrayList();
+    for(int i=0, iMax=clist.getConditionCount(); i<iMax; i++) {
+        if(i>0 && clist.getOperator(i)!=Condition.Operator.And) return null;
+        Condition condition = clist.getCondition(i);
+        if(condition instanceof ConditionList || condition.isNegated() || condition.getIgnoreCase()) continue;
+        conditions.add(condition);
+    }
+    return conditions.size()>0? conditions : null;
+}
+
+/**
+ * Returns the row index for given entity and property (created from entity rows on first use).
+ */
+protected synchronized RowIndex getRowIndex(Entity anEntity, Property aProp)
+{
+    Map <String,RowIndex> indexes = _indexes.get(anEntity);
+    if(indexes==null) _indexes.put(anEntity, indexes = new HashMap());
+    RowIndex index = indexes.get(aProp.getName());
+    if(index==null) indexes.put(aProp.getName(), index = new RowIndex(aProp, getEntityRows(anEntity)));
+    return index;
+}
+
+/**
+ * Updates the row indexes for given row: adds (or updates) if row is in entity rows, otherwise removes.
+ */
+protected synchronized void updateRowIndexes(Row aRow, boolean isAdd)
+{
+    Map <String,RowIndex> indexes = _indexes.get(aRow.getEntity()); if(indexes==null) return;
+    for(RowIndex index : indexes.values())
+        if(isAdd) index.add(aRow);
+        else index.remove(aRow);
+}
+
+/**
+ * Override to update row indexes when an indexed row value changes.
+ */
+public void propertyChange(PropChange anEvent)
+{
+    // Do normal version
+    super.propertyChange(anEvent);
+    
+    // If source is indexed row, update index for property
+    if(!(anEvent.getSource() instanceof Row)) return;
+    Row row = (Row)anEvent.getSource();
+    synchronized (this) {
+        Map <String,RowIndex> indexes = _indexes.get(row.getEntity());
+        RowIndex index = indexes!=null? indexes.get(anEvent.getPropertyName()) : null;
+        if(index!=null) index.update(row);
+        
+        // If auto-generated property max is set, make sure it includes new value
+        Property property = row.getEntity().getProperty(anEvent.getPropertyName());
+        Integer max = property!=null? _autoGenMax.get(property) : null;
+        if(max!=null && SnapUtils.intValue(anEvent.getNewValue())>max)
+            _autoGenMax.put(property, SnapUtils.intValue(anEvent.getNewValue()));
+    }
+}
+
 /**
  * Inserts or updates a given row.
  */
@@ -104,11 +279,16 @@ protected void saveRowImpl(Row aRow)
         // Set auto-generated properties
         for(Property property : entity.getProperties())
             if(property.isAutoGenerated()) {
-                int maxID = 0; for(Row row : entityRows) maxID = Math.max(maxID,SnapUtils.intValue(row.get(property)));
+                int maxID = Math.max(getAutoGenMax(property, entityRows), SnapUtils.intValue(aRow.get(property)));
                 aRow.put(property, maxID + 1);
+                synchronized (this) { _autoGenMax.put(property, maxID + 1); }
             }
     }
     
+    // Add to (or update) row indexes and add to row log
+    updateRowIndexes(aRow, true);
+    if(isUseRowLog()) getRowLog(entity).addPut(aRow);
+    
     // Add dirty entity
     synchronized (this) { _dirtyEntities.add(entity); }
 }
@@ -122,11 +302,34 @@ protected void deleteRowImpl(Row aRow)
     Entity entity = aRow.getEntity();
     List <Row> entityRows = getEntityRows(entity);
     
-    // Remove row and add row entity to DirtyEntities set
+    // Remove row (and from row indexes) and add row entity to DirtyEntities set
     ListUtils.removeId(entityRows, aRow);
+    updateRowIndexes(aRow, false);
+    if(isUseRowLog()) getRowLog(entity).addDelete(aRow);
     synchronized (this) { _dirtyEntities.add(entity); }
 }
 
+/**
+ * Returns the current max value for given auto-generated property (found from entity rows on first call).
+ */
+protected synchronized int getAutoGenMax(Property aProp, List <Row> theRows)
+{
+    Integer max = _autoGenMax.get(aProp); if(max!=null) return max;
+    int maxID = 0; for(Row row : theRows.toArray(new Row[0])) maxID = Math.max(maxID,SnapUtils.intValue(row.get(aProp)));
+    _autoGenMax.put(aProp, maxID);
+    return maxID;
+}
+
+/**
+ * Creates a row for given entity and map of values read from table data.
+ */
+private Row createRowForMap(Entity anEntity, Map aMap)
+{
+    Property primaryProperty = anEntity.getPrimary();
+    Object pvalue = primaryProperty.convertValue(aMap.get(primaryProperty.getName()));
+    return createRow(anEntity, pvalue, aMap);
+}
+
 /**
  * Save entity files for changed entities.
  */
@@ -139,12 +342,39 @@ protected void saveEntityFiles() throws Exception
         _dirtyEntities.clear();        
     }
 
-    // Save files
-    for(Entity entity : entities) saveEntityFile(entity);
+    // Save files (if saving CSV, delete any row log, since it would otherwise be read instead)
+    for(Entity entity : entities) {
+        if(isUseRowLog()) saveEntityLog(entity);
+        else {
+            saveEntityFile(entity);
+            WebFile lfile = getTableLogFile(entity.getName(), false);
+            if(lfile!=null) { lfile.delete(); getRowLog(entity).setFile(null); }
+        }
+    }
 }
 
 /**
- * Save entity files for changed entities.
+ * Save entity row log by appending changed rows (or rewriting all rows if log needs compaction).
+ */
+protected void saveEntityLog(Entity anEntity) throws Exception
+{
+    RowLog rowLog = getRowLog(anEntity);
+    if(rowLog.getFile()==null) rowLog.setFile(getTableLogFile(anEntity.getName(), true));
+    rowLog.flush(getEntityRows(anEntity));
+}
+
+/**
+ * Returns the row log for given entity.
+ */
+protected synchronized RowLog getRowLog(Entity anEntity)
+{
+    RowLog rowLog = _rowLogs.get(anEntity);
+    if(rowLog==null) _rowLogs.put(anEntity, rowLog = new RowLog(anEntity, getTableLogFile(anEntity.getName(), false)));
+    return rowLog;
+}
+
+/**
+ * Save entity CSV file (also used to export table data as CSV when using row log).
  */
 protected void saveEntityFile(Entity anEntity) throws Exception
 {
@@ -221,6 +451,17 @@ protected WebFile getTableDataFile(String aName, boolean doCreate)
     return tfile;
 }
 
+/**
+ * Returns the row log file for the given entity.
+ */
+protected WebFile getTableLogFile(String aName, boolean doCreate)
+{
+    String path = "/FileDB/" + aName + TableLogFileExt;
+    WebFile tfile = _wsite.getSandbox().getFile(path);
+    if(tfile==null && doCreate) tfile = _wsite.getSandbox().createFile(path, false);
+    return tfile;
+}
+
 /**
  * Returns the list of rows for a given entity.
  */
@@ -234,28 +475,38 @@ protected synchronized List <Row> getEntityRows(Entity anEntity)
     // Create and set entity rows list
     _entityRows.put(anEntity, entityRows = Collections.synchronizedList(new ArrayList()));
     
-    // Get entity file
-    WebFile entityFile = getTableDataFile(anEntity.getName(), false);
+    // Get row log file and entity file
+    WebFile logFile = getTableLogFile(anEntity.getName(), false);
+    WebFile entityFile = logFile==null? getTableDataFile(anEntity.getName(), false) : null;
     
-    // If file exists, read rows
-    if(entityFile!=null) {
+    // If row log file exists, read maps from log
+    List <Map> maps = null;
+    if(logFile!=null) {
+        RowLog rowLog = getRowLog(anEntity); rowLog.setFile(logFile);
+        try { maps = rowLog.readMaps(); }
+        catch(Exception e) { throw new RuntimeException(e); }
+    }
+    
+    // Otherwise, if CSV file exists, read records from file and create rows as they are read
+    else if(entityFile!=null) {
         
-        // Create CSVReader
+        // Create CSVReader (no need to infer property types, since entity is known)
         CSVReader csvReader = new CSVReader();
         csvReader.setFieldDelimiter(",");
         csvReader.setHasHeaderRow(true);
         csvReader.setHasQuotedFields(true);
+        csvReader.setTypeSampleCount(0);
         
-        // Read maps
-        List <Map> maps = csvReader.readObject(entityFile.getBytes(), anEntity.getName(), false);
-        
-        // Create rows for maps and add to entityRows list
-        Property primaryProperty = anEntity.getPrimary();
-        for(Map map : maps) {
-            Object pvalue = primaryProperty.convertValue(map.get(primaryProperty.getName()));
-            Row row = createRow(anEntity, pvalue, map);
-            entityRows.add(row);
-        }
+        // Read maps and add row for each
+        List <Row> rows = entityRows; byte bytes[] = entityFile.getBytes();
+        csvReader.readMaps(bytes, anEntity.getName(), false, map -> rows.add(createRowForMap(anEntity, map)));
+    }
+    
+    // If maps were read, create rows and add to entityRows list (and set them as logged rows)
+    if(maps!=null) {
+        for(Map map : maps)
+            entityRows.add(createRowForMap(anEntity, map));
+        getRowLog(anEntity).setLoggedRows(entityRows);
     }
     
     // Return entity rows
@@ -2,7 +2,6 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.data;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import snap.util.*;
 
@@ -47,6 +46,12 @@ public class Property extends SnapObject implements Comparable, JSONArchiver.Get
     // The enum values (for type Enum).
     List <String>  _enumValues;
     
+    // The date parser for string values
+    DateParser     _dateParser;
+    
+    // The index of this property's values in rows of entity (assigned by entity)
+    int            _slot = -1;
+    
     // The entity that describes the relation object(s)
     Entity         _relEntity;
     
@@ -173,12 +178,10 @@ public void setTypeFromSample(String aSample)
     // Handle null, empty string or Type already String
     if(aSample==null || aSample.length()==0 || getType()==Type.String) return;
     
-    // If type still assumed Date, try two common date formats and return if either work, otherwise change to Number
+    // If type still assumed Date, return if sample is a date (but not just digits), otherwise change to Number
     if(getType()==Type.Date) {
-        try { new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss").parse(aSample); return; }
-        catch(Exception e) { }
-        try { new SimpleDateFormat("yyyy-MM-dd").parse(aSample); return; }
-        catch(Exception e) { setType(Type.Number); }
+        if(!isDigits(aSample) && getDateParser().parseMillis(aSample)!=DateParser.FAIL) return;
+        setType(Type.Number);
     }
     
     // If type still assumed Number, try common number format and return if it works, otherwise change to String
@@ -188,6 +191,25 @@ public void setTypeFromSample(String aSample)
     }
 }
 
+/**
+ * Returns whether given string is all digits.
+ */
+private static boolean isDigits(String aStr)
+{
+    for(int i=0, iMax=aStr.length(); i<iMax; i++) if(!Character.isDigit(aStr.charAt(i))) return false;
+    return true;
+}
+
+/**
+ * Returns the index of this property's values in rows of its entity (or -1 if not in an entity).
+ */
+public int getSlot()  { return _slot; }
+
+/**
+ * Returns the date parser used to convert strings to dates for this property (remembers day/month order of values).
+ */
+public DateParser getDateParser()  { return _dateParser!=null? _dateParser : (_dateParser = new DateParser()); }
+
 /**
  * Returns whether this property is a primary key.
  */
@@ -479,8 +501,9 @@ public Property getRelationRemoteProperty()
  */
 public Object convertValue(Object anObj)
 {
-    // Do basic conversion
-    Object value = DataUtils.convertValue(anObj, getType(), getNumberType());
+    // Do basic conversion (use property date parser for date strings)
+    Object value = getType()==Type.Date && anObj instanceof String? getDateParser().parse((String)anObj) :
+        DataUtils.convertValue(anObj, getType(), getNumberType());
     
     // Special case for Binary - gets converted to Base64 below in toString()
     if(value==null && getType()==Type.Binary && anObj instanceof String)
@@ -8,8 +8,12 @@ import snap.util.JSONArchiver.*;
 
 /**
  * Represents a data bearing object from a WebSite.
+ *
+ * Values are kept in an array indexed by property slot (see Entity.getSlotCount()), so a row only costs an array slot
+ * per value and a property lookup is an array index. The Map methods are a view of the property values (with any
+ * values for keys that aren't entity properties).
  */
-public class Row extends HashMap <String,Object> implements PropChangeListener, GetKeys, GetValue, SetValue {
+public class Row extends AbstractMap <String,Object> implements PropChangeListener, GetKeys, GetValue, SetValue {
 
     // The DataSite that provided this row
     DataSite                   _site;
@@ -20,6 +24,12 @@ public class Row extends HashMap <String,Object> implements PropChangeListener,
     // The entity that describes the data in this row
     Entity                    _entity;
     
+    // The raw values for entity properties, by property slot
+    Object                    _values[] = EMPTY_VALUES;
+    
+    // The values for keys that aren't entity properties
+    Map <String,Object>       _others;
+    
     // Whether this row exists in WebSite
     boolean                   _exists;
     
@@ -35,6 +45,9 @@ public class Row extends HashMap <String,Object> implements PropChangeListener,
     // The modified PropertyChange
     final static String       Modified_Prop = "Modified";
     
+    // An empty values array
+    private static final Object EMPTY_VALUES[] = new Object[0];
+    
 /**
  * Returns the WebSite that created this row.
  */
@@ -66,7 +79,7 @@ public Property getProperty(String aName)  { return getEntity().getProperty(aNam
 public Object getPrimaryValue()
 {
     Property primaryProperty = getEntity().getPrimary();
-    Object primaryValue = get(primaryProperty.getName());
+    Object primaryValue = get(primaryProperty);
     return primaryValue instanceof Number && ((Number)primaryValue).longValue()==0? null : primaryValue;
 }
 
@@ -79,7 +92,7 @@ public void initValues(Map aMap)
     for(Property property : getEntity().getProperties()) { if(property.isPrimary()) continue;
         Object value = aMap!=null? aMap.get(property.getName()) : null;
         if(value==null) value = property.getDefaultValue();
-        if(value!=null) put(property.getName(), value);
+        if(value!=null) put(property, value);
     }
 }
 
@@ -96,7 +109,7 @@ public Object get(Object aKey)
 /**
  * Returns the current row value for key. If key is a relation, return value as a Row or List <Row>.
  */
-public Object get(String aKey)  { Property p = getProperty(aKey); return p!=null? get(p) : super.get(aKey); }
+public Object get(String aKey)  { Property p = getProperty(aKey); return p!=null? get(p) : getOther(aKey); }
 
 /**
  * Returns the current row value for key. If key is a relation, return value as a Row or List <Row>.
@@ -128,18 +141,58 @@ public Object getValue(Property aProperty)
  */
 protected Object getRaw(Property aProperty)
 {
-    // Get property name and value
-    String pname = aProperty.getName();
-    Object value = super.get(pname);
+    // Get value
+    Object value = getSlotValue(aProperty);
     
     // If null and property is derived relation, create and install row link
     if(value==null && aProperty.isRelation() && aProperty.isDerived())
-        super.put(pname, value = new RowLink(this, aProperty, null));
+        setSlotValue(aProperty, value = new RowLink(this, aProperty, null));
     
     // Return value
     return value;
 }
 
+/**
+ * Returns the raw value in slot of given property (for property of other entity, uses property with same name).
+ */
+private Object getSlotValue(Property aProperty)
+{
+    Property prop = aProperty.getEntity()==_entity && aProperty._slot>=0? aProperty :
+        _entity!=null? getProperty(aProperty.getName()) : null;
+    if(prop==null) return getOther(aProperty.getName());
+    int slot = prop._slot;
+    return slot<_values.length? _values[slot] : null;
+}
+
+/**
+ * Sets the raw value in slot of given property (for property of other entity, uses property with same name).
+ */
+private void setSlotValue(Property aProperty, Object aValue)
+{
+    Property prop = aProperty.getEntity()==_entity && aProperty._slot>=0? aProperty :
+        _entity!=null? getProperty(aProperty.getName()) : null;
+    if(prop==null) { setOther(aProperty.getName(), aValue); return; }
+    int slot = prop._slot;
+    if(slot>=_values.length) { if(aValue==null) return;
+        _values = Arrays.copyOf(_values, Math.max(_entity.getSlotCount(), slot + 1)); }
+    _values[slot] = aValue;
+}
+
+/**
+ * Returns the value for a key that isn't an entity property.
+ */
+private Object getOther(String aKey)  { return _others!=null? _others.get(aKey) : null; }
+
+/**
+ * Sets the value for a key that isn't an entity property.
+ */
+private void setOther(String aKey, Object aValue)
+{
+    if(aValue==null) { if(_others!=null) _others.remove(aKey); return; }
+    if(_others==null) _others = new HashMap();
+    _others.put(aKey, aValue);
+}
+
 /**
  * Put value by string.
  */
@@ -159,9 +212,8 @@ public Object put(Property aProperty, Object anObj)
     if(getExists() && getOriginal()==null) _original = createOriginal();
     
     // Put value, fire PropertyChange and set Modified
-    String pname = aProperty.getName();
-    super.put(pname, value);
-    firePropertyChange(pname, old, value, -1);
+    setSlotValue(aProperty, value);
+    firePropertyChange(aProperty.getName(), old, value, -1);
     if(getExists()) setModified(true);
     
     // Return old value
@@ -332,21 +384,111 @@ public List<String> getJSONKeys()
 /**
  * RMJSONArchiver method to get archiver values via getValue() and handle NewValues.
  */
-public Object getJSONValue(String aKey)  { return super.get(aKey); }
+public Object getJSONValue(String aKey)
+{
+    Property prop = _entity!=null? getProperty(aKey) : null;
+    return prop!=null? getSlotValue(prop) : getOther(aKey);
+}
 
 /**
  * RMJSONArchiver method to put archiver values and handle NewValues.
  */
-public void setJSONValue(String aKey, Object aValue)  { super.put(aKey, aValue); }
+public void setJSONValue(String aKey, Object aValue)
+{
+    Property prop = _entity!=null? getProperty(aKey) : null;
+    if(prop!=null) setSlotValue(prop, aValue);
+    else setOther(aKey, aValue);
+}
+
+/**
+ * Map method: Returns whether row has a value for given key.
+ */
+public boolean containsKey(Object aKey)  { return aKey instanceof String && getJSONValue((String)aKey)!=null; }
+
+/**
+ * Map method: Removes value for given key (without change notification) and returns the old raw value.
+ */
+public Object remove(Object aKey)
+{
+    if(!(aKey instanceof String)) return null;
+    Object old = getJSONValue((String)aKey);
+    if(old!=null) setJSONValue((String)aKey, null);
+    return old;
+}
+
+/**
+ * Map method: Removes all values (without change notification).
+ */
+public void clear()  { _values = EMPTY_VALUES; _others = null; }
+
+/**
+ * Map method: Returns the number of non-null values (of current entity properties, like entrySet, then other keys).
+ */
+public int size()
+{
+    int count = _others!=null? _others.size() : 0;
+    if(_entity!=null) for(Property prop : _entity.getProperties()) {
+        int slot = prop._slot; if(slot<_values.length && _values[slot]!=null) count++; }
+    return count;
+}
+
+/**
+ * Map method: Returns a set of entries for the non-null raw values (entity properties in order, then other keys).
+ */
+public Set <Map.Entry<String,Object>> entrySet()
+{
+    return new AbstractSet <Map.Entry<String,Object>>() {
+        public int size()  { return Row.this.size(); }
+        public Iterator <Map.Entry<String,Object>> iterator()
+        {
+            // Get entries for property values and other values
+            List <Map.Entry<String,Object>> entries = new ArrayList();
+            if(_entity!=null) for(Property prop : _entity.getProperties()) {
+                Object value = prop._slot<_values.length? _values[prop._slot] : null;
+                if(value!=null) entries.add(new Entry(prop.getName(), value)); }
+            if(_others!=null) for(Map.Entry <String,Object> e : _others.entrySet())
+                entries.add(new Entry(e.getKey(), e.getValue()));
+            
+            // Return iterator that removes from row
+            Iterator <Map.Entry<String,Object>> iter = entries.iterator();
+            return new Iterator <Map.Entry<String,Object>>() {
+                Map.Entry <String,Object> _last;
+                public boolean hasNext()  { return iter.hasNext(); }
+                public Map.Entry <String,Object> next()  { return _last = iter.next(); }
+                public void remove()  { iter.remove(); Row.this.remove(_last.getKey()); }
+            };
+        }
+    };
+}
 
 /**
  * Override to just check identity, since rows are unique.
  */
 public boolean equals(Object anObj)  { return anObj==this; }
 
+/**
+ * Override to match equals.
+ */
+public int hashCode()  { return System.identityHashCode(this); }
+
 /**
  * Standard toString implementation.
  */
 public String toString()  { return Key.getStringValue(this, getEntity().getDescriptorKeyGuess()); }
 
+/**
+ * A map entry for a row value (setValue sets raw value in row).
+ */
+private class Entry implements Map.Entry <String,Object> {
+    String _key; Object _value;
+    Entry(String aKey, Object aValue)  { _key = aKey; _value = aValue; }
+    public String getKey()  { return _key; }
+    public Object getValue()  { return _value; }
+    public Object setValue(Object aValue)  { setJSONValue(_key, aValue); Object old = _value; _value = aValue; return old; }
+    public boolean equals(Object anObj)  { if(!(anObj instanceof Map.Entry)) return false; Map.Entry other = (Map.Entry)anObj;
+        return Objects.equals(_key, other.getKey()) && Objects.equals(_value, other.getValue()); }
+    public int hashCode()  { return Objects.hashCode(_key) ^ Objects.hashCode(_value); }
+    public String toString()  { return _key + "=" + _value; }
+}
+
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.data;
+import java.util.*;
+import snap.data.Condition.Operator;
+import snap.util.*;
+
+/**
+ * An index of entity rows by the value of a property, so a DataSite can find the rows for a condition without
+ * testing every row.
+ *
+ * Rows are hashed by value for Equals. A sorted map of values is created on first range lookup (LessThan,
+ * GreaterThan, Before, After, StartsWith) and kept up to date from then on. Values are converted with the property,
+ * just like Condition.getValue(), so index lookups and conditions agree.
+ */
+public class RowIndex {
+
+    // The property
+    Property                    _prop;
+
+    // The rows for each value
+    Map <Object,List<Row>>      _hash = new HashMap();
+
+    // The rows for each value, sorted by value (created on first range lookup)
+    TreeMap <Object,List<Row>>  _sorted;
+
+    // The current indexed value for each row
+    Map <Row,Object>            _values = new IdentityHashMap();
+
+/**
+ * Creates a new RowIndex for given property and rows.
+ */
+public RowIndex(Property aProp, List <Row> theRows)
+{
+    _prop = aProp;
+    for(Row row : theRows.toArray(new Row[0])) add(row);
+}
+
+/**
+ * Returns the property.
+ */
+public Property getProperty()  { return _prop; }
+
+/**
+ * Returns the number of rows in index.
+ */
+public int getRowCount()  { return _values.size(); }
+
+/**
+ * Returns the number of distinct values in index.
+ */
+public int getValueCount()  { return _hash.size(); }
+
+/**
+ * Returns the index value for given row.
+ */
+protected Object getKey(Row aRow)  { return _prop.convertValue(aRow.getValue(_prop)); }
+
+/**
+ * Adds a row.
+ */
+public void add(Row aRow)
+{
+    if(_values.containsKey(aRow)) { update(aRow); return; }
+    Object key = getKey(aRow); _values.put(aRow, key);
+    addRow(_hash, key, aRow);
+    if(_sorted!=null) addRow(_sorted, key, aRow);
+}
+
+/**
+ * Removes a row.
+ */
+public void remove(Row aRow)
+{
+    if(!_values.containsKey(aRow)) return;
+    Object key = _values.remove(aRow);
+    removeRow(_hash, key, aRow);
+    if(_sorted!=null) removeRow(_sorted, key, aRow);
+}
+
+/**
+ * Updates a row if its value has changed.
+ */
+public void update(Row aRow)
+{
+    if(!_values.containsKey(aRow)) return;
+    Object old = _values.get(aRow), key = getKey(aRow); if(SnapUtils.equals(old, key)) return;
+    remove(aRow); add(aRow);
+}
+
+/**
+ * Returns whether index contains given row.
+ */
+public boolean contains(Row aRow)  { return _values.containsKey(aRow); }
+
+/**
+ * Returns the rows with given value (already converted with property).
+ */
+public List <Row> getRows(Object aValue)
+{
+    List <Row> rows = _hash.get(aValue);
+    return rows!=null? rows : Collections.EMPTY_LIST;
+}
+
+/**
+ * Returns the rows that might satisfy given operator and value (already converted with property), or null if index
+ * can't be used for operator. Returned rows are a superset that should still be tested with the condition.
+ */
+public List <Row> getRows(Operator anOp, Object aValue)
+{
+    // Handle Equals
+    if(anOp==Operator.Equals) return getRows(aValue);
+
+    // Get sorted map for ranges (just return null if operator/type not supported or value is null)
+    if(!isRangeSupported(_prop, anOp) || aValue==null) return null;
+    NavigableMap <Object,List<Row>> map = getSorted();
+
+    // Get sub map for range
+    switch(anOp) {
+        case LessThan: case Before: map = map.headMap(aValue, false); break;
+        case LessThanOrEqual: map = map.headMap(aValue, true); break;
+        case GreaterThan: map = map.tailMap(aValue, false); break;
+        case GreaterThanOrEqual: case After: map = map.tailMap(aValue, true); break;
+        case StartsWith: map = map.tailMap(aValue, true); break;
+        default: return null;
+    }
+
+    // Add rows for range (for StartsWith, stop at first value that doesn't start with prefix)
+    List <Row> rows = new ArrayList();
+    for(Map.Entry <Object,List<Row>> entry : map.entrySet()) {
+        if(anOp==Operator.StartsWith && !((String)entry.getKey()).startsWith((String)aValue)) break;
+        rows.addAll(entry.getValue());
+    }
+    return rows;
+}
+
+/**
+ * Returns the sorted map of values to rows.
+ */
+protected TreeMap <Object,List<Row>> getSorted()
+{
+    if(_sorted!=null) return _sorted;
+    TreeMap <Object,List<Row>> sorted = new TreeMap((o1,o2) -> SnapUtils.compare(o1, o2));
+    for(Map.Entry <Row,Object> entry : _values.entrySet()) addRow(sorted, entry.getValue(), entry.getKey());
+    return _sorted = sorted;
+}
+
+/**
+ * Adds a row to given map for given key.
+ */
+private static void addRow(Map <Object,List<Row>> aMap, Object aKey, Row aRow)
+{
+    List <Row> rows = aMap.get(aKey);
+    if(rows==null) aMap.put(aKey, rows = new ArrayList(2));
+    rows.add(aRow);
+}
+
+/**
+ * Removes a row from given map for given key.
+ */
+private static void removeRow(Map <Object,List<Row>> aMap, Object aKey, Row aRow)
+{
+    List <Row> rows = aMap.get(aKey); if(rows==null) return;
+    ListUtils.removeId(rows, aRow);
+    if(rows.size()==0) aMap.remove(aKey);
+}
+
+/**
+ * Returns whether rows can be indexed by given property.
+ */
+public static boolean isSupported(Property aProp)
+{
+    return aProp!=null && !aProp.isRelation() && !aProp.isDerived() && aProp.getType()!=Property.Type.Binary;
+}
+
+/**
+ * Returns whether a sorted index of given property can be used for given operator.
+ */
+public static boolean isRangeSupported(Property aProp, Operator anOp)
+{
+    Property.Type type = aProp.getType();
+    switch(anOp) {
+        case LessThan: case LessThanOrEqual: case GreaterThan: case GreaterThanOrEqual:
+            return type==Property.Type.String || type==Property.Type.Number || type==Property.Type.Date;
+        case Before: case After: return type==Property.Type.Date;
+        case StartsWith: return type==Property.Type.String;
+        default: return false;
+    }
+}
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.data;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import snap.util.ListUtils;
+import snap.web.*;
+
+/**
+ * An append-only binary log of the rows of an entity, used by FileDataSite as an alternative to whole-table CSV.
+ *
+ * The file starts with a header of property names, followed by Put records (all values of a row) and Delete records
+ * (primary value of a row). Saving a changed row just appends a record, so it costs O(row) instead of O(table). Rows
+ * are read by replaying records by primary value. The log is rewritten with just the live rows (compacted) when
+ * it has many more records than rows, or when the entity properties change.
+ *
+ * For local files, records are appended directly to the file and the file is read directly (bypassing WebFile bytes).
+ * Other sites fall back to reading and saving the file bytes.
+ */
+public class RowLog {
+
+    // The entity
+    Entity              _entity;
+
+    // The log file
+    WebFile             _file;
+
+    // The property names in log file header (null if not read or written yet)
+    List <String>       _propNames;
+
+    // The number of records in log file
+    int                 _recordCount;
+
+    // The rows to be written on next flush (Row for Put or Delete for Delete)
+    List <Object>       _pending = new ArrayList();
+
+    // The rows in pending list
+    Set <Row>           _pendingRows = Collections.newSetFromMap(new IdentityHashMap());
+    
+    // The primary value in log for each row (so a row with changed primary value can delete its old record)
+    Map <Row,Object>    _loggedKeys = new IdentityHashMap();
+
+    // Constants for header and records
+    static final int    MAGIC = 0x534E524C, VERSION = 1;
+    static final byte   PUT = 1, DELETE = 2;
+
+    // Constants for value types
+    static final byte   NULL = 0, STRING = 1, INT = 2, LONG = 3, DOUBLE = 4, FLOAT = 5, DECIMAL = 6, BOOLEAN = 7,
+                        DATE = 8, BYTES = 9;
+
+/**
+ * Creates a new RowLog for given entity and file.
+ */
+public RowLog(Entity anEntity, WebFile aFile)  { _entity = anEntity; _file = aFile; }
+
+/**
+ * Returns the entity.
+ */
+public Entity getEntity()  { return _entity; }
+
+/**
+ * Returns the log file.
+ */
+public WebFile getFile()  { return _file; }
+
+/**
+ * Sets the log file.
+ */
+public void setFile(WebFile aFile)  { _file = aFile; }
+
+/**
+ * Returns the number of records in log file.
+ */
+public int getRecordCount()  { return _recordCount; }
+
+/**
+ * Adds a row to be written on next flush.
+ */
+public synchronized void addPut(Row aRow)
+{
+    if(_pendingRows.add(aRow))
+        _pending.add(aRow);
+}
+
+/**
+ * Adds a row delete to be written on next flush.
+ */
+public synchronized void addDelete(Row aRow)
+{
+    if(_pendingRows.remove(aRow)) ListUtils.removeId(_pending, aRow);
+    Object key = _loggedKeys.remove(aRow);
+    _pending.add(new Delete(key!=null? key : getKey(aRow)));
+}
+
+/**
+ * Sets the rows that were created from maps read from log (so their logged primary values are known).
+ */
+public synchronized void setLoggedRows(List <Row> theRows)
+{
+    _loggedKeys.clear();
+    for(Row row : theRows) { Object key = getKey(row); if(key!=null) _loggedKeys.put(row, key); }
+}
+
+/**
+ * Returns the primary value for given row.
+ */
+protected Object getKey(Row aRow)
+{
+    Property primary = _entity.getPrimary();
+    return primary!=null? aRow.getValue(primary) : null;
+}
+
+/**
+ * Returns whether there are rows to be written.
+ */
+public synchronized boolean isPending()  { return _pending.size()>0; }
+
+/**
+ * Returns whether log should be rewritten with live rows for given row count.
+ */
+public boolean isCompactNeeded(int aRowCount)
+{
+    if(_file==null || _propNames==null || !_propNames.equals(getPropertyNames())) return true;
+    return _recordCount>Math.max(2*aRowCount, aRowCount + 1000);
+}
+
+/**
+ * Returns the names of the properties that are saved (not derived).
+ */
+protected List <String> getPropertyNames()
+{
+    List <String> names = new ArrayList();
+    for(Property prop : _entity.getProperties()) if(!prop.isDerived()) names.add(prop.getName());
+    return names;
+}
+
+/**
+ * Reads the log file and returns a map of values for each live row, in order added.
+ */
+public synchronized List <Map> readMaps() throws IOException
+{
+    // Get file bytes (read directly if local, so WebFile doesn't hold them) and read maps
+    File jfile = getLocalFile();
+    byte bytes[] = jfile!=null? Files.readAllBytes(jfile.toPath()) : _file.getBytes();
+    return readMaps(ByteBuffer.wrap(bytes));
+}
+
+/**
+ * Reads the log from given buffer and returns a map of values for each live row, in order added.
+ */
+protected List <Map> readMaps(ByteBuffer buf) throws IOException
+{
+    // Read header
+    if(buf.remaining()<10 || buf.getInt()!=MAGIC) throw new IOException("RowLog: Invalid file " + _file);
+    int version = buf.getShort(); if(version>VERSION) throw new IOException("RowLog: Unknown version " + version);
+    int count = buf.getInt(); List <String> names = new ArrayList(count);
+    for(int i=0;i<count;i++) names.add((String)readValue(buf));
+
+    // Get primary name (replay by primary value, or by record if primary isn't in header)
+    String pname = _entity.getPrimary()!=null? _entity.getPrimary().getName() : null;
+    int pindex = names.indexOf(pname);
+    Property primary = pindex>=0? _entity.getPrimary() : null;
+
+    // Read records: Put adds or replaces map for primary value and Delete removes (stop at incomplete record)
+    Map <Object,Map> maps = new LinkedHashMap(); _recordCount = 0;
+    while(buf.remaining()>=5) {
+        byte type = buf.get(); int len = buf.getInt(); if(len>buf.remaining()) break;
+        int end = buf.position() + len;
+        if(type==PUT) {
+            Map map = new HashMap(count*2);
+            for(int i=0;i<count;i++) map.put(names.get(i), readValue(buf));
+            Object key = primary!=null? primary.convertValue(map.get(pname)) : null;
+            maps.put(key!=null? key : new Object(), map);
+        }
+        else if(type==DELETE && primary!=null) {
+            Object key = primary.convertValue(readValue(buf));
+            if(key!=null) maps.remove(key);
+        }
+        buf.position(end); _recordCount++;
+    }
+
+    // Set header names and return maps
+    _propNames = names;
+    return new ArrayList(maps.values());
+}
+
+/**
+ * Writes pending rows to log file (or rewrites log with given rows if compaction is needed).
+ */
+public synchronized void flush(List <Row> theRows) throws IOException
+{
+    // If compaction needed, write all rows
+    if(isCompactNeeded(theRows.size())) { write(theRows); return; }
+
+    // Write records for pending rows and deletes (if row primary value changed, delete old record first)
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream dout = new DataOutputStream(bout); int count = 0;
+    Map <Row,Object> keys = new IdentityHashMap();
+    for(Object item : _pending) {
+        if(item instanceof Row) { Row row = (Row)item; Object key = getKey(row), old = _loggedKeys.get(row);
+            if(old!=null && !old.equals(key)) { writeRecord(dout, DELETE, null, old); count++; }
+            writeRecord(dout, PUT, row, null); count++;
+            keys.put(row, key);
+        }
+        else { writeRecord(dout, DELETE, null, ((Delete)item)._pvalue); count++; }
+    }
+
+    // Append to file and update logged primary values
+    append(bout.toByteArray());
+    for(Map.Entry <Row,Object> entry : keys.entrySet())
+        if(entry.getValue()!=null) _loggedKeys.put(entry.getKey(), entry.getValue());
+        else _loggedKeys.remove(entry.getKey());
+    _recordCount += count;
+    _pending.clear(); _pendingRows.clear();
+}
+
+/**
+ * Rewrites the log file with header and given rows.
+ */
+public synchronized void write(List <Row> theRows) throws IOException
+{
+    // Write header
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream dout = new DataOutputStream(bout);
+    List <String> names = getPropertyNames();
+    dout.writeInt(MAGIC); dout.writeShort(VERSION); dout.writeInt(names.size());
+    for(String name : names) writeValue(dout, name);
+
+    // Write rows
+    _propNames = names; Row rows[] = theRows.toArray(new Row[0]);
+    for(Row row : rows) writeRecord(dout, PUT, row, null);
+
+    // Set file bytes and save
+    _file.setBytes(bout.toByteArray());
+    _file.save();
+    _recordCount = rows.length;
+    _pending.clear(); _pendingRows.clear();
+    setLoggedRows(theRows);
+}
+
+/**
+ * Appends given bytes to log file.
+ */
+protected void append(byte theBytes[]) throws IOException
+{
+    // If local file, append and update WebFile (drop stale bytes, so they reload, and set size and modified time)
+    File jfile = getLocalFile();
+    if(jfile!=null) {
+        try(FileOutputStream fout = new FileOutputStream(jfile, true)) { fout.write(theBytes); }
+        _file.setBytes(null);
+        _file.setSize(jfile.length()); _file.setLastModifiedTime(jfile.lastModified());
+        return;
+    }
+
+    // Otherwise, append to file bytes and save
+    byte bytes[] = _file.getBytes(), bytes2[] = Arrays.copyOf(bytes, bytes.length + theBytes.length);
+    System.arraycopy(theBytes, 0, bytes2, bytes.length, theBytes.length);
+    _file.setBytes(bytes2);
+    _file.save();
+}
+
+/**
+ * Returns the java file for log file, if local and saved.
+ */
+protected File getLocalFile()
+{
+    if(!(_file.getSite() instanceof FileSite)) return null;
+    File jfile = _file.getStandardFile();
+    return jfile!=null && jfile.exists()? jfile : null;
+}
+
+/**
+ * Writes a record of given type for given row (or primary value) to given stream.
+ */
+private void writeRecord(DataOutputStream aStream, byte aType, Row aRow, Object aPValue) throws IOException
+{
+    // Write values to record buffer
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream dout = new DataOutputStream(bout);
+    if(aType==PUT) { for(String name : _propNames) { Property prop = _entity.getProperty(name);
+        writeValue(dout, prop!=null? aRow.getValue(prop) : null); } }
+    else writeValue(dout, aPValue);
+
+    // Write type, length and values
+    aStream.writeByte(aType); aStream.writeInt(bout.size()); bout.writeTo(aStream);
+}
+
+/**
+ * Writes a value to given stream.
+ */
+private static void writeValue(DataOutputStream aStream, Object aValue) throws IOException
+{
+    if(aValue==null) aStream.writeByte(NULL);
+    else if(aValue instanceof String) { byte bytes[] = ((String)aValue).getBytes(StandardCharsets.UTF_8);
+        aStream.writeByte(STRING); aStream.writeInt(bytes.length); aStream.write(bytes); }
+    else if(aValue instanceof Integer || aValue instanceof Short || aValue instanceof Byte) {
+        aStream.writeByte(INT); aStream.writeInt(((Number)aValue).intValue()); }
+    else if(aValue instanceof Long) { aStream.writeByte(LONG); aStream.writeLong((Long)aValue); }
+    else if(aValue instanceof Float) { aStream.writeByte(FLOAT); aStream.writeFloat((Float)aValue); }
+    else if(aValue instanceof BigDecimal) { aStream.writeByte(DECIMAL); writeValue(aStream, aValue.toString()); }
+    else if(aValue instanceof Number) { aStream.writeByte(DOUBLE); aStream.writeDouble(((Number)aValue).doubleValue()); }
+    else if(aValue instanceof Boolean) { aStream.writeByte(BOOLEAN); aStream.writeBoolean((Boolean)aValue); }
+    else if(aValue instanceof Date) { aStream.writeByte(DATE); aStream.writeLong(((Date)aValue).getTime()); }
+    else if(aValue instanceof byte[]) { byte bytes[] = (byte[])aValue;
+        aStream.writeByte(BYTES); aStream.writeInt(bytes.length); aStream.write(bytes); }
+    else writeValue(aStream, DataUtils.convertValue(aValue, Property.Type.String));
+}
+
+/**
+ * Reads a value from given buffer.
+ */
+private static Object readValue(ByteBuffer aBuf) throws IOException
+{
+    byte type = aBuf.get();
+    switch(type) {
+        case NULL: return null;
+        case STRING: { byte bytes[] = new byte[aBuf.getInt()]; aBuf.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8); }
+        case INT: return aBuf.getInt();
+        case LONG: return aBuf.getLong();
+        case DOUBLE: return aBuf.getDouble();
+        case FLOAT: return aBuf.getFloat();
+        case DECIMAL: return new BigDecimal((String)readValue(aBuf));
+        case BOOLEAN: return aBuf.get()!=0;
+        case DATE: return new Date(aBuf.getLong());
+        case BYTES: { byte bytes[] = new byte[aBuf.getInt()]; aBuf.get(bytes); return bytes; }
+        default: throw new IOException("RowLog: Invalid value type " + type);
+    }
+}
+
+/**
+ * A pending delete.
+ */
+private static class Delete {
+    Object _pvalue;
+    Delete(Object aValue)  { _pvalue = aValue; }
+}
+
+}
@@ -181,6 +181,11 @@ public static void sort(List aList, Sort ... theSorts)  { sort(aList, Arrays.asL
  */
 public static void sort(List aList, List aSortList)  { Collections.sort(aList, new SortsComparator(aSortList)); }
 
+/**
+ * Returns a comparator for given list of sorts.
+ */
+public static Comparator getComparator(List <Sort> theSorts)  { return new SortsComparator(theSorts); }
+
 /**
  * Returns a new sorted list from given collection.
  */
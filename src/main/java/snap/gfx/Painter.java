@@ -240,6 +240,17 @@ public void drawString(String aStr, double aX, double aY, double aCSpace)
         drawString(String.valueOf(c), x, aY); x += getFont().charAdvance(c) + aCSpace; }
 }
 
+/**
+ * Draw strings at given x locations and baseline with char spacing as one glyph run, reusing given glyphs (returned by
+ * last call for same strings) if still valid for current font and render state. Returns glyphs to pass to next call
+ * (null if painter doesn't cache glyphs).
+ */
+public Object drawGlyphs(String theStrs[], double theXs[], double aY, double aCSpace, Object theGlyphs)
+{
+    for(int i=0;i<theStrs.length;i++) drawString(theStrs[i], theXs[i], aY, aCSpace);
+    return null;
+}
+
 /**
  * Returns string bounds.
  */
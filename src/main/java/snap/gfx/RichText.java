@@ -20,6 +20,9 @@ public class RichText extends SnapObject implements CharSequence, Cloneable, XML
     // The length of this text
     int                  _length;
     
+    // The index of the last line found by getLineAt() (so sequential char lookups don't search)
+    int                  _lastLineIndex;
+    
     // The default text style for this text
     TextStyle            _defStyle = TextStyle.DEFAULT;
 
@@ -455,9 +458,20 @@ protected void updateLines(int anIndex)
  */
 public RichTextLine getLineAt(int anIndex)
 {
-    for(RichTextLine line : _lines)
-        if(anIndex<line.getEnd())
-            return line;
+    // Check last line found and the line after it
+    List <RichTextLine> lines = _lines; int lcount = lines.size(), last = _lastLineIndex;
+    for(int i=last, iMax=Math.min(last+2, lcount); i<iMax; i++) { RichTextLine line = lines.get(i);
+        if(anIndex>=line.getStart() && anIndex<line.getEnd()) { _lastLineIndex = i; return line; } }
+        
+    // Binary search for first line that ends after index
+    int lo = 0, hi = lcount - 1;
+    while(lo<=hi) { int mid = (lo + hi) >>> 1;
+        if(anIndex<lines.get(mid).getEnd()) hi = mid - 1;
+        else lo = mid + 1;
+    }
+    if(lo<lcount) { _lastLineIndex = lo; return lines.get(lo); }
+    
+    // Handle index at end
     if(anIndex==length()) return getLineLast();
     throw new IndexOutOfBoundsException("Index " + anIndex + " beyond " + length());
 }
@@ -47,6 +47,9 @@ public class TextBox implements PropChangeListener {
     // The lines in this text
     List <TextBoxLine>   _lines = new ArrayList();
     
+    // The index of the last line found by getLineAt() (so sequential char lookups don't search)
+    int                  _lastLineIndex;
+    
     // The preferred width/height
     double               _prefWidth = -1, _prefHeight = -1;
     
@@ -56,6 +59,14 @@ public class TextBox implements PropChangeListener {
     // The update start/end char indexes in RichText
     int                  _updStart, _updEndOld, _updEndNew;
     
+    // Whether to lay out lines only when shown (big updates get estimated lines) and the number of estimated lines
+    boolean              _lazyLayout;
+    int                  _estCount;
+    
+    // The number of updated RichTextLines above which lazy layout estimates lines, and the margin for shown lines
+    static final int     LAZY_LINE_COUNT = 100;
+    static final double  LAZY_MARGIN = 300;
+    
 /**
  * Creates a new TextBox.
  */
@@ -153,8 +164,11 @@ public void setBounds(Rect aRect)  { setBounds(aRect.getX(), aRect.getY(), aRect
 public void setBounds(double aX, double aY, double aW, double aH)
 {
     if(_x==aX && _y==aY && _width==aW && _height==aH) return;
+    
+    // If only y or height changed, lines don't change (unless they depend on bottom border or y alignment)
+    boolean keep = _x==aX && _width==aW && !_linked && _bpath==null && _alignY==VPos.TOP;
     _x = aX; _y = aY; _width = aW; _height = aH;
-    setNeedsUpdateAll(); //invalidate();
+    if(!keep) setNeedsUpdateAll(); //invalidate();
 }
 
 /**
@@ -230,6 +244,30 @@ public boolean isSingleStyle()  { return getText().isSingleStyle(); }
  */
 public void setSingleStyle(boolean aValue)  { getText().setSingleStyle(aValue); }
 
+/**
+ * Returns whether layout is lazy. If so, big updates add an estimated line for each RichTextLine, which is only laid
+ * out when shown (see layoutLinesForY()) or when a line is requested by char index or y.
+ */
+public boolean isLazyLayout()  { return _lazyLayout; }
+
+/**
+ * Sets whether layout is lazy.
+ */
+public void setLazyLayout(boolean aValue)
+{
+    if(aValue==_lazyLayout) return;
+    _lazyLayout = aValue; setNeedsUpdateAll();
+}
+
+/**
+ * Returns the number of estimated lines (lines not laid out yet with lazy layout).
+ */
+public int getEstimatedLineCount()
+{
+    if(_needsUpdate && !_updating) update();
+    return _estCount;
+}
+
 /**
  * Returns the start char in RichText.
  */
@@ -362,14 +400,36 @@ public List <TextBoxLine> getLines()
 }
 
 /**
- * Returns the TextLine at the given char index.
+ * Returns the TextLine at the given char index (lays out line if estimated).
  */
 public TextBoxLine getLineAt(int anIndex)
+{
+    TextBoxLine line = getLineAtImpl(anIndex);
+    if(line._estimated) { layoutLines(line.getIndex(), line.getIndex() + 1); line = getLineAtImpl(anIndex); }
+    return line;
+}
+
+/**
+ * Returns the TextLine at the given char index.
+ */
+protected TextBoxLine getLineAtImpl(int anIndex)
 {
     if(_needsUpdate && !_updating) update();
-    for(TextBoxLine line : _lines)
-        if(anIndex<line.getEnd())
-            return line;
+    
+    // Check last line found and the line after it
+    List <TextBoxLine> lines = _lines; int lcount = lines.size(), lastIndex = _lastLineIndex;
+    for(int i=lastIndex, iMax=Math.min(lastIndex+2, lcount); i<iMax; i++) { TextBoxLine line = lines.get(i);
+        if(anIndex>=line.getStart() && anIndex<line.getEnd()) { _lastLineIndex = i; return line; } }
+        
+    // Binary search for first line that ends after index
+    int lo = 0, hi = lcount - 1;
+    while(lo<=hi) { int mid = (lo + hi) >>> 1;
+        if(anIndex<lines.get(mid).getEnd()) hi = mid - 1;
+        else lo = mid + 1;
+    }
+    if(lo<lcount) { _lastLineIndex = lo; return lines.get(lo); }
+    
+    // Handle index at end
     TextBoxLine last = getLineLast(); if(last!=null && anIndex==last.getEnd()) return last;
     throw new IndexOutOfBoundsException("Index " + anIndex + " beyond " + boxlen());
 }
@@ -488,16 +548,20 @@ protected void updateLines(int aStart, int endOld, int endNew)
     _alignedY = 0;
     
     // Remove lines for old range RichTextLines
-    int sline = lcount>0? getLineAt(aStart).getIndex() : 0;
-    int eline = lcount>0? getLineAt(endOld).getIndex() : -1;
+    int sline = lcount>0? getLineAtImpl(aStart).getIndex() : 0;
+    int eline = lcount>0? getLineAtImpl(endOld).getIndex() : -1;
     while(eline+1<lcount && getLine(eline+1).getTextLine()==getLine(eline).getTextLine()) eline++;
-    for(int i=eline;i>=sline;i--) aStart = Math.min(_lines.remove(i).getStart(), aStart);
+    for(int i=eline;i>=sline;i--) { TextBoxLine line = _lines.remove(i); if(line._estimated) _estCount--;
+        aStart = Math.min(line.getStart(), aStart); }
     
-    // Add lines for updated RichTextLines
+    // Add lines for updated RichTextLines (if lazy layout and many lines, just add estimated lines)
     int start = Math.max(aStart, tbstart);
     int startRTL = getText().getLineAt(start).getIndex(), endRTL = getText().getLineAt(endNew).getIndex();
+    boolean estimate = isLazyLayout() && !isLinked() && _bpath==null && endRTL - startRTL>LAZY_LINE_COUNT;
     for(int i=startRTL, lindex=sline;i<=endRTL;i++) { RichTextLine rtl = getText().getLine(i);
         int lstart = Math.max(start-rtl.getStart(),0); if(lstart==rtl.length()) continue;
+        if(estimate) { TextBoxLine line = createLineEstimate(rtl, lstart); line._index = lindex;
+            _lines.add(lindex++, line); continue; }
         List <TextBoxLine> lines = createLines(rtl, lindex, lstart);
         for(TextBoxLine line : lines) { line._index = lindex;
             if((isLinked() || _bpath!=null) && line.getMaxY()>getMaxY()) {
@@ -538,6 +602,14 @@ protected void updateLines(int aStart, int endOld, int endNew)
  * Create and return TextBoxLines for given RichTextLine with line index and start char index.
  */
 protected List <TextBoxLine> createLines(RichTextLine aTextLine, int aLineIndex, int aStart)
+{
+    return createLines(aTextLine, aLineIndex>0? getLine(aLineIndex-1) : null, aStart);
+}
+
+/**
+ * Create and return TextBoxLines for given RichTextLine with previous line and start char index.
+ */
+protected List <TextBoxLine> createLines(RichTextLine aTextLine, TextBoxLine lastLn, int aStart)
 {
     // Get iteration variables
     int start = aStart, len = aTextLine.length(), lineStart = aStart;
@@ -547,7 +619,6 @@ protected List <TextBoxLine> createLines(RichTextLine aTextLine, int aLineIndex,
     boolean wrap = isWrapText(), hyphenate = isHyphenate();
     
     // Get start x/y
-    TextBoxLine lastLn = aLineIndex>0? getLine(aLineIndex-1) : null;
     double y = lastLn!=null? lastLn.getY() + lastLn.getLineAdvance() : getY();
     double x = getMinHitX(y,lineHt); while(x>getMaxX() && y<=getMaxY()) { y++; x = getMinHitX(y,lineHt); }
     double w = 0, cspace = style.getCharSpacing(); char c;
@@ -625,6 +696,94 @@ protected List <TextBoxLine> createLines(RichTextLine aTextLine, int aLineIndex,
     return lines;
 }
 
+/**
+ * Creates and returns an estimated line for the rest of given RichTextLine from given start char index.
+ */
+protected TextBoxLine createLineEstimate(RichTextLine aTextLine, int aStart)
+{
+    // Get start style and estimated width and line count (from average char width)
+    TextStyle style = aTextLine.getRun(0).getStyle();
+    if(_fontScale!=1) style = style.copyFor(style.getFont().scaleFont(_fontScale));
+    double w = (aTextLine.length() - aStart)*(style.getCharAdvance('x') + style.getCharSpacing());
+    int count = isWrapText() && getWidth()>0 && w>getWidth()? (int)Math.ceil(w/getWidth()) : 1;
+    
+    // Create line, set sizes and return
+    TextBoxLine line = new TextBoxLine(this, style, aTextLine, aStart); _estCount++;
+    line.setEstimatedSizes(count, isWrapText()? Math.min(w, getWidth()) : w);
+    return line;
+}
+
+/**
+ * Lays out estimated lines in given line index range. Returns whether any lines were laid out.
+ */
+protected boolean layoutLines(int aStart, int anEnd)
+{
+    // Get first estimated line in range (just return if none)
+    int start = aStart, end = Math.min(anEnd, _lines.size());
+    while(start<end && !_lines.get(start)._estimated) start++;
+    if(start>=end) return false;
+    
+    // Get lines for range with estimated lines laid out (and set y)
+    List <TextBoxLine> lines = new ArrayList(); TextBoxLine last = start>0? _lines.get(start-1) : null;
+    double yloc = last!=null? last.getYLocal() + last.getHeight() + last._leading : 0;
+    double ymax = _lines.get(end-1).getYLocal() + _lines.get(end-1).getHeight() + _lines.get(end-1)._leading;
+    for(int i=start;i<end;i++) { TextBoxLine line = _lines.get(i);
+        List <TextBoxLine> lns = line._estimated? createLines(line.getTextLine(), last, line.getTextLineStart()) :
+            Collections.singletonList(line);
+        if(line._estimated) _estCount--;
+        for(TextBoxLine ln : lns) { ln._yloc = yloc; yloc += ln.getHeight() + ln._leading; lines.add(ln); last = ln; }
+    }
+    
+    // Replace lines, update index of lines after them (if count changed) and reset y (if height changed)
+    _lines.subList(start, end).clear(); _lines.addAll(start, lines);
+    int lend = start + lines.size();
+    boolean indexChanged = lend!=end, yChanged = yloc!=ymax;
+    for(int i=start, iMax=indexChanged || yChanged? _lines.size() : lend; i<iMax; i++) { TextBoxLine line = _lines.get(i);
+        line._index = i; if(i>=lend && yChanged) line._yloc = -1; }
+    _prefWidth = _prefHeight = -1;
+    
+    // Reset aligned Y
+    if(_alignY!=VPos.TOP) {
+        double ph = getPrefHeight(), height = getHeight();
+        _alignedY = height>ph? _alignY.asDouble()*(height-ph) : 0;
+    }
+    return true;
+}
+
+/**
+ * Lays out estimated lines that intersect given y range (plus a margin), so they can be painted. Returns whether any
+ * lines were laid out.
+ */
+public boolean layoutLinesForY(double aMinY, double aMaxY)
+{
+    // Lay out lines in range until range has no estimated lines (laid out lines can be shorter than estimate)
+    boolean changed = false;
+    while(getEstimatedLineCount()>0) {
+        int start = getLineIndexForY(aMinY - LAZY_MARGIN), end = getLineIndexForY(aMaxY + LAZY_MARGIN) + 1;
+        if(!layoutLines(start, end)) break;
+        changed = true;
+    }
+    return changed;
+}
+
+/**
+ * Lays out up to given number of estimated lines below given y (for background layout). Returns whether any lines were
+ * laid out.
+ */
+public boolean layoutMore(double aY, int aCount)
+{
+    // Find first estimated line below y (just return if none)
+    if(getEstimatedLineCount()==0) return false;
+    int lcount = _lines.size(), start = getLineIndexForY(aY);
+    while(start<lcount && !_lines.get(start)._estimated) start++;
+    if(start>=lcount) return false;
+    
+    // Get end of range with given number of estimated lines and lay out
+    int end = start, count = 0;
+    while(end<lcount && count<aCount) if(_lines.get(end++)._estimated) count++;
+    return layoutLines(start, end);
+}
+
 /**
  * Returns whether given x location and run hit right border.
  */
@@ -684,13 +843,31 @@ public TextBoxLine getLineForY(double aY)
     // If y less than zero, return null
     if(aY<0) return null;
     
-    // Iterate over lines and return one that spans given y
-    for(int i=0, iMax=getLineCount(); i<iMax; i++) { TextBoxLine line = getLine(i);
-        if(aY < line.getMaxY())
-            return line; }
+    // Get first line that ends after given y (lay out line if estimated)
+    int index = getLineIndexForY(aY, true);
+    while(index<getLineCount() && getLine(index)._estimated) {
+        layoutLines(index, index + 1); index = getLineIndexForY(aY, true); }
     
-    // If no line for given y, return last line
-    return getLineLast();
+    // Return line (or last line if no line for given y)
+    return index<getLineCount()? getLine(index) : getLineLast();
+}
+
+/**
+ * Returns the index of first line that ends at or after given y (or line count if none).
+ */
+public int getLineIndexForY(double aY)  { return getLineIndexForY(aY, false); }
+
+/**
+ * Returns the index of first line that ends after given y (or at given y if not strict), or line count if none.
+ */
+private int getLineIndexForY(double aY, boolean isStrict)
+{
+    int lo = 0, hi = getLineCount() - 1;
+    while(lo<=hi) { int mid = (lo + hi) >>> 1; double maxY = getLine(mid).getMaxY();
+        if(isStrict? aY<maxY : aY<=maxY) hi = mid - 1;
+        else lo = mid + 1;
+    }
+    return lo;
 }
 
 /**
@@ -757,36 +934,43 @@ public void paint(Painter aPntr)
     Rect clip = aPntr.getClipBounds();
     clip = clip!=null? clip.getIntersectRect(getBounds()) : getBounds();
     
-    // Iterate over lines
-    for(int i=0, iMax=getLineCount(); i<iMax; i++) { TextBoxLine line = getLine(i); double ly = line.getBaseline();
-        if(line.getMaxY()<clip.getMinY()) continue;
+    // Lay out estimated lines in clip (if lazy layout)
+    if(getEstimatedLineCount()>0) layoutLinesForY(clip.getMinY(), clip.getMaxY());
+    
+    // Iterate over lines in clip and paint
+    for(int i=getLineIndexForY(clip.getMinY()), iMax=getLineCount(); i<iMax; i++) { TextBoxLine line = getLine(i);
         if(line.getY()>=clip.getMaxY()) break;
-        boolean underline = false;
-        
-        // Iterate over line tokens
-        for(int j=0,jMax=line.getTokenCount(); j<jMax;j++) { TextBoxToken token = line.getToken(j);
-        
-            // Do normal paint token
-            double tx = token.getX();
-            aPntr.setFont(token.getFont()); aPntr.setPaint(token.getColor()); //aPntr.setPaint(SnapColor.RED);
-            aPntr.drawString(token.getString(), tx, ly, token.getStyle().getCharSpacing());
-            if(token.isUnderlined()) underline = true;
-                
-            // Handle TextBorder: Get outline and stroke
-            if(token.getStyle().getBorder()!=null) { Border border = token.getStyle().getBorder();
-                Shape shape = token.getFont().getOutline(token.getString(), tx, ly, token.getStyle().getCharSpacing());
-                aPntr.setPaint(border.getColor());
-                aPntr.setStroke(Stroke.Stroke1.copyForWidth(border.getWidth()));
-                aPntr.draw(shape);
-            }
-        }
-        
-        // If underline encountered, iterate over runs and draw
-        if(underline) for(TextBoxRun run : line.getRuns()) {
-            if(run.getStyle().isUnderlined()) { double rx = run.getX(), rw = run.getWidth();
-                double uy = run.getFont().getUnderlineOffset(), uw = run.getFont().getUnderlineThickness();
-                aPntr.setStrokeWidth(uw); aPntr.drawLine(rx, ly-uy, rx + rw, ly-uy);
-            }
+        paintLine(aPntr, line);
+    }
+}
+
+/**
+ * Paints given line to given painter (same style tokens are painted with one call where possible).
+ */
+public void paintLine(Painter aPntr, TextBoxLine aLine)
+{
+    // Iterate over line runs and paint strings
+    double ly = aLine.getBaseline(); boolean border = false, underline = false;
+    for(TextBoxRun run : aLine.getRuns()) { TextStyle style = run.getStyle();
+        run.paintString(aPntr, ly);
+        border |= style.getBorder()!=null; underline |= style.isUnderlined();
+    }
+    
+    // If TextBorder encountered, iterate over tokens and stroke outlines
+    if(border) for(int j=0,jMax=aLine.getTokenCount(); j<jMax;j++) { TextBoxToken token = aLine.getToken(j);
+        Border bdr = token.getStyle().getBorder(); if(bdr==null) continue;
+        Shape shape = token.getFont().getOutline(token.getString(), token.getX(), ly, token.getStyle().getCharSpacing());
+        aPntr.setPaint(bdr.getColor());
+        aPntr.setStroke(Stroke.Stroke1.copyForWidth(bdr.getWidth()));
+        aPntr.draw(shape);
+    }
+    
+    // If underline encountered, iterate over runs and draw
+    if(underline) for(TextBoxRun run : aLine.getRuns()) {
+        if(run.getStyle().isUnderlined()) { double rx = run.getX(), rw = run.getWidth();
+            double uy = run.getFont().getUnderlineOffset(), uw = run.getFont().getUnderlineThickness();
+            aPntr.setPaint(run.getColor());
+            aPntr.setStrokeWidth(uw); aPntr.drawLine(rx, ly-uy, rx + rw, ly-uy);
         }
     }
 }
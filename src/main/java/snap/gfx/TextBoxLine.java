@@ -41,6 +41,9 @@ public class TextBoxLine implements CharSequence {
     
     // An array of character runs for the line
     List <TextBoxRun>    _runs;
+    
+    // Whether line is an estimate for the rest of its RichTextLine (not laid out yet)
+    boolean              _estimated;
 
 /**
  * Creates a new TextBoxLine.
@@ -126,10 +129,11 @@ public double getY()  { return _tbox.getAlignedY() + getYLocal(); }
  */
 public double getYLocal()
 {
+    // If not set, find last line with y and set y of lines after it (not recursive, so long runs of lines are ok)
     if(_yloc<0) {
-        int index = getIndex(); //validate();
-        TextBoxLine lastLine = index>0? _tbox.getLine(index-1) : null;
-        _yloc = lastLine!=null? (lastLine.getYLocal() + lastLine.getHeight() + lastLine._leading) : 0;
+        int index = getIndex(), i = index; while(i>0 && _tbox.getLine(i-1)._yloc<0) i--;
+        for(; i<=index; i++) { TextBoxLine line = _tbox.getLine(i), lastLine = i>0? _tbox.getLine(i-1) : null;
+            line._yloc = lastLine!=null? (lastLine._yloc + lastLine.getHeight() + lastLine._leading) : 0; }
     }
     return _yloc;
 }
@@ -228,6 +232,24 @@ public void resetSizes()
     }
 }
 
+/**
+ * Returns whether line is an estimate for the rest of its RichTextLine (lazy layout hasn't laid it out yet).
+ */
+public boolean isEstimated()  { return _estimated; }
+
+/**
+ * Sets estimated sizes for the rest of RichTextLine as given number of lines of start style with given width.
+ */
+protected void setEstimatedSizes(int aLineCount, double aWidth)
+{
+    _estimated = true;
+    _end = _rtline.getStart() + _rtline.length(); _length = _end - _start;
+    _ascent = _startStyle.getAscent(); _descent = _startStyle.getDescent(); _leading = _startStyle.getLeading();
+    _width = _widthAll = aWidth;
+    _height = aLineCount*(_ascent + _descent) + (aLineCount - 1)*_leading;
+    _lineAdvance = aLineCount*(_ascent + _descent + _leading);
+}
+
 /**
  * Returns the number of tokens.
  */
@@ -380,14 +402,26 @@ protected double getXForTabAtIndexAndX(int aCharInd, double aX)
 }
 
 /**
- * Returns the previous line if available.
+ * Returns the previous line if available (laid out, if estimated).
  */
-public TextBoxLine getPrevLine()  { return _index>0? _tbox.getLine(_index-1) : null; }
+public TextBoxLine getPrevLine()
+{
+    if(_index<=0) return null;
+    TextBoxLine line = _tbox.getLine(_index-1); if(!line._estimated) return line;
+    _tbox.layoutLines(_index-1, _index);
+    return _tbox.getLine(_index-1);
+}
 
 /**
- * Returns the next line, if available.
+ * Returns the next line, if available (laid out, if estimated).
  */
-public TextBoxLine getNextLine()  { return _index+1<_tbox.getLineCount()? _tbox.getLine(_index+1) : null; }
+public TextBoxLine getNextLine()
+{
+    if(_index+1>=_tbox.getLineCount()) return null;
+    TextBoxLine line = _tbox.getLine(_index+1); if(!line._estimated) return line;
+    _tbox.layoutLines(_index+1, _index+2);
+    return _tbox.getLine(_index+1);
+}
 
 /**
  * Returns the max stroke width of any underlined chars in this line.
@@ -32,6 +32,12 @@ public class TextBoxRun {
     // Returns the next run
     TextBoxRun     _next;
     
+    // Whether run tokens have the same font and color (so they can be painted as one glyph run)
+    Boolean        _joined;
+    
+    // The glyphs cached by painter for run tokens
+    Object         _glyphs;
+    
 /**
  * Creates a new TextBoxRun.
  */
@@ -122,6 +128,40 @@ public double getBaseline()  { return _line.getBaseline(); }
  */
 public boolean isHyphenated()  { return _hyph; }
 
+/**
+ * Returns whether run tokens have the same font and color (so they can be painted as one glyph run).
+ */
+public boolean isJoined()
+{
+    if(_joined!=null) return _joined;
+    TextBoxToken tok0 = _line.getToken(_startTokInd); boolean joined = true;
+    for(int i=_startTokInd+1; i<=_endTokInd && joined; i++) { TextBoxToken tok = _line.getToken(i);
+        joined = tok.getFont()==tok0.getFont() && tok.getColor()==tok0.getColor(); }
+    return _joined = joined;
+}
+
+/**
+ * Paints run tokens with given painter at given baseline (as one glyph run if joined), reusing cached glyphs.
+ */
+public void paintString(Painter aPntr, double aY)
+{
+    // If joined, paint token strings as one glyph run with first token font and color
+    double cs = _style.getCharSpacing();
+    if(isJoined()) { TextBoxToken tok0 = _line.getToken(_startTokInd);
+        int count = _endTokInd - _startTokInd + 1; String strs[] = new String[count]; double xs[] = new double[count];
+        for(int i=0;i<count;i++) { TextBoxToken tok = _line.getToken(_startTokInd + i);
+            strs[i] = tok.getString(); xs[i] = tok.getX(); }
+        aPntr.setFont(tok0.getFont()); aPntr.setPaint(tok0.getColor());
+        _glyphs = aPntr.drawGlyphs(strs, xs, aY, cs, _glyphs);
+    }
+    
+    // Otherwise paint tokens
+    else for(int i=_startTokInd; i<=_endTokInd; i++) { TextBoxToken tok = _line.getToken(i);
+        aPntr.setFont(tok.getFont()); aPntr.setPaint(tok.getColor());
+        tok._glyphs = aPntr.drawGlyphs(new String[] { tok.getString() }, new double[] { tok.getX() }, aY, cs, tok._glyphs);
+    }
+}
+
 /**
  * Returns the next run for text box line.
  */
@@ -41,6 +41,9 @@ public class TextBoxToken {
     // The link for token
     TextLink        _link;
     
+    // The glyphs cached by painter for token string
+    Object          _glyphs;
+    
 /**
  * Creates a new Token for given box line, TextStyle and character start/end.
  */
@@ -30,6 +30,10 @@ public class JFXPainter extends Painter {
     
     // The clip stack size
     int              _clipCount;
+    
+    // The last font set and its native font (so setFont can skip if context font hasn't changed)
+    Font             _font;
+    javafx.scene.text.Font _fxfont;
 
 /**
  * Creates a new Painter.
@@ -56,12 +60,16 @@ public JFXPainter(WritableImage anImage)
 /**
  * Returns the current font.
  */
-public Font getFont()  { return JFX.get(_gc.getFont()); }
+public Font getFont()  { return _gc.getFont()==_fxfont? _font : JFX.get(_gc.getFont()); }
 
 /**
- * Sets the current font.
+ * Sets the current font (skips if context already has font).
  */
-public void setFont(Font aFont)  { _gc.setFont(JFX.get(aFont)); }
+public void setFont(Font aFont)
+{
+    if(aFont!=null && aFont.equals(_font) && _gc.getFont()==_fxfont) return;
+    _font = aFont; _fxfont = JFX.get(aFont); _gc.setFont(_fxfont);
+}
 
 /**
  * Returns the current paint.
@@ -71,7 +79,12 @@ public Paint getPaint()  { return JFX.get(_gc.getFill()); }
 /**
  * Sets the current paint.
  */
-public void setPaint(Paint aPaint)  { javafx.scene.paint.Paint p = JFX.get(aPaint); _gc.setFill(p); _gc.setStroke(p); }
+public void setPaint(Paint aPaint)
+{
+    javafx.scene.paint.Paint p = JFX.get(aPaint);
+    if(p==null || !p.equals(_gc.getFill())) _gc.setFill(p);
+    if(p==null || !p.equals(_gc.getStroke())) _gc.setStroke(p);
+}
 
 /**
  * Returns the current stroke.
@@ -155,9 +168,9 @@ public void drawString(String aStr, double aX, double aY, double cs)
 {
     // If char spacing is non-zero, paint each char
     if(cs!=0) {
-        double x = aX;
+        double x = aX; Font font = getFont();
         for(int i=0,iMax=aStr.length();i<iMax; i++) { char c = aStr.charAt(i);
-            _gc.fillText(String.valueOf(c), x, aY); x += getFont().getCharAdvance(c,true) + cs; }
+            _gc.fillText(String.valueOf(c), x, aY); x += font.getCharAdvance(c,true) + cs; }
     }
     
     // Otherwise just fill text
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.parse;
+import java.util.*;
+import snap.parse.ParseRule.Op;
+
+/**
+ * A class to hold the FIRST set of each rule in a grammar - the patterns of the tokens that can start a rule.
+ *
+ * Since a failed Parser.parse() never consumes tokens, a rule can only match if the current token pattern is in
+ * its FIRST set. This lets the parser skip Or/And branches that can't match without descending into them.
+ * The sets are also stored in the rules (see ParseRule.getFirstSet()), since they only depend on the rule subtree.
+ * Rules are also numbered in the order they are found, for use as memo keys.
+ */
+public class FirstSets {
+
+    // The rules in grammar
+    List <ParseRule>                 _rules = new ArrayList();
+
+    // The rule indexes
+    Map <ParseRule,Integer>          _indexes = new IdentityHashMap();
+
+    // The first set for each rule (null means any token can start the rule)
+    List <Set<String>>               _sets = new ArrayList();
+
+/**
+ * Creates a new FirstSets for given top level rule.
+ */
+public FirstSets(ParseRule aRule)
+{
+    addRules(aRule);
+    for(int i=0;i<_rules.size();i++) _sets.add(new HashSet());
+
+    // Iterate until no set changes (sets only grow, so this terminates)
+    for(boolean changed=true; changed; ) { changed = false;
+        for(int i=0;i<_rules.size();i++) { Set <String> set = _sets.get(i); if(set==null) continue;
+            int size = set.size();
+            if(!addFirsts(_rules.get(i), set)) { _sets.set(i, null); changed = true; }
+            else if(set.size()!=size) changed = true;
+        }
+    }
+    
+    // Store sets in rules
+    for(int i=0;i<_rules.size();i++) _rules.get(i)._firstSet = _sets.get(i);
+}
+
+/**
+ * Adds given rule and all child rules.
+ */
+private void addRules(ParseRule aRule)
+{
+    Deque <ParseRule> stack = new ArrayDeque(); stack.push(aRule);
+    while(!stack.isEmpty()) { ParseRule rule = stack.pop();
+        if(_indexes.containsKey(rule)) continue;
+        _indexes.put(rule, _rules.size()); _rules.add(rule);
+        if(rule.getChild1()!=null) stack.push(rule.getChild1());
+        if(rule.getChild0()!=null) stack.push(rule.getChild0());
+    }
+}
+
+/**
+ * Adds the first patterns for given rule from current child sets. Returns false if any token can start rule.
+ */
+private boolean addFirsts(ParseRule aRule, Set <String> aSet)
+{
+    ParseRule r0 = aRule.getChild0(), r1 = aRule.getChild1();
+    switch(aRule.getOp()) {
+
+        // Handle Pattern
+        case Pattern: aSet.add(aRule.getPattern()); return true;
+
+        // Handle Or: Either child
+        case Or: return addAll(r0, aSet) && addAll(r1, aSet);
+
+        // Handle And: Rule 1 if rule 0 is look ahead, otherwise rule 0 (and rule 1 if rule 0 is optional)
+        case And:
+            if(r0.isLookAhead() && r0.getChild0()==null) return addAll(r1, aSet);
+            if(!addAll(r0, aSet)) return false;
+            return !r0.isOptional() || addAll(r1, aSet);
+
+        // Handle ZeroOrOne, ZeroOrMore, OneOrMore and LookAhead: Child
+        default: return addAll(r0, aSet);
+    }
+}
+
+/**
+ * Adds the current first set of given rule to given set. Returns false if any token can start rule.
+ */
+private boolean addAll(ParseRule aRule, Set <String> aSet)
+{
+    if(aRule==null) return false;
+    Set <String> set = _sets.get(_indexes.get(aRule)); if(set==null) return false;
+    aSet.addAll(set);
+    return true;
+}
+
+/**
+ * Returns the number of rules.
+ */
+public int getRuleCount()  { return _rules.size(); }
+
+/**
+ * Returns the index of given rule (or -1 if not in grammar).
+ */
+public int getIndex(ParseRule aRule)  { Integer index = _indexes.get(aRule); return index!=null? index : -1; }
+
+/**
+ * Returns the first set for given rule (or null if any token can start rule or rule not in grammar).
+ */
+public Set <String> getFirstSet(ParseRule aRule)
+{
+    int index = getIndex(aRule);
+    return index>=0? _sets.get(index) : null;
+}
+
+/**
+ * Returns whether given token can start given rule (uses set stored in rule).
+ */
+public static boolean canStart(ParseRule aRule, Token aToken)
+{
+    Set <String> set = aRule._firstSet;
+    return set==null || set.contains(aToken.getPattern());
+}
+
+}
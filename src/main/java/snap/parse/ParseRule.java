@@ -30,6 +30,9 @@ public class ParseRule {
     // The handler for parse rule
     ParseHandler        _handler;
     
+    // The patterns of tokens that can start this rule (set by FirstSets, null for any token)
+    Set <String>        _firstSet;
+    
     // Constants for booleans operators
     public enum Op { Or, And, ZeroOrOne, ZeroOrMore, OneOrMore, LookAhead, Pattern }
     
@@ -144,6 +147,11 @@ public ParseHandler getHandler()  { return _handler; }
  */
 public ParseRule setHandler(ParseHandler aHandler)  { _handler = aHandler; return this; }
 
+/**
+ * Returns the patterns of tokens that can start this rule, if set by FirstSets (null means any token).
+ */
+public Set <String> getFirstSet()  { return _firstSet; }
+
 /**
  * Returns whether rule is look ahead.
  */
@@ -158,9 +158,9 @@ private static String getPatQuoted(String aStr)
 }
 
 /**
- * Loads a rule for a class.
+ * Loads a rule for a class (synchronized, since ParseRuleParser keeps named rules in a static map while parsing).
  */
-public static ParseRule loadRule(Class aClass, String aName)
+public static synchronized ParseRule loadRule(Class aClass, String aName)
 {
     String name = aName!=null? aName : aClass.getSimpleName() + ".txt";
     WebURL url = WebURL.getURL(aClass, name); if(url==null) return null;
@@ -27,6 +27,19 @@ public class Parser {
     // The shared node used to report parse success
     ParseNode                  _sharedNode = new ParseNode();
     
+    // The FIRST sets for top level rule grammar
+    FirstSets                  _firstSets;
+    
+    // Whether to memoize parse failures and look ahead results by rule and token index
+    boolean                    _memoize;
+    
+    // The index of the current token in input
+    int                        _tokenIndex;
+    
+    // The memo of parse failures and look ahead results, keyed by rule index, token index and look ahead count
+    Set <Long>                 _parseFails = new HashSet();
+    Map <Long,Integer>         _lookAheads = new HashMap();
+    
 /**
  * Creates a new Parser.
  */
@@ -45,7 +58,7 @@ public ParseRule getRule()  { return _rule!=null? _rule : (_rule=createRule());
 /**
  * Sets the top level rule.
  */
-public void setRule(ParseRule aRule)  { _rule = aRule; }
+public void setRule(ParseRule aRule)  { _rule = aRule; _firstSets = null; }
 
 /**
  * Creates the top level rule. Default version tries to load rules from ClassName.txt.
@@ -57,6 +70,21 @@ protected ParseRule createRule()  { return ParseUtils.loadRule(getClass(), null)
  */
 public ParseRule getRule(String aName)  { return getRule().getRule(aName); }
 
+/**
+ * Returns the FIRST sets for top level rule grammar (creating if missing).
+ */
+public FirstSets getFirstSets()  { return _firstSets!=null? _firstSets : (_firstSets=new FirstSets(getRule())); }
+
+/**
+ * Returns whether parser memoizes parse failures and look ahead results by rule and token index.
+ */
+public boolean isMemoize()  { return _memoize; }
+
+/**
+ * Sets whether parser memoizes parse failures and look ahead results by rule and token index.
+ */
+public void setMemoize(boolean aValue)  { _memoize = aValue; _parseFails.clear(); _lookAheads.clear(); }
+
 /**
  * Returns the current parse character input.
  */
@@ -85,7 +113,8 @@ public void setCharIndex(int aLoc)
 {
     getTokenizer().setCharIndex(aLoc);
     _lookAheadTokens.clear();
-    _token = null;
+    _token = null; _tokenIndex = 0;
+    _parseFails.clear(); _lookAheads.clear();
 }
 
 /**
@@ -185,16 +214,19 @@ protected ParseNode parse(ParseRule aRule, HandlerRef aHRef)
     // Get current token (if no token, just return null)
     Token token = getToken(); if(token==null) return null;
     
+    // Make sure rules have FIRST sets
+    if(_firstSets==null) getFirstSets();
+    
     // Get handler reference for given rule: Reuse if no Rule.Handler, otherwise create new HandlerRef for rule
     HandlerRef href = aRule.getHandler()==null? aHRef : new HandlerRef(aRule);
     
     // Handle ops
     switch(aRule.getOp()) {
     
-        // Handle Or: Parse rules and break if either passes (return null if either fail)
+        // Handle Or: Parse rules and break if either passes (return null if either fail) - skip if token can't start
         case Or: { ParseRule r0 = aRule.getChild0(), r1 = aRule.getChild1();
-            if(parseSimple(r0, href)) break;
-            if(parseSimple(r1, href)) break;
+            if(FirstSets.canStart(r0, token) && parseSimple(r0, href)) break;
+            if(FirstSets.canStart(r1, token) && parseSimple(r1, href)) break;
             return null;
         }
         
@@ -248,7 +280,7 @@ protected ParseNode parse(ParseRule aRule, HandlerRef aHRef)
                     href.handler().parsedOne(node);
                     node._customNode = href.handler().parsedAll();
                 }
-                _token = null; //getNextToken();
+                _token = null; _tokenIndex++; //getNextToken();
                 return node;
             }
             return null;
@@ -273,9 +305,17 @@ protected ParseNode parse(ParseRule aRule, HandlerRef aHRef)
  */
 boolean parseSimple(ParseRule aRule, HandlerRef anHRef)
 {
+    // If memoizing, check for previous failure of rule at current token (failed parse never consumes tokens)
+    long key = _memoize && aRule._op!=ParseRule.Op.Pattern? getMemoKey(aRule, _tokenIndex, 0) : -1;
+    if(key>=0 && _parseFails.contains(key))
+        return false;
+    
+    // Parse rule (if failed, just return)
     ParseNode node = parse(aRule, anHRef);
-    if(node==null)
+    if(node==null) {
+        if(key>=0) _parseFails.add(key);
         return false;
+    }
     if(anHRef!=null && !aRule.isAnonymous())
         anHRef.handler().parsedOne(node);
     return true;
@@ -285,14 +325,35 @@ boolean parseSimple(ParseRule aRule, HandlerRef anHRef)
  * Looks ahead given number of tokens and returns the remainder or -1 if it fails.
  */
 protected int lookAhead(ParseRule aRule, int aTokenCount, int aTokenIndex)
+{
+    // If not memoizing or simple pattern, just return look ahead
+    if(!_memoize || aRule._op==ParseRule.Op.Pattern)
+        return lookAheadImpl(aRule, aTokenCount, aTokenIndex);
+    
+    // Get memo key for rule, token index and count (just return look ahead if not memoizable)
+    long key = getMemoKey(aRule, _tokenIndex + aTokenIndex, aTokenCount);
+    if(key<0) return lookAheadImpl(aRule, aTokenCount, aTokenIndex);
+    
+    // Return cached look ahead result (or get and cache)
+    Integer remainder = _lookAheads.get(key);
+    if(remainder==null) _lookAheads.put(key, remainder=lookAheadImpl(aRule, aTokenCount, aTokenIndex));
+    return remainder;
+}
+
+/**
+ * Looks ahead given number of tokens and returns the remainder or -1 if it fails.
+ */
+protected int lookAheadImpl(ParseRule aRule, int aTokenCount, int aTokenIndex)
 {
     // Handle ops
     switch(aRule.getOp()) {
     
-        // Handle Or
+        // Handle Or: Skip rules that token can't start
         case Or: { ParseRule r0 = aRule.getChild0(), r1 = aRule.getChild1();
-            int remainder = lookAhead(r0, aTokenCount, aTokenIndex); if(remainder>=0) return remainder;
-            return lookAhead(r1, aTokenCount, aTokenIndex);
+            Token token = getLookAheadToken(aTokenIndex); if(token==null) return -1;
+            int remainder = FirstSets.canStart(r0, token)? lookAhead(r0, aTokenCount, aTokenIndex) : -1;
+            if(remainder>=0) return remainder;
+            return FirstSets.canStart(r1, token)? lookAhead(r1, aTokenCount, aTokenIndex) : -1;
         }
         
         // Handle And
@@ -347,6 +408,15 @@ protected int lookAhead(ParseRule aRule, int aTokenCount, int aTokenIndex)
     }
 }
 
+/**
+ * Returns the memo key for given rule, token index and look ahead count (or -1 if rule not in grammar).
+ */
+private long getMemoKey(ParseRule aRule, int aTokenIndex, int aTokenCount)
+{
+    FirstSets fsets = getFirstSets(); int index = fsets.getIndex(aRule); if(index<0 || aTokenCount>=0x8000) return -1;
+    return (long)aTokenCount<<48 | (long)aTokenIndex*fsets.getRuleCount() + index;
+}
+
 /**
  * Creates a node for given rule and start/end tokens (returns a shared node by default).
  */
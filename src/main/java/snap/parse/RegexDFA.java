@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.parse;
+import java.util.*;
+
+/**
+ * A class to compile a list of Regex patterns into a single deterministic finite automaton for tokenizing.
+ *
+ * The DFA finds the longest match of all patterns at once. When patterns match the same length, the pattern with
+ * the greater literal length wins (then the pattern added first), which is the same resolution Tokenizer uses.
+ * Patterns that use regex features not expressible as a DFA (anchors, back references, lookaround, lazy/possessive
+ * quantifiers, etc.) are left out - see isSupported(Regex) - and should be matched with the regex engine.
+ */
+public class RegexDFA {
+
+    // The regexes
+    Regex             _regexes[];
+
+    // Whether each regex is handled by this DFA
+    boolean           _supported[];
+
+    // The char class boundaries (class i covers chars from _bounds[i-1] to _bounds[i]-1)
+    int               _bounds[];
+
+    // The char class for each ASCII char
+    int               _asciiClasses[] = new int[128];
+
+    // The number of char classes
+    int               _classCount;
+
+    // The state transition table: next state for (state * _classCount + class) or -1 for none
+    int               _trans[];
+
+    // The index of the accepted regex for each state (or -1 if state doesn't accept)
+    int               _accepts[];
+
+    // The maximum number of DFA states before compile gives up
+    public static int MAX_STATES = 10000;
+
+/**
+ * Creates a new RegexDFA for given regexes.
+ */
+public RegexDFA(Regex theRegexes[])
+{
+    _regexes = theRegexes; _supported = new boolean[theRegexes.length];
+    compile();
+}
+
+/**
+ * Returns the regexes.
+ */
+public Regex[] getRegexes()  { return _regexes; }
+
+/**
+ * Returns whether given regex is matched by this DFA.
+ */
+public boolean isSupported(Regex aRegex)
+{
+    for(int i=0;i<_regexes.length;i++) if(_regexes[i]==aRegex) return _supported[i];
+    return false;
+}
+
+/**
+ * Returns whether regex at given index is matched by this DFA.
+ */
+public boolean isSupported(int anIndex)  { return _supported[anIndex]; }
+
+/**
+ * Returns the number of states.
+ */
+public int getStateCount()  { return _accepts.length; }
+
+/**
+ * Returns the next state for given state and char (or -1 if none).
+ */
+public final int getNextState(int aState, char aChar)
+{
+    return _trans[aState*_classCount + (aChar<128? _asciiClasses[aChar] : getCharClass(aChar))];
+}
+
+/**
+ * Returns the index of the regex accepted at given state (or -1 if state doesn't accept).
+ */
+public final int getAcceptIndex(int aState)  { return _accepts[aState]; }
+
+/**
+ * Returns the end of the longest match in given input from given start (or -1 if no match).
+ * If match array is provided, the index of the matched regex is set in its first slot.
+ */
+public int match(CharSequence anInput, int aStart, int aMatch[])
+{
+    int state = 0, end = -1, index = -1;
+    for(int i=aStart, iMax=anInput.length(); i<iMax; i++) {
+        state = getNextState(state, anInput.charAt(i)); if(state<0) break;
+        int accept = _accepts[state];
+        if(accept>=0) { end = i + 1; index = accept; }
+    }
+    if(aMatch!=null) aMatch[0] = index;
+    return end;
+}
+
+/**
+ * Returns the char class for a char.
+ */
+int getCharClass(char aChar)
+{
+    int lo = 0, hi = _bounds.length - 1;
+    while(lo<=hi) { int mid = (lo + hi)>>>1;
+        if(_bounds[mid]<=aChar) lo = mid + 1; else hi = mid - 1; }
+    return lo;
+}
+
+/**
+ * Compiles the regexes into NFA fragments, then runs subset construction to build the DFA.
+ */
+protected void compile()
+{
+    // Create NFA: start state with epsilon transitions to each supported regex
+    List <NState> nstates = new ArrayList();
+    NState start = new NState(nstates);
+    for(int i=0;i<_regexes.length;i++) { Regex regex = _regexes[i];
+        Node node = null;
+        try { node = new PatternReader(regex.getPattern(), regex.isLiteral()).read(); }
+        catch(UnsupportedOperationException e) { }
+        if(node==null) continue;
+        NState accept = new NState(nstates); accept._accept = i;
+        Frag frag = node.build(nstates); frag._end._eps.add(accept);
+        start._eps.add(frag._start);
+        _supported[i] = true;
+    }
+
+    // Get char class boundaries from all NFA char sets
+    TreeSet <Integer> bset = new TreeSet();
+    for(NState ns : nstates) if(ns._chars!=null)
+        for(int i=0;i<ns._chars.length;i+=2) { bset.add(ns._chars[i]); bset.add(ns._chars[i+1]+1); }
+    bset.remove(0); bset.remove(0x10000);
+    _bounds = new int[bset.size()]; int bi = 0; for(Integer b : bset) _bounds[bi++] = b;
+    _classCount = _bounds.length + 1;
+    for(int i=0;i<128;i++) _asciiClasses[i] = getCharClass((char)i);
+
+    // Get representative char for each class (the class start)
+    int reps[] = new int[_classCount];
+    for(int i=1;i<_classCount;i++) reps[i] = _bounds[i-1];
+
+    // Run subset construction
+    Map <BitSet,Integer> ids = new HashMap();
+    List <BitSet> dstates = new ArrayList();
+    List <int[]> trans = new ArrayList();
+    BitSet set0 = closure(nstates, Collections.singletonList(start));
+    ids.put(set0, 0); dstates.add(set0);
+    for(int d=0; d<dstates.size(); d++) { BitSet dset = dstates.get(d);
+        int row[] = new int[_classCount]; trans.add(row);
+        for(int c=0;c<_classCount;c++) { List <NState> moved = new ArrayList();
+            for(int n=dset.nextSetBit(0); n>=0; n=dset.nextSetBit(n+1)) { NState ns = nstates.get(n);
+                if(ns._chars!=null && ns.contains(reps[c])) moved.add(ns._next); }
+            if(moved.isEmpty()) { row[c] = -1; continue; }
+            BitSet mset = closure(nstates, moved);
+            Integer id = ids.get(mset);
+            if(id==null) {
+                if(dstates.size()>=MAX_STATES) throw new IllegalStateException("RegexDFA: Too many states");
+                ids.put(mset, id=dstates.size()); dstates.add(mset);
+            }
+            row[c] = id;
+        }
+    }
+
+    // Flatten transition table and find best accepting regex for each state
+    int count = dstates.size(); _trans = new int[count*_classCount]; _accepts = new int[count];
+    for(int d=0;d<count;d++) { BitSet dset = dstates.get(d);
+        System.arraycopy(trans.get(d), 0, _trans, d*_classCount, _classCount);
+        int best = -1;
+        for(int n=dset.nextSetBit(0); n>=0; n=dset.nextSetBit(n+1)) { int acc = nstates.get(n)._accept;
+            if(acc<0) continue;
+            if(best<0 || _regexes[acc].getLiteralLength()>_regexes[best].getLiteralLength() ||
+                _regexes[acc].getLiteralLength()==_regexes[best].getLiteralLength() && acc<best)
+                best = acc;
+        }
+        _accepts[d] = best;
+    }
+}
+
+/**
+ * Returns the epsilon closure of given NFA states.
+ */
+private static BitSet closure(List <NState> theStates, List <NState> theSeeds)
+{
+    BitSet set = new BitSet(theStates.size());
+    Deque <NState> stack = new ArrayDeque(theSeeds);
+    while(!stack.isEmpty()) { NState ns = stack.pop();
+        if(set.get(ns._id)) continue;
+        set.set(ns._id);
+        for(NState e : ns._eps) stack.push(e);
+    }
+    return set;
+}
+
+/**
+ * An NFA state: Either a char set transition to next state, epsilon transitions, or both (none for accept).
+ */
+private static class NState {
+    int _id, _chars[], _accept = -1; NState _next; List <NState> _eps = new ArrayList(2);
+    NState(List <NState> theStates)  { _id = theStates.size(); theStates.add(this); }
+    boolean contains(int c)  {
+        for(int i=0;i<_chars.length;i+=2) if(c>=_chars[i] && c<=_chars[i+1]) return true; return false; }
+}
+
+/**
+ * An NFA fragment with start and end state.
+ */
+private static class Frag {
+    NState _start, _end;
+    Frag(NState aStart, NState anEnd)  { _start = aStart; _end = anEnd; }
+}
+
+/**
+ * A regex syntax tree node.
+ */
+private static abstract class Node {
+    abstract Frag build(List <NState> theStates);
+}
+
+/**
+ * A node to match a char set (sorted, merged array of inclusive ranges).
+ */
+private static class CharsNode extends Node {
+    int _ranges[];
+    CharsNode(int theRanges[])  { _ranges = theRanges; }
+    Frag build(List <NState> theStates)  {
+        NState s = new NState(theStates), e = new NState(theStates); s._chars = _ranges; s._next = e;
+        return new Frag(s, e);
+    }
+}
+
+/**
+ * A node to match a sequence of nodes.
+ */
+private static class SeqNode extends Node {
+    List <Node> _nodes = new ArrayList();
+    Frag build(List <NState> theStates)  {
+        NState s = new NState(theStates), e = s;
+        for(Node n : _nodes) { Frag f = n.build(theStates); e._eps.add(f._start); e = f._end; }
+        return new Frag(s, e);
+    }
+}
+
+/**
+ * A node to match one of a list of nodes.
+ */
+private static class AltNode extends Node {
+    List <Node> _nodes = new ArrayList();
+    Frag build(List <NState> theStates)  {
+        NState s = new NState(theStates), e = new NState(theStates);
+        for(Node n : _nodes) { Frag f = n.build(theStates); s._eps.add(f._start); f._end._eps.add(e); }
+        return new Frag(s, e);
+    }
+}
+
+/**
+ * A node to match a node repeated from min to max times (max -1 for unbounded).
+ */
+private static class RepeatNode extends Node {
+    Node _node; int _min, _max;
+    RepeatNode(Node aNode, int aMin, int aMax)  { _node = aNode; _min = aMin; _max = aMax; }
+    Frag build(List <NState> theStates)  {
+        NState s = new NState(theStates), e = s;
+        for(int i=0;i<_min;i++) { Frag f = _node.build(theStates); e._eps.add(f._start); e = f._end; }
+        if(_max<0) {
+            Frag f = _node.build(theStates); NState end = new NState(theStates);
+            e._eps.add(f._start); e._eps.add(end); f._end._eps.add(f._start); f._end._eps.add(end);
+            return new Frag(s, end);
+        }
+        NState end = new NState(theStates); e._eps.add(end);
+        for(int i=_min;i<_max;i++) { Frag f = _node.build(theStates); e._eps.add(f._start); e = f._end;
+            e._eps.add(end); }
+        return new Frag(s, end);
+    }
+}
+
+/**
+ * Reads a java.util.regex pattern into a Node tree, throwing UnsupportedOperationException for unsupported syntax.
+ */
+private static class PatternReader {
+
+    // The pattern, whether literal and the current index
+    String _pat; boolean _literal; int _index;
+
+    // Standard char sets
+    static final int DIGIT[] = { '0', '9' };
+    static final int WORD[] = { '0', '9', 'A', 'Z', '_', '_', 'a', 'z' };
+    static final int SPACE[] = { '\t', '\r', ' ', ' ' };
+    static final int DOT[] = invert(new int[] { '\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029 });
+
+    /** Creates new PatternReader. */
+    PatternReader(String aPattern, boolean isLiteral)  { _pat = aPattern; _literal = isLiteral; }
+
+    /** Reads the pattern. */
+    Node read()
+    {
+        // Handle literal
+        if(_literal) { SeqNode seq = new SeqNode();
+            for(int i=0;i<_pat.length();i++) { char c = _pat.charAt(i); seq._nodes.add(chars(c, c)); }
+            return seq;
+        }
+
+        // Read alternation and make sure whole pattern was read
+        Node node = readAlt();
+        if(_index<_pat.length()) unsupported();
+        return node;
+    }
+
+    /** Reads alternation. */
+    Node readAlt()
+    {
+        AltNode alt = new AltNode(); alt._nodes.add(readSeq());
+        while(more() && peek()=='|') { _index++; alt._nodes.add(readSeq()); }
+        return alt._nodes.size()==1? alt._nodes.get(0) : alt;
+    }
+
+    /** Reads sequence. */
+    Node readSeq()
+    {
+        SeqNode seq = new SeqNode();
+        while(more() && peek()!='|' && peek()!=')')
+            seq._nodes.add(readRepeat(readAtom()));
+        return seq;
+    }
+
+    /** Reads optional quantifier for given node. */
+    Node readRepeat(Node aNode)
+    {
+        Node node = aNode;
+        while(more()) { char c = peek(); int min, max;
+            if(c=='*') { min = 0; max = -1; _index++; }
+            else if(c=='+') { min = 1; max = -1; _index++; }
+            else if(c=='?') { min = 0; max = 1; _index++; }
+            else if(c=='{') { _index++;
+                min = max = readInt();
+                if(more() && peek()==',') { _index++; max = more() && peek()=='}'? -1 : readInt(); }
+                if(!more() || next()!='}' || max>=0 && max<min || Math.max(min,max)>100) unsupported();
+            }
+            else break;
+
+            // Lazy and possessive quantifiers have different semantics
+            if(more() && (peek()=='?' || peek()=='+')) unsupported();
+            node = new RepeatNode(node, min, max);
+        }
+        return node;
+    }
+
+    /** Reads an atom. */
+    Node readAtom()
+    {
+        char c = next();
+        switch(c) {
+            case '(': {
+                if(more() && peek()=='?') { _index++;
+                    if(!more() || next()!=':') unsupported(); }
+                Node node = readAlt();
+                if(!more() || next()!=')') unsupported();
+                return node;
+            }
+            case '[': return new CharsNode(readClass());
+            case '.': return new CharsNode(DOT);
+            case '\\': return new CharsNode(readEscape(false));
+            case '^': case '$': case ')': case '*': case '+': case '?': case '{': return unsupported();
+            default: return chars(c, c);
+        }
+    }
+
+    /** Reads a char class (after the open bracket). */
+    int[] readClass()
+    {
+        boolean negate = more() && peek()=='^'; if(negate) _index++;
+        List <int[]> sets = new ArrayList(); boolean first = true;
+        while(true) {
+            if(!more()) unsupported();
+            char c = next();
+            if(c==']' && !first) break;
+            first = false;
+            if(c=='[' || c=='&' && more() && peek()=='&') unsupported();
+
+            // Get range start (escapes can be whole sets)
+            int lo;
+            if(c=='\\') { int set[] = readEscape(true);
+                if(set.length>2 || set[0]!=set[1]) { sets.add(set); continue; }
+                lo = set[0];
+            }
+            else lo = c;
+
+            // Handle range
+            if(more() && peek()=='-' && _index+1<_pat.length() && _pat.charAt(_index+1)!=']') { _index++;
+                char c2 = next(); int hi;
+                if(c2=='\\') { int set[] = readEscape(true); if(set.length>2 || set[0]!=set[1]) unsupported();
+                    hi = set[0]; }
+                else if(c2=='[') return unsupported();
+                else hi = c2;
+                if(hi<lo) unsupported();
+                sets.add(new int[] { lo, hi });
+            }
+            else sets.add(new int[] { lo, lo });
+        }
+
+        // Merge sets, invert if negated
+        int ranges[] = union(sets);
+        return negate? invert(ranges) : ranges;
+    }
+
+    /** Reads an escape (after the backslash) and returns char set. */
+    int[] readEscape(boolean inClass)
+    {
+        char c = next();
+        switch(c) {
+            case 'd': return DIGIT;
+            case 'D': return invert(DIGIT);
+            case 'w': return WORD;
+            case 'W': return invert(WORD);
+            case 's': return SPACE;
+            case 'S': return invert(SPACE);
+            case 't': return single('\t');
+            case 'n': return single('\n');
+            case 'r': return single('\r');
+            case 'f': return single('\f');
+            case 'a': return single('\u0007');
+            case 'e': return single('\u001B');
+            case '0': { int val = 0, count = 0;
+                while(more() && count<3 && peek()>='0' && peek()<='7' && val*8+(peek()-'0')<=0377) {
+                    val = val*8 + (next()-'0'); count++; }
+                if(count==0) unsupported();
+                return single(val);
+            }
+            case 'x': return single(readHex(2));
+            case 'u': return single(readHex(4));
+            default:
+                if(Character.isLetterOrDigit(c)) unsupported();
+                return single(c);
+        }
+    }
+
+    /** Reads given number of hex digits. */
+    int readHex(int aCount)
+    {
+        int val = 0;
+        for(int i=0;i<aCount;i++) { int d = more()? Character.digit(next(), 16) : -1;
+            if(d<0) unsupported(); val = val*16 + d; }
+        return val;
+    }
+
+    /** Reads an int. */
+    int readInt()
+    {
+        int start = _index; while(more() && Character.isDigit(peek())) _index++;
+        if(start==_index || _index-start>3) unsupported();
+        return Integer.parseInt(_pat.substring(start, _index));
+    }
+
+    /** Helper methods. */
+    boolean more()  { return _index<_pat.length(); }
+    char peek()  { return _pat.charAt(_index); }
+    char next()  { if(!more()) unsupported(); return _pat.charAt(_index++); }
+    static CharsNode chars(int lo, int hi)  { return new CharsNode(new int[] { lo, hi }); }
+    static int[] single(int c)  { return new int[] { c, c }; }
+    static <T> T unsupported()  { throw new UnsupportedOperationException(); }
+}
+
+/**
+ * Returns the union of given range arrays as a sorted, merged range array.
+ */
+static int[] union(List <int[]> theSets)
+{
+    List <int[]> ranges = new ArrayList();
+    for(int set[] : theSets) for(int i=0;i<set.length;i+=2) ranges.add(new int[] { set[i], set[i+1] });
+    Collections.sort(ranges, (a,b) -> a[0]-b[0]);
+    List <int[]> merged = new ArrayList();
+    for(int r[] : ranges) { int last[] = merged.isEmpty()? null : merged.get(merged.size()-1);
+        if(last!=null && r[0]<=last[1]+1) last[1] = Math.max(last[1], r[1]);
+        else merged.add(new int[] { r[0], r[1] });
+    }
+    int result[] = new int[merged.size()*2];
+    for(int i=0;i<merged.size();i++) { result[i*2] = merged.get(i)[0]; result[i*2+1] = merged.get(i)[1]; }
+    return result;
+}
+
+/**
+ * Returns the inverse of given sorted, merged range array over all chars.
+ */
+static int[] invert(int theRanges[])
+{
+    List <Integer> list = new ArrayList(); int next = 0;
+    for(int i=0;i<theRanges.length;i+=2) {
+        if(theRanges[i]>next) { list.add(next); list.add(theRanges[i]-1); }
+        next = theRanges[i+1] + 1;
+    }
+    if(next<=0xFFFF) { list.add(next); list.add(0xFFFF); }
+    int result[] = new int[list.size()]; for(int i=0;i<result.length;i++) result[i] = list.get(i);
+    return result;
+}
+
+}
@@ -31,6 +31,18 @@ public class Tokenizer {
 
     // A map of char to matchers
     Regex            _charMatchers[][] = new Regex[128][];
+    
+    // Whether to match patterns with a combined DFA (with regex matchers for patterns DFA can't express)
+    boolean          _useDFA;
+    
+    // The DFA for regexes (if using DFA)
+    RegexDFA         _dfa;
+    
+    // A map of char to indexes of regexes not supported by DFA
+    int              _charIndexesDFA[][];
+    
+    // An array to hold DFA match index
+    int              _dfaMatch[] = new int[1];
 
 /**
  * Returns the current tokenizer input.
@@ -92,6 +104,16 @@ public boolean isReadMultiLineComments()  { return _mlc; }
  */
 public void setReadMultiLineComments(boolean aValue)  { _mlc = aValue; _jc = _slc || _mlc; }
 
+/**
+ * Returns whether tokenizer matches patterns with a combined DFA instead of trying each regex.
+ */
+public boolean isUseDFA()  { return _useDFA; }
+
+/**
+ * Sets whether tokenizer matches patterns with a combined DFA instead of trying each regex.
+ */
+public void setUseDFA(boolean aValue)  { _useDFA = aValue; _dfa = null; }
+
 /**
  * Adds a pattern.
  */
@@ -107,7 +129,7 @@ public void addPattern(String aName, String aPattern, boolean isLiteral)
 
     // Create and add new regex
     _regexList.add(new Regex(aName, pattern, isLiteral));
-    _regexes = null;
+    _regexes = null; _dfa = null;
 }
 
 /**
@@ -132,6 +154,18 @@ private void addPatterns(ParseRule aRule, List theRules)
  */
 protected Regex[] getRegexes()  { return _regexes!=null? _regexes : (_regexes=_regexList.toArray(new Regex[0])); }
 
+/**
+ * Returns the DFA for regexes (creating it if missing). If DFA can't be built, turns off UseDFA and returns null.
+ */
+protected RegexDFA getDFA()
+{
+    if(_dfa!=null) return _dfa;
+    try { _dfa = new RegexDFA(getRegexes()); }
+    catch(IllegalStateException e) { _useDFA = false; }
+    _charIndexesDFA = new int[129][];
+    return _dfa;
+}
+
 /**
  * CharSequence method.
  */
@@ -170,6 +204,10 @@ public Token getNextToken()
     // Get next special token
     Token specialToken = getNextSpecialToken();
     
+    // If using DFA, return DFA token
+    if(_useDFA && getDFA()!=null)
+        return getNextTokenDFA(specialToken);
+    
     // Get list of matchers for next char
     char c = _charIndex<length()? getChar() : 0;
     Regex regexes[] = c<128? getRegexes(c) : getRegexes();
@@ -204,6 +242,64 @@ public Token getNextToken()
     return token;
 }
 
+/**
+ * Returns the next token using DFA (with regex engine for any regexes not supported by DFA).
+ */
+protected Token getNextTokenDFA(Token aSpclTkn)
+{
+    // If at end, just return null
+    if(_charIndex==length()) return null;
+    
+    // Get longest DFA match
+    RegexDFA dfa = getDFA(); Regex regexes[] = getRegexes();
+    int matchEnd = dfa.match(_input, _charIndex, _dfaMatch), matchIndex = _dfaMatch[0];
+    
+    // Check any regexes not supported by DFA (resolved like getNextToken: longest, then literal length, then order)
+    for(int index : getRegexIndexesDFA(getChar())) { Regex regex = regexes[index];
+        Matcher matcher = regex.getMatcher(_input);
+        matcher.region(_charIndex, _input.length());
+        if(matcher.lookingAt()) { int end = matcher.end();
+            if(matchIndex<0 || end>matchEnd || end==matchEnd &&
+                (regex.getLiteralLength()>regexes[matchIndex].getLiteralLength() ||
+                 regex.getLiteralLength()==regexes[matchIndex].getLiteralLength() && index<matchIndex)) {
+                matchIndex = index; matchEnd = end; }
+        }
+    }
+    
+    // If no match, complain
+    if(matchIndex<0)
+        throw new ParseException("Token not found for: " + getInput(_charIndex, Math.min(_charIndex+30,length())));
+    
+    // Create new token, reset end and return new token
+    Regex match = regexes[matchIndex];
+    Token token = createToken(match.getName(), match.getPattern(), _charIndex, matchEnd, aSpclTkn);
+    _charIndex = matchEnd;
+    return token;
+}
+
+/**
+ * Returns the indexes of Regexes not supported by DFA for a char (in order).
+ */
+protected int[] getRegexIndexesDFA(char aChar)
+{
+    // Get cached index array for char (non-ASCII chars share last slot)
+    int index = Math.min(aChar, 128);
+    int indexes[] = _charIndexesDFA[index];
+    
+    // If not found, create array from indexes of regexes for char that aren't supported by DFA
+    if(indexes==null) {
+        Regex regexes[] = aChar<128? getRegexes(aChar) : getRegexes(); RegexDFA dfa = getDFA();
+        indexes = new int[regexes.length]; int count = 0;
+        for(Regex regex : regexes)
+            if(!dfa.isSupported(regex))
+                indexes[count++] = _regexList.indexOf(regex);
+        indexes = _charIndexesDFA[index] = Arrays.copyOf(indexes, count);
+    }
+    
+    // Return indexes array
+    return indexes;
+}
+
 /**
  * Returns list of Regex for a char.
  */
@@ -7,6 +7,7 @@ import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.text.Bidi;
 import java.util.Arrays;
 import snap.gfx.*;
 
@@ -42,9 +43,15 @@ public J2DPainter(Graphics aGr)
 public Paint getPaint()  { return AWT.get(_gfx.getPaint()); }
 
 /**
- * Sets the paint in painter.
+ * Sets the paint in painter (skips if graphics already has color).
  */
-public void setPaint(Paint aPaint)  { _gfx.setPaint(AWT.get(aPaint)); }
+public void setPaint(Paint aPaint)
+{
+    java.awt.Paint paint = _gfx.getPaint();
+    if(aPaint instanceof Color && paint instanceof java.awt.Color &&
+        ((java.awt.Color)paint).getRGB()==((Color)aPaint).getRGBA()) return;
+    _gfx.setPaint(AWT.get(aPaint));
+}
 
 /**
  * Returns the current stroke.
@@ -75,9 +82,13 @@ public void setOpacity(double aValue)
 public Font getFont()  { return _font; } Font _font = Font.Arial12;
 
 /**
- * Sets the font in painter.
+ * Sets the font in painter (skips if graphics already has font).
  */
-public void setFont(Font aFont)  {_gfx.setFont(AWT.get(aFont)); _font = aFont; }
+public void setFont(Font aFont)
+{
+    java.awt.Font font = AWT.get(aFont); if(font!=_gfx.getFont()) _gfx.setFont(font);
+    _font = aFont;
+}
 
 /**
  * Clears a rect.
@@ -124,25 +135,80 @@ public void drawString(String aStr, double aX, double aY, double cs)
         _gfx.drawString(aStr, (float)aX, (float)aY);
         
     // Handle char spacing
-    else {
-        
-        // Get font render context
-        Graphics2D g2d = _gfx; //str = str.trim();
-        FontRenderContext c = g2d.getFontRenderContext();
-        Font font = getFont();
-        GlyphVector gv = g2d.getFont().createGlyphVector(c, aStr);
-        
-        // Adjust glyph positions for char spacing
-        Point2D.Double p = new Point2D.Double(0, 0);
-        for(int i=0, iMax=aStr.length()-1; i<iMax; i++) {
-            double adv = font.charAdvance(aStr.charAt(i)); //if(!getUseFractionalMetrics()) adv = Math.ceil(adv);
-            p.x += adv + cs;
-            gv.setGlyphPosition(i+1, p);
-        }
-        
-        // Return glyph vector
-        g2d.drawGlyphVector(gv, (float)aX, (float)aY);
+    else _gfx.drawGlyphVector(getGlyphVector(aStr, cs), (float)aX, (float)aY);
+}
+
+/**
+ * Override to draw strings with one cached GlyphVector (created if cached glyphs are for other strings, relative x
+ * locations, font or render context).
+ */
+public Object drawGlyphs(String theStrs[], double theXs[], double aY, double cs, Object theGlyphs)
+{
+    // If cached glyphs are for strings, font and render context, just draw them
+    java.awt.Font font = _gfx.getFont(); FontRenderContext frc = _gfx.getFontRenderContext();
+    Glyphs glyphs = theGlyphs instanceof Glyphs? (Glyphs)theGlyphs : null;
+    if(glyphs!=null && glyphs.isValid(theStrs, theXs, cs, font, frc)) {
+        _gfx.drawGlyphVector(glyphs._gv, (float)theXs[0], (float)aY); return glyphs; }
+    
+    // If any string needs bidi layout, just draw strings
+    for(String str : theStrs)
+        if(cs==0 && Bidi.requiresBidi(str.toCharArray(), 0, str.length())) {
+            for(int i=0;i<theStrs.length;i++) drawString(theStrs[i], theXs[i], aY, cs); return null; }
+    
+    // Create glyphs, draw and return
+    glyphs = new Glyphs(theStrs, theXs, cs, font, frc);
+    glyphs._gv = theStrs.length==1? getGlyphVector(theStrs[0], cs) : getGlyphVector(theStrs, theXs, cs);
+    _gfx.drawGlyphVector(glyphs._gv, (float)theXs[0], (float)aY);
+    return glyphs;
+}
+
+/**
+ * Returns a GlyphVector for given strings at given x locations (relative to first) and char spacing with current font.
+ */
+protected GlyphVector getGlyphVector(String theStrs[], double theXs[], double cs)
+{
+    // Get glyph vector for each string
+    GlyphVector gvs[] = new GlyphVector[theStrs.length]; int count = 0;
+    for(int i=0;i<theStrs.length;i++) { gvs[i] = getGlyphVector(theStrs[i], cs); count += gvs[i].getNumGlyphs(); }
+    
+    // Collect glyph codes and positions (offset by string x)
+    int codes[] = new int[count]; float pnts[] = new float[count*2];
+    for(int i=0, j=0;i<gvs.length;i++) { GlyphVector gv = gvs[i]; int n = gv.getNumGlyphs();
+        int cds[] = gv.getGlyphCodes(0, n, null); float pts[] = gv.getGlyphPositions(0, n, null);
+        double dx = theXs[i] - theXs[0];
+        for(int k=0;k<n;k++,j++) { codes[j] = cds[k]; pnts[j*2] = (float)(pts[k*2] + dx); pnts[j*2+1] = pts[k*2+1]; }
     }
+    
+    // Create glyph vector for glyph codes and set positions
+    GlyphVector gv = _gfx.getFont().createGlyphVector(_gfx.getFontRenderContext(), codes);
+    Point2D.Float pnt = new Point2D.Float();
+    for(int i=0;i<count;i++) { pnt.setLocation(pnts[i*2], pnts[i*2+1]); gv.setGlyphPosition(i, pnt); }
+    return gv;
+}
+
+/**
+ * Returns a GlyphVector for given string and char spacing with current font.
+ */
+protected GlyphVector getGlyphVector(String aStr, double cs)
+{
+    // Get font render context and glyph vector (if no char spacing, just return laid out glyphs)
+    Graphics2D g2d = _gfx; //str = str.trim();
+    FontRenderContext c = g2d.getFontRenderContext();
+    if(cs==0)
+        return g2d.getFont().layoutGlyphVector(c, aStr.toCharArray(), 0, aStr.length(), java.awt.Font.LAYOUT_LEFT_TO_RIGHT);
+    Font font = getFont();
+    GlyphVector gv = g2d.getFont().createGlyphVector(c, aStr);
+    
+    // Adjust glyph positions for char spacing
+    Point2D.Double p = new Point2D.Double(0, 0);
+    for(int i=0, iMax=aStr.length()-1; i<iMax; i++) {
+        double adv = font.charAdvance(aStr.charAt(i)); //if(!getUseFractionalMetrics()) adv = Math.ceil(adv);
+        p.x += adv + cs;
+        gv.setGlyphPosition(i+1, p);
+    }
+    
+    // Return glyph vector
+    return gv;
 }
 
 /**
@@ -281,4 +347,36 @@ public Graphics2D getNative()  { return _gfx; }
 /** Rounds a value. */
 private static final int rnd(double aVal)  { return (int)Math.round(aVal); }
 
+/**
+ * A GlyphVector cached for strings at relative x locations, with the font, render context and char spacing it was
+ * created for.
+ */
+private static class Glyphs {
+    
+    // The strings, x locations relative to first and char spacing
+    String _strs[]; double _dxs[], _cs;
+    
+    // The font and render context
+    java.awt.Font _font; FontRenderContext _frc;
+    
+    // The GlyphVector
+    GlyphVector _gv;
+    
+    /** Creates new glyphs for given strings, x locations, char spacing, font and render context. */
+    Glyphs(String theStrs[], double theXs[], double cs, java.awt.Font aFont, FontRenderContext aFRC)
+    {
+        _strs = theStrs; _dxs = new double[theXs.length]; _cs = cs; _font = aFont; _frc = aFRC;
+        for(int i=0;i<theXs.length;i++) _dxs[i] = theXs[i] - theXs[0];
+    }
+    
+    /** Returns whether glyphs are for given strings, x locations, char spacing, font and render context. */
+    boolean isValid(String theStrs[], double theXs[], double cs, java.awt.Font aFont, FontRenderContext aFRC)
+    {
+        if(theStrs.length!=_strs.length || cs!=_cs || !_font.equals(aFont) || !_frc.equals(aFRC)) return false;
+        for(int i=0;i<theStrs.length;i++)
+            if(theStrs[i]!=_strs[i] || theXs[i] - theXs[0]!=_dxs[i]) return false;
+        return true;
+    }
+}
+
 }
\ No newline at end of file
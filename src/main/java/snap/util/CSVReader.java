@@ -2,10 +2,14 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.util;
-import java.io.File;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import snap.data.*;
-import snap.parse.*;
 
 /**
  * A class for reading file of comma separated values, or really any separated values.
@@ -35,6 +39,15 @@ public class CSVReader {
     
     // The entity generated by the most previous read
     Entity                      _entity;
+    
+    // The number of records used to infer property types when creating entity (-1 for all records)
+    int                         _typeSampleCount = 1000;
+    
+    // The number of chars in the chunks that a source is read and parsed in
+    int                         _chunkSize = 4*1024*1024;
+    
+    // The min number of chars used to read format
+    static final int            FORMAT_SAMPLE_SIZE = 64*1024;
 
 /**
  * Returns the field delimiter.
@@ -76,6 +89,26 @@ public boolean getHasQuotedFields()  { return _hasQuotedFields; }
  */
 public void setHasQuotedFields(boolean aFlag)  { _hasQuotedFields = aFlag; }
 
+/**
+ * Returns the number of records used to infer property types when creating entity (-1 for all records).
+ */
+public int getTypeSampleCount()  { return _typeSampleCount; }
+
+/**
+ * Sets the number of records used to infer property types when creating entity (-1 for all records).
+ */
+public void setTypeSampleCount(int aCount)  { _typeSampleCount = aCount; }
+
+/**
+ * Returns the number of chars in the chunks that a source is read and parsed in.
+ */
+public int getChunkSize()  { return _chunkSize; }
+
+/**
+ * Sets the number of chars in the chunks that a source is read and parsed in.
+ */
+public void setChunkSize(int aSize)  { _chunkSize = Math.max(aSize, 1); }
+
 /**
  * Reads given source and returns list of maps.
  */
@@ -91,90 +124,85 @@ public List <Map> readObject(Object aSource, Entity anEntity)
 }
 
 /**
- * Reads records from given string (and creates entity).
+ * Reads records from given source (and creates entity).
  */
 public List <Map> readObject(Object aSource, String aName, boolean doReadFormat)
 {
-    // Get source string
-    String string = getSourceString(aSource);
-    if(string==null)
-        return null;
-    
-    // If we should try to divine format, try to read format
-    if(doReadFormat)
-        readFormat(string);
-    
-    // Get records
-    String records[] = getRecords(string);
-    
-    // Create list of lists
-    List <String[]> dataset = new ArrayList();
-    
-    // Iterate over records, get fields and add to dataset
-    for(int i=0; i<records.length; i++) { String record = records[i];
-        String fields[] = getFields(record);
-        dataset.add(fields);
-    }
-    
-    // If entity not set, create from first record
+    List <Map> maps = new ArrayList();
+    return readMaps(aSource, aName, doReadFormat, map -> maps.add(map))? maps : null;
+}
+
+/**
+ * Reads records from given source as maps and passes them to given consumer in order, without holding all records
+ * (creates entity from first record if not set). Returns false if source not found.
+ */
+public boolean readMaps(Object aSource, String aName, boolean doReadFormat, Consumer <Map> aConsumer)
+{
+    // Create entity from first record if not set
     boolean createEntity = _entity==null;
-    if(createEntity) {
-        _entity = new Entity(aName!=null? aName : getSourceName(aSource));
+    String name = aName!=null? aName : getSourceName(aSource);
+    MapReader mapReader = new MapReader(createEntity, name, aConsumer);
     
-        // Get first record
-        String record0[] = dataset.get(0);
-        
-        // Iterate over first record
-        for(int i=0; i<record0.length; i++) {
-            
-            // Get property name - trim quotes if needed
-            String propertyName = getHasHeaderRow()? record0[i].trim() : "Field" + i;
-            if(getHasQuotedFields() && propertyName.startsWith("\"") && propertyName.endsWith("\""))
-                propertyName = propertyName.substring(1, propertyName.length()-1);
-            
-            // Create and add new property (start with type Date, so setTypeFromSample can try to refine)
-            _entity.addProperty(new Property(propertyName, Property.Type.Date));
-        }
-    }
-    
-    // Create maps list
-    List <Map> maps = new ArrayList();
+    // Read records into map reader (if no records, just create empty entity)
+    if(!readRecords(aSource, doReadFormat, mapReader))
+        return false;
+    if(createEntity && _entity==null)
+        _entity = new Entity(name);
+    return true;
+}
 
-    // Iterate over records to determine property types and add rows
-    for(int i=getHasHeaderRow()? 1 : 0, iMax=dataset.size(); i<iMax; i++) { String record[] = dataset.get(i);
-        
-        // Create map
-        Map map = new HashMap();
+/**
+ * Reads records from given source (File, InputStream, bytes or CSV String) and passes their fields to given consumer
+ * in order. Source is read in chunks that end on a record delimiter and chunks are parsed in parallel on the common
+ * fork-join pool, so only a few chunks are held at a time. If reading format, it is read from the start of source.
+ * Returns false if source not found.
+ */
+public boolean readRecords(Object aSource, boolean doReadFormat, Consumer <String[]> aConsumer)
+{
+    // Get chunk reader for source
+    ChunkReader chunkReader = getChunkReader(aSource);
+    if(chunkReader==null)
+        return false;
+    
+    // Get first chunk and read format from it (add chunks if needed for a reasonable sample)
+    try {
+        String chunk = chunkReader.next();
+        if(doReadFormat && chunk!=null) {
+            for(String next; chunk.length()<FORMAT_SAMPLE_SIZE && (next=chunkReader.next())!=null; )
+                chunk = chunk.concat(next);
+            readFormat(chunk);
+        }
         
-        // Iterate over entity properties
-        for(int j=0, jMax=_entity.getPropertyCount(), k=0; j<jMax; j++) { Property property = _entity.getProperty(j);
+        // Get record delimiter, pool and max number of chunks to parse at once
+        String recDelimiter = getRecordDelimiter();
+        ForkJoinPool pool = ForkJoinPool.commonPool(); int maxTasks = pool.getParallelism() + 1;
+        Deque <ForkJoinTask<List<String[]>>> tasks = new ArrayDeque();
         
-            // If entity was provided, skip properties that are private, autogenerated or relations
-            if(!createEntity && (property.isPrivate() || property.isAutoGenerated() || property.isAutoGenerated()))
-                continue;
+        // Iterate over chunks: Add remainder of last chunk, parse up to last record delimiter and keep remainder
+        String rest = "";
+        for(; chunk!=null; chunk=chunkReader.next()) {
+            String text = rest.length()>0? rest.concat(chunk) : chunk;
+            int end = recDelimiter.length()>0? text.lastIndexOf(recDelimiter) : -1;
+            if(end<0) { rest = text; continue; }
+            end += recDelimiter.length(); rest = text.substring(end); int textEnd = end;
+            tasks.add(pool.submit(() -> getRecords(text, 0, textEnd)));
             
-            // Get field
-            String field = k<record.length? record[k++].trim() : null;
-            if(field==null)
-                continue;
-            
-            // Trim quotes if needed
-            if(getHasQuotedFields() && field.startsWith("\"") && field.endsWith("\""))
-                field = field.substring(1, field.length()-1);
-            
-            // Set/update type from sample
-            if(createEntity) property.setTypeFromSample(field);
-        
-            // Add attributes
-            map.put(property.getName(), field);
+            // If too many chunks are being parsed, pass records of first to consumer
+            while(tasks.size()>=maxTasks)
+                for(String record[] : tasks.removeFirst().join()) aConsumer.accept(record);
         }
         
-        // Add map
-        maps.add(map);
+        // Parse remainder and pass records of remaining chunks to consumer
+        if(rest.length()>0) { String text = rest;
+            tasks.add(pool.submit(() -> getRecords(text, 0, text.length()))); }
+        while(tasks.size()>0)
+            for(String record[] : tasks.removeFirst().join()) aConsumer.accept(record);
     }
     
-    // Return maps
-    return maps;
+    // Complain if read fails and close reader
+    catch(IOException e) { throw new RuntimeException(e); }
+    finally { chunkReader.close(); }
+    return true;
 }
 
 /**
@@ -224,62 +252,90 @@ public void readFormat(String aString)
 }
 
 /**
- * Returns the records.
+ * Returns the records in given range of given string (records are split on record delimiter and empty records skipped).
  */
-private String[] getRecords(String aString)  { return aString.split(getRecordDelimiter()); }
+protected List <String[]> getRecords(String aString, int aStart, int anEnd)
+{
+    // Get record delimiter, records list and reusable fields list and StringBuilder
+    String recDelimiter = getRecordDelimiter();
+    List <String[]> records = new ArrayList();
+    List <String> fields = new ArrayList(); StringBuilder sb = new StringBuilder();
+    
+    // Iterate over records and add fields
+    for(int start=aStart; start<anEnd; ) {
+        int end = recDelimiter.length()>0? aString.indexOf(recDelimiter, start) : -1;
+        if(end<0 || end>anEnd) end = anEnd;
+        getFields(aString, start, end, fields, sb);
+        if(fields.size()>0) records.add(fields.toArray(new String[fields.size()]));
+        fields.clear();
+        start = end + recDelimiter.length();
+    }
+    
+    // Return records
+    return records;
+}
 
 /**
- * Returns the fields for a record.
+ * Adds the fields of the record in given range of given string to given list (fields are trimmed and unquoted).
  */
-private String[] getFields(String aRecord)  // { return aRecord.split(getFieldDelimiter()); }
+private void getFields(String aString, int aStart, int anEnd, List <String> theFields, StringBuilder aSB)
 {
-    // Get tokenizer
-    Tokenizer tokenizer = getTokenizer();
-    tokenizer.setInput(aRecord);
+    // If no field delimiter, add whole record
+    String delimiter = getFieldDelimiter(); aSB.setLength(0);
+    if(delimiter.length()==0) {
+        String field = aString.substring(aStart, anEnd).trim(); if(field.length()>0) theFields.add(getField(field));
+        return;
+    }
     
-    // Get StringBuffer and Fields list
-    _sb.setLength(0); _fields.clear();
-
-    // Parse tokens
-    for(Token token=tokenizer.getNextToken(); token!=null; token=tokenizer.getNextToken()) {
+    // Iterate over chars
+    for(int i=aStart; i<anEnd; ) {
+        
+        // If delimiter, add cumulative string and clear StringBuilder
+        char c = aString.charAt(i);
+        if(aString.startsWith(delimiter, i)) {
+            theFields.add(getField(aSB.toString().trim())); aSB.setLength(0); i += delimiter.length(); continue; }
         
-        // If Separator token, add cumulative string and clear String Buffer
-        if(token.getName()=="Separator") {
-            _fields.add(_sb.toString().trim()); _sb.setLength(0); }
+        // Skip whitespace between tokens
+        if(Character.isWhitespace(c)) { i++; continue; }
         
-        // Otherwise, add to StringBuffer
-        else _sb.append(token.getString());
+        // Add chars up to next delimiter (or end of quoted string, if quoted string contains delimiter)
+        int end = aString.indexOf(delimiter, i); if(end<0 || end>anEnd) end = anEnd;
+        if(c=='"' && getHasQuotedFields()) end = Math.max(end, getQuotedEnd(aString, i, anEnd));
+        aSB.append(aString, i, end); i = end;
     }
     
     // If remainder, add to fields
-    String string = _sb.toString().trim();
-    if(string.length()>0) _fields.add(string);
-    
-    // Return String
-    return _fields.toArray(new String[_fields.size()]);
-    
-} StringBuffer _sb = new StringBuffer(); List <String> _fields = new ArrayList();
+    String field = aSB.toString().trim();
+    if(field.length()>0) theFields.add(getField(field));
+}
+
+/**
+ * Returns a field for given trimmed string (with quotes removed if fields are quoted).
+ */
+private String getField(String aString)
+{
+    if(getHasQuotedFields() && aString.length()>=2 && aString.startsWith("\"") && aString.endsWith("\""))
+        return aString.substring(1, aString.length()-1);
+    return aString;
+}
 
 /**
- * Returns the tokenizer.
+ * Returns the end of the quoted string at given index (with backslash escapes and no line breaks), or -1 if none.
  */
-private Tokenizer getTokenizer()
+private static int getQuotedEnd(String aString, int aStart, int anEnd)
 {
-    // If tokenizer not set, set
-    if(_tokenizer==null) {
-        String separator = getFieldDelimiter(); if(separator.equals("\t")) separator = "\\t";
-        _tokenizer = new Tokenizer();
-        if(getHasQuotedFields())
-            _tokenizer.addPattern("QuotedString",
-                "\"(([^\"\\\\\\n\\\r])|(\\\\([ntbrf\\\\'\"]|[0-7][0-7]?|[0-3][0-7][0-7]|u[\\da-fA-F]{4})))*\"", false);
-        _tokenizer.addPattern("NonSeparator", "[^" + separator + "]+", false);
-        _tokenizer.addPattern("Separator", separator, true);
+    for(int i=aStart+1; i<anEnd; i++) { char c = aString.charAt(i);
+        if(c=='"') return i + 1;
+        if(c=='\n' || c=='\r') return -1;
+        if(c=='\\') {
+            char c2 = ++i<anEnd? aString.charAt(i) : 0;
+            if(c2=='u') {
+                for(int j=0; j<4; j++) if(++i>=anEnd || Character.digit(aString.charAt(i), 16)<0) return -1; }
+            else if("ntbrf\\'\"".indexOf(c2)<0 && (c2<'0' || c2>'7')) return -1;
+        }
     }
-    
-    // Return Tokenizer
-    return _tokenizer;
-    
-} Tokenizer _tokenizer;
+    return -1;
+}
 
 /**
  * Returns the number of field delimiters found in last readFormat.
@@ -324,4 +380,147 @@ public String getSourceString(Object aSource)
     return null;
 }
 
+/**
+ * Returns a chunk reader for given source (memory-maps files).
+ */
+protected ChunkReader getChunkReader(Object aSource)
+{
+    // Handle String, File and InputStream
+    if(aSource instanceof String)
+        return new ChunkReader((String)aSource, getChunkSize());
+    if(aSource instanceof File) { File file = (File)aSource;
+        try { return new ChunkReader(FileChannel.open(file.toPath(), StandardOpenOption.READ), getChunkSize()); }
+        catch(IOException e) { throw new RuntimeException(e); }
+    }
+    if(aSource instanceof InputStream)
+        return new ChunkReader((InputStream)aSource, getChunkSize());
+    
+    // Handle anything we can get bytes from
+    byte bytes[] = SnapUtils.getBytes(aSource);
+    if(bytes!=null)
+        return new ChunkReader(new ByteArrayInputStream(bytes), getChunkSize());
+    
+    // Return null since source not found
+    return null;
+}
+
+/**
+ * A class to read a source in chunks of ISO Latin chars (from a string, memory-mapped file channel or stream).
+ */
+protected static class ChunkReader {
+    
+    // The string, file channel or stream
+    String _string; FileChannel _channel; InputStream _stream;
+    
+    // The chunk size, current position and chunk bytes
+    int _size; long _pos; byte _bytes[];
+
+    /** Creates a new ChunkReader for string, file channel or stream. */
+    ChunkReader(String aStr, int aSize)  { _string = aStr; _size = aSize; }
+    ChunkReader(FileChannel aChan, int aSize)  { _channel = aChan; _size = aSize; }
+    ChunkReader(InputStream aStream, int aSize)  { _stream = aStream; _size = aSize; }
+    
+    /** Returns the next chunk (or null if at end). */
+    String next() throws IOException
+    {
+        // Handle string
+        if(_string!=null) {
+            int start = (int)_pos, end = (int)Math.min(start + (long)_size, _string.length()); _pos = end;
+            return start<end? start==0 && end==_string.length()? _string : _string.substring(start, end) : null;
+        }
+        
+        // Handle file channel: Map next chunk and get bytes
+        if(_bytes==null) _bytes = new byte[_size]; int len = 0;
+        if(_channel!=null) {
+            len = (int)Math.min(_size, _channel.size() - _pos);
+            if(len>0) _channel.map(FileChannel.MapMode.READ_ONLY, _pos, len).get(_bytes, 0, len);
+        }
+        
+        // Handle stream: Read until chunk is full
+        else for(int n=0; len<_size && (n=_stream.read(_bytes, len, _size - len))>=0; ) len += n;
+        
+        // Return chunk
+        _pos += Math.max(len, 0);
+        return len>0? new String(_bytes, 0, len, StandardCharsets.ISO_8859_1) : null;
+    }
+    
+    /** Closes file channel or stream. */
+    void close()
+    {
+        try { if(_channel!=null) _channel.close(); else if(_stream!=null) _stream.close(); }
+        catch(IOException e) { }
+    }
+}
+
+/**
+ * A class to turn records into maps for entity properties (creates entity from first record if requested).
+ */
+private class MapReader implements Consumer <String[]> {
+    
+    // Whether to create entity, the entity name, the map consumer and the number of records read
+    boolean _createEntity; String _name; Consumer <Map> _consumer; int _count;
+    
+    /** Creates a new MapReader. */
+    MapReader(boolean doCreate, String aName, Consumer <Map> aConsumer)
+    {
+        _createEntity = doCreate; _name = aName; _consumer = aConsumer;
+    }
+    
+    /** Creates map for record and passes it to consumer. */
+    public void accept(String theFields[])
+    {
+        // If first record, create entity if needed and skip if header row
+        int index = _count++;
+        if(index==0) {
+            if(_createEntity) createEntity(theFields);
+            if(getHasHeaderRow()) return;
+        }
+        
+        // Get whether to update property types from this record
+        int dataIndex = getHasHeaderRow()? index - 1 : index, sampleCount = getTypeSampleCount();
+        boolean sample = _createEntity && (sampleCount<0 || dataIndex<sampleCount);
+        
+        // Create map
+        Map map = new HashMap();
+        
+        // Iterate over entity properties
+        for(int j=0, jMax=_entity.getPropertyCount(), k=0; j<jMax; j++) { Property property = _entity.getProperty(j);
+        
+            // If entity was provided, skip properties that are private or autogenerated
+            if(!_createEntity && (property.isPrivate() || property.isAutoGenerated()))
+                continue;
+            
+            // Get field
+            String field = k<theFields.length? theFields[k++] : null;
+            if(field==null)
+                continue;
+            
+            // Set/update type from sample
+            if(sample) property.setTypeFromSample(field);
+        
+            // Add attributes
+            map.put(property.getName(), field);
+        }
+        
+        // Pass map to consumer
+        _consumer.accept(map);
+    }
+    
+    /** Creates entity from first record. */
+    void createEntity(String theFields[])
+    {
+        _entity = new Entity(_name);
+        
+        // Iterate over first record fields
+        for(int i=0; i<theFields.length; i++) {
+            
+            // Get property name
+            String propertyName = getHasHeaderRow()? theFields[i] : "Field" + i;
+            
+            // Create and add new property (start with type Date, so setTypeFromSample can try to refine)
+            _entity.addProperty(new Property(propertyName, Property.Type.Date));
+        }
+    }
+}
+
 }
\ No newline at end of file
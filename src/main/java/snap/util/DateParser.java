@@ -2,68 +2,303 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.util;
-import java.text.SimpleDateFormat;
+import java.time.*;
+import java.time.format.TextStyle;
+import java.time.zone.ZoneRules;
 import java.util.*;
 
 /**
  * A simple date parser.
+ *
+ * Dates are read by a hand-written scanner (no regexes, no SimpleDateFormat, no exceptions) that recognizes these
+ * forms, with optional time (" H:mm", " H:mm:ss", " H:mm:ss.SSS", with 'T' instead of space and/or AM/PM):
+ * yyyyMMdd[HHmm[ss]], yyyyMMdd HHmm[ss], yyyy-M-d, yyyy/M/d, M/d/yyyy, M/d/yy, d-M-yyyy, d.M.yyyy, d MMM yyyy and
+ * d MMMM yyyy. Values with day and month both 12 or less read in the order of the first value a parser saw
+ * (month first for '/', day first otherwise), so a parser instance should be used for each column or source.
+ * Parsers are thread-safe.
  */
 public class DateParser {
 
-public static Date parseDate(String aString)
+    // The zone rules used to convert local date-times to millis
+    ZoneRules         _rules;
+
+    // The order of day and month in the first value parsed with both (0 = unknown, MDY or DMY)
+    volatile int      _order;
+
+    // The format code of the first value parsed
+    volatile int      _format;
+
+    // Whether to read ambiguous values in the order of the first value parsed
+    boolean           _sameOrder = true;
+
+    // The value returned by parseMillis when string isn't a date
+    public static final long FAIL = Long.MIN_VALUE;
+
+    // Format code kinds
+    private static final int COMPACT = 1, YMD = 2, MDY = 3, DMY = 4, DMONY = 5, DMONTHY = 6;
+
+    // Format code flags for date separator, year digits and time
+    private static final int SEP_DASH = 1<<3, SEP_SLASH = 2<<3, SEP_DOT = 3<<3, YEAR2 = 1<<5;
+    private static final int TIME_HM = 1<<6, TIME_HMS = 2<<6, TIME_HMSS = 3<<6, TIME_T = 1<<8, TIME_AMPM = 1<<9;
+    private static final int TIME_COMPACT = 1<<10;
+
+    // The month numbers for lower case month names (English and default locale, short and full)
+    private static final Map <String,Integer> MONTHS = new HashMap();
+
+    // The shared parser
+    private static DateParser _shared;
+
+    // Initialize months
+    static {
+        for(Month month : Month.values())
+            for(Locale locale : new Locale[] { Locale.ENGLISH, Locale.getDefault() })
+                for(TextStyle style : new TextStyle[] { TextStyle.SHORT, TextStyle.FULL }) {
+                    String name = month.getDisplayName(style, locale).toLowerCase();
+                    if(name.endsWith(".")) name = name.substring(0, name.length()-1);
+                    MONTHS.putIfAbsent(name, month.getValue());
+                }
+        MONTHS.put("sept", 9);
+    }
+
+/**
+ * Creates a new DateParser for the default time zone.
+ */
+public DateParser()  { this(ZoneId.systemDefault()); }
+
+/**
+ * Creates a new DateParser for given time zone.
+ */
+public DateParser(ZoneId aZone)  { _rules = aZone.getRules(); }
+
+/**
+ * Parses given string and returns date (or null if not a date).
+ */
+public Date parse(CharSequence aStr)
+{
+    long millis = parseMillis(aStr);
+    return millis!=FAIL? new Date(millis) : null;
+}
+
+/**
+ * Parses given string and returns date as millis since 1970 (or FAIL if not a date).
+ */
+public long parseMillis(CharSequence aStr)
+{
+    // Get format of first value parsed (to set day/month order)
+    int format[] = _format==0? new int[1] : null;
+    long millis = parseMillis(aStr, format);
+    if(format!=null && millis!=FAIL) {
+        int kind = format[0] & 7;
+        if(_order==0 && (kind==MDY || kind==DMY) && _sameOrder) _order = kind;
+        _format = format[0];
+    }
+    return millis;
+}
+
+/**
+ * Returns millis since 1970 for given Date, Number (millis) or string (or FAIL if not a date).
+ */
+public long getMillis(Object anObj)
+{
+    if(anObj instanceof Date) return ((Date)anObj).getTime();
+    if(anObj instanceof Number) return ((Number)anObj).longValue();
+    if(anObj instanceof CharSequence) return parseMillis((CharSequence)anObj);
+    return anObj!=null? parseMillis(anObj.toString()) : FAIL;
+}
+
+/**
+ * Returns the SimpleDateFormat pattern of the first value parsed (or null if none).
+ */
+public String getFormat()  { return _format!=0? getPattern(_format) : null; }
+
+/**
+ * Parses given string and returns millis (or FAIL), setting format code in given array (if provided).
+ */
+private long parseMillis(CharSequence aStr, int aFormat[])
+{
+    // Get trimmed range
+    int start = 0, end = aStr!=null? aStr.length() : 0;
+    while(start<end && Character.isWhitespace(aStr.charAt(start))) start++;
+    while(end>start && Character.isWhitespace(aStr.charAt(end-1))) end--;
+    if(start==end) return FAIL;
+
+    // Declare date and time values and format code
+    int year, month, day, hour = 0, min = 0, sec = 0, nanos = 0, format, i = start;
+
+    // Get first number
+    int n1 = getDigitCount(aStr, i, end); if(n1==0) return FAIL;
+
+    // Handle compact: yyyyMMdd, yyyyMMddHHmm, yyyyMMddHHmmss, yyyyMMdd HHmm, yyyyMMdd HHmmss
+    if(n1==8 || n1==12 || n1==14) {
+        year = getInt(aStr, i, 4); month = getInt(aStr, i+4, 2); day = getInt(aStr, i+6, 2); format = COMPACT;
+        if(n1>=12) { hour = getInt(aStr, i+8, 2); min = getInt(aStr, i+10, 2); format |= TIME_HM; }
+        if(n1==14) { sec = getInt(aStr, i+12, 2); format += TIME_HM; }
+        i += n1;
+        if(n1==8 && i<end) {
+            int n2 = aStr.charAt(i)==' '? getDigitCount(aStr, i+1, end) : 0;
+            if(n2!=4 && n2!=6 || i+1+n2!=end) return FAIL;
+            hour = getInt(aStr, i+1, 2); min = getInt(aStr, i+3, 2); format |= TIME_HM | TIME_COMPACT;
+            if(n2==6) { sec = getInt(aStr, i+5, 2); format += TIME_HM; }
+            i = end;
+        }
+    }
+
+    // Handle year first: yyyy-M-d, yyyy/M/d
+    else if(n1==4) {
+        char sep = i+n1<end? aStr.charAt(i+n1) : 0; if(sep!='-' && sep!='/') return FAIL;
+        year = getInt(aStr, i, 4); i += n1 + 1;
+        int n2 = getDigitCount(aStr, i, end); if(n2<1 || n2>2 || i+n2>=end || aStr.charAt(i+n2)!=sep) return FAIL;
+        month = getInt(aStr, i, n2); i += n2 + 1;
+        int n3 = getDigitCount(aStr, i, end); if(n3<1 || n3>2) return FAIL;
+        day = getInt(aStr, i, n3); i += n3;
+        format = YMD | (sep=='-'? SEP_DASH : SEP_SLASH);
+    }
+
+    // Handle day or month first: M/d/yyyy, M/d/yy, d-M-yyyy, d.M.yyyy, d MMM yyyy, d MMMM yyyy
+    else if(n1<=2) {
+        int v1 = getInt(aStr, i, n1); i += n1;
+        char sep = i<end? aStr.charAt(i) : 0; i++;
+
+        // Handle month name
+        if(sep==' ') {
+            int j = i; while(j<end && Character.isLetter(aStr.charAt(j))) j++;
+            Integer mon = j>i? MONTHS.get(aStr.subSequence(i, j).toString().toLowerCase()) : null;
+            if(mon==null || j>=end || aStr.charAt(j)!=' ') return FAIL;
+            format = j - i<=3? DMONY : DMONTHY; i = j + 1;
+            int n3 = getDigitCount(aStr, i, end); if(n3!=4) return FAIL;
+            day = v1; month = mon; year = getInt(aStr, i, 4); i += 4;
+        }
+
+        // Handle numbers
+        else {
+            if(sep!='-' && sep!='/' && sep!='.') return FAIL;
+            int n2 = getDigitCount(aStr, i, end); if(n2<1 || n2>2 || i+n2>=end || aStr.charAt(i+n2)!=sep) return FAIL;
+            int v2 = getInt(aStr, i, n2); i += n2 + 1;
+            int n3 = getDigitCount(aStr, i, end); if(n3!=4 && n3!=2) return FAIL;
+            year = getInt(aStr, i, n3); i += n3;
+            if(n3==2) year = getYear2(year);
+
+            // Get order: from values if only one works, otherwise from first value parsed, otherwise from separator
+            int order = v1>12? DMY : v2>12? MDY : _order!=0? _order : sep=='/'? MDY : DMY;
+            month = order==MDY? v1 : v2; day = order==MDY? v2 : v1;
+            format = order | (sep=='-'? SEP_DASH : sep=='/'? SEP_SLASH : SEP_DOT) | (n3==2? YEAR2 : 0);
+        }
+    }
+    else return FAIL;
+
+    // Handle time: (' '|'T') H:mm[:ss[.SSS]] [AM|PM]
+    if(i<end) {
+        char sep = aStr.charAt(i); if(sep!=' ' && sep!='T' || (format&TIME_HMSS)!=0) return FAIL; i++;
+        int n4 = getDigitCount(aStr, i, end); if(n4<1 || n4>2 || i+n4>=end || aStr.charAt(i+n4)!=':') return FAIL;
+        hour = getInt(aStr, i, n4); i += n4 + 1;
+        if(getDigitCount(aStr, i, end)!=2) return FAIL;
+        min = getInt(aStr, i, 2); i += 2; format |= TIME_HM | (sep=='T'? TIME_T : 0);
+        if(i<end && aStr.charAt(i)==':') {
+            if(getDigitCount(aStr, i+1, end)!=2) return FAIL;
+            sec = getInt(aStr, i+1, 2); i += 3; format += TIME_HM;
+            if(i<end && aStr.charAt(i)=='.') {
+                int n5 = getDigitCount(aStr, i+1, end); if(n5<1 || n5>9) return FAIL;
+                nanos = getInt(aStr, i+1, n5); for(int j=n5; j<9; j++) nanos *= 10;
+                i += n5 + 1; format += TIME_HM;
+            }
+        }
+
+        // Handle AM/PM
+        int j = i<end && aStr.charAt(i)==' '? i + 1 : i;
+        if(j+2==end) { char c = Character.toUpperCase(aStr.charAt(j)), c2 = Character.toUpperCase(aStr.charAt(j+1));
+            if(c2!='M' || c!='A' && c!='P' || hour<1 || hour>12) return FAIL;
+            hour = hour%12 + (c=='P'? 12 : 0); i = end; format |= TIME_AMPM; }
+        if(i!=end) return FAIL;
+    }
+
+    // Check values
+    if(month<1 || month>12 || day<1 || day>Month.of(month).length(Year.isLeap(year))) return FAIL;
+    if(hour>23 || min>59 || sec>59) return FAIL;
+
+    // Set format and return millis
+    if(aFormat!=null) aFormat[0] = format;
+    LocalDateTime ldt = LocalDateTime.of(year, month, day, hour, min, sec, nanos);
+    return ldt.toEpochSecond(_rules.getOffset(ldt))*1000 + nanos/1000000;
+}
+
+/**
+ * Returns the number of digits at given index.
+ */
+private static int getDigitCount(CharSequence aStr, int anIndex, int anEnd)
 {
-    try { return new java.text.SimpleDateFormat("MM/dd/yy").parse(aString); }
-    catch(Exception e) { }
-    try { return new java.text.SimpleDateFormat().parse(aString); }
-    catch(Exception e) { }
-
-    String fmt = getDateFormat(aString);
-    try { return new SimpleDateFormat(fmt).parse(aString); }
-    catch(Exception e) { System.err.println("DateParser.parseDate: Failed to parse date - " + aString); }
-    return null;
+    int i = anIndex; while(i<anEnd) { char c = aStr.charAt(i); if(c<'0' || c>'9') break; i++; }
+    return i - anIndex;
 }
 
-private static final Map <String, String> DATE_FORMAT_REGEXPS = new HashMap<String, String>() {{
-    put("^\\d{8}$", "yyyyMMdd");
-    put("^\\d{1,2}-\\d{1,2}-\\d{4}$", "dd-MM-yyyy");
-    put("^\\d{4}-\\d{1,2}-\\d{1,2}$", "yyyy-MM-dd");
-    put("^\\d{1,2}/\\d{1,2}/\\d{4}$", "MM/dd/yyyy");
-    put("^\\d{4}/\\d{1,2}/\\d{1,2}$", "yyyy/MM/dd");
-    put("^\\d{1,2}\\s[a-z]{3}\\s\\d{4}$", "dd MMM yyyy");
-    put("^\\d{1,2}\\s[a-z]{4,}\\s\\d{4}$", "dd MMMM yyyy");
-    put("^\\d{12}$", "yyyyMMddHHmm");
-    put("^\\d{8}\\s\\d{4}$", "yyyyMMdd HHmm");
-    put("^\\d{1,2}-\\d{1,2}-\\d{4}\\s\\d{1,2}:\\d{2}$", "dd-MM-yyyy HH:mm");
-    put("^\\d{4}-\\d{1,2}-\\d{1,2}\\s\\d{1,2}:\\d{2}$", "yyyy-MM-dd HH:mm");
-    put("^\\d{1,2}/\\d{1,2}/\\d{4}\\s\\d{1,2}:\\d{2}$", "MM/dd/yyyy HH:mm");
-    put("^\\d{4}/\\d{1,2}/\\d{1,2}\\s\\d{1,2}:\\d{2}$", "yyyy/MM/dd HH:mm");
-    put("^\\d{1,2}\\s[a-z]{3}\\s\\d{4}\\s\\d{1,2}:\\d{2}$", "dd MMM yyyy HH:mm");
-    put("^\\d{1,2}\\s[a-z]{4,}\\s\\d{4}\\s\\d{1,2}:\\d{2}$", "dd MMMM yyyy HH:mm");
-    put("^\\d{14}$", "yyyyMMddHHmmss");
-    put("^\\d{8}\\s\\d{6}$", "yyyyMMdd HHmmss");
-    put("^\\d{1,2}-\\d{1,2}-\\d{4}\\s\\d{1,2}:\\d{2}:\\d{2}$", "dd-MM-yyyy HH:mm:ss");
-    put("^\\d{4}-\\d{1,2}-\\d{1,2}\\s\\d{1,2}:\\d{2}:\\d{2}$", "yyyy-MM-dd HH:mm:ss");
-    put("^\\d{1,2}/\\d{1,2}/\\d{4}\\s\\d{1,2}:\\d{2}:\\d{2}$", "MM/dd/yyyy HH:mm:ss");
-    put("^\\d{4}/\\d{1,2}/\\d{1,2}\\s\\d{1,2}:\\d{2}:\\d{2}$", "yyyy/MM/dd HH:mm:ss");
-    put("^\\d{1,2}\\s[a-z]{3}\\s\\d{4}\\s\\d{1,2}:\\d{2}:\\d{2}$", "dd MMM yyyy HH:mm:ss");
-    put("^\\d{1,2}\\s[a-z]{4,}\\s\\d{4}\\s\\d{1,2}:\\d{2}:\\d{2}$", "dd MMMM yyyy HH:mm:ss");
-}};
+/**
+ * Returns the int value of given number of digits at given index.
+ */
+private static int getInt(CharSequence aStr, int anIndex, int aCount)
+{
+    int value = 0; for(int i=anIndex, iMax=anIndex+aCount; i<iMax; i++) value = value*10 + aStr.charAt(i) - '0';
+    return value;
+}
 
 /**
- * Determine SimpleDateFormat pattern matching with the given date string. Returns null if
- * format is unknown. You can simply extend DateUtil with more formats if needed.
+ * Returns the full year for a two digit year (within 80 years before and 20 years after now, like SimpleDateFormat).
+ */
+private static int getYear2(int aYear)
+{
+    int base = Year.now().getValue() - 80, year = base - base%100 + aYear;
+    return year<base? year + 100 : year;
+}
+
+/**
+ * Returns the SimpleDateFormat pattern for given format code.
+ */
+private static String getPattern(int aFormat)
+{
+    // Get date pattern
+    int kind = aFormat & 7, sepBits = aFormat & SEP_DOT;
+    String sep = sepBits==SEP_DASH? "-" : sepBits==SEP_SLASH? "/" : ".";
+    String year = (aFormat&YEAR2)!=0? "yy" : "yyyy", date;
+    switch(kind) {
+        case COMPACT: date = "yyyyMMdd"; break;
+        case YMD: date = year + sep + "MM" + sep + "dd"; break;
+        case MDY: date = "MM" + sep + "dd" + sep + year; break;
+        case DMY: date = "dd" + sep + "MM" + sep + year; break;
+        case DMONY: date = "dd MMM yyyy"; break;
+        default: date = "dd MMMM yyyy";
+    }
+
+    // Get time pattern and return
+    int time = aFormat & TIME_HMSS; if(time==0) return date;
+    boolean ampm = (aFormat&TIME_AMPM)!=0, compact = kind==COMPACT;
+    String hour = ampm? "hh" : "HH", tsep = compact? "" : ":";
+    String tpat = hour + tsep + "mm" + (time>=TIME_HMS? tsep + "ss" : "") + (time==TIME_HMSS? ".SSS" : "");
+    String dsep = (aFormat&TIME_T)!=0? "'T'" : compact && (aFormat&TIME_COMPACT)==0? "" : " ";
+    return date + dsep + tpat + (ampm? " a" : "");
+}
+
+/**
+ * Returns the shared parser (for the default time zone, reads ambiguous values in separator order).
+ */
+public static DateParser getShared()
+{
+    if(_shared!=null) return _shared;
+    DateParser shared = new DateParser(); shared._sameOrder = false;
+    return _shared = shared;
+}
+
+/**
+ * Parses given string and returns date (or null if not a date).
+ */
+public static Date parseDate(String aString)  { return getShared().parse(aString); }
+
+/**
+ * Determine SimpleDateFormat pattern matching with the given date string. Returns null if format is unknown.
  * @param dateString The date string to determine the SimpleDateFormat pattern for.
  * @return The matching SimpleDateFormat pattern, or null if format is unknown.
- * @see SimpleDateFormat
  */
 public static String getDateFormat(String dateString)
 {
-    for (String regexp : DATE_FORMAT_REGEXPS.keySet()) {
-        if (dateString.toLowerCase().matches(regexp)) {
-            return DATE_FORMAT_REGEXPS.get(regexp);
-        }
-    }
-    return null; // Unknown format.
+    int format[] = new int[1];
+    return new DateParser().parseMillis(dateString, format)!=FAIL? getPattern(format[0]) : null;
 }
 
-}
\ No newline at end of file
+}
@@ -60,8 +60,7 @@ public String getClassId()  { return _classId; }
  */
 public Object readSource(Object aSource)
 {
-    JSONNode node = aSource instanceof JSONNode? (JSONNode)aSource :
-        new JSONParser().readSource(aSource);
+    JSONNode node = aSource instanceof JSONNode? (JSONNode)aSource : JSONNode.readSource(aSource);
     return readNode(node);
 }
 
@@ -70,7 +69,7 @@ public Object readSource(Object aSource)
  */
 public Object readString(String aString)
 {
-    JSONNode node = new JSONParser().readString(aString);
+    JSONNode node = new JSONReader(aString).readNode();
     return readNode(node);
 }
 
@@ -103,7 +102,7 @@ public Object readNode(JSONNode aNode)
             // Get values
             for(JSONNode child : aNode.getNodes()) { String key = child.getKey();
                 if(!key.equals(getClassId()))
-                    setValue(object, key, readNode(aNode.getNode(key))); }
+                    setValue(object, key, readNode(child)); }
             
             // Return object
             return object;
@@ -278,13 +278,18 @@ public String toString()  { return new JSONWriter().getString(this); }
 public String toStringCompacted()  { return new JSONWriter().setCompacted(true).getString(this); }
 
 /**
- * Reads JSON from a source.
+ * Reads JSON from a source (streams with JSONReader instead of parsing the whole text with JSONParser).
  */
 public static JSONNode readSource(Object aSource)
 {
+    // Handle InputStream
+    if(aSource instanceof java.io.InputStream)
+        return new JSONReader((java.io.InputStream)aSource).readNode();
+    
+    // Handle anything else: Get file and read from file bytes
     WebURL url = WebURL.getURL(aSource);
     WebFile file = url.getFile();
-    return new JSONParser().readString(file.getText());
+    return new JSONReader(file.getInputStream()).readNode();
 }
 
 }
\ No newline at end of file
@@ -31,6 +31,16 @@ public JSONNode readString(String aString)
     return null;
 }
 
+/**
+ * Override to tokenize with combined DFA.
+ */
+protected Tokenizer createTokenizer()
+{
+    Tokenizer tz = super.createTokenizer();
+    tz.setUseDFA(true);
+    return tz;
+}
+
 /**
  * Load rule from rule file and install handlers.
  */
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.util;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A pull-style streaming JSON reader. Call next() to get each event (start/end object/array, key, value) and
+ * getString()/getNumber()/getBoolean() to get the current key or value. Call readNode() to read the next value into
+ * a JSONNode tree without the grammar-based JSONParser.
+ *
+ * Input is read in small chunks, so the whole text never needs to be in memory.
+ */
+public class JSONReader {
+
+    // The reader
+    Reader            _reader;
+
+    // The char buffer, its length and the current index
+    char              _buf[] = new char[8192]; int _len, _index;
+
+    // The stack of containers (true for object) and the stack size
+    boolean           _stack[] = new boolean[32]; int _depth;
+
+    // Whether next token in current container should be a value (after key or at start of array)
+    boolean           _expectValue = true;
+
+    // Whether current container has had a member
+    boolean           _hasMember;
+
+    // The current event
+    Event             _event;
+
+    // The current string (key or string value) and number/boolean value
+    String            _string; Number _number; boolean _boolean;
+
+    // The string buffer to read strings
+    StringBuilder     _sb = new StringBuilder();
+
+    // Constants for events
+    public enum Event { StartObject, EndObject, StartArray, EndArray, Key, String, Number, Boolean, Null };
+
+/**
+ * Creates a new JSONReader for given reader.
+ */
+public JSONReader(Reader aReader)  { _reader = aReader; }
+
+/**
+ * Creates a new JSONReader for given UTF-8 input stream.
+ */
+public JSONReader(InputStream aStream)  { this(new InputStreamReader(aStream, StandardCharsets.UTF_8)); }
+
+/**
+ * Creates a new JSONReader for given UTF-8 bytes (reads from buffer position to limit without copying).
+ */
+public JSONReader(ByteBuffer aBuffer)  { this(new ByteBufferInputStream(aBuffer)); }
+
+/**
+ * Creates a new JSONReader for given string.
+ */
+public JSONReader(String aString)  { this(new StringReader(aString)); }
+
+/**
+ * Returns the current event.
+ */
+public Event getEvent()  { return _event; }
+
+/**
+ * Returns the current key (for Key event) or string value (for String event).
+ */
+public String getString()  { return _string; }
+
+/**
+ * Returns the current number value (for Number event).
+ */
+public Number getNumber()  { return _number; }
+
+/**
+ * Returns the current boolean value (for Boolean event).
+ */
+public boolean getBoolean()  { return _boolean; }
+
+/**
+ * Returns the current depth of nested objects/arrays.
+ */
+public int getDepth()  { return _depth; }
+
+/**
+ * Returns whether there is another event.
+ */
+public boolean hasNext()  { return peekChar()>=0; }
+
+/**
+ * Returns the next event (or null if at end of input).
+ */
+public Event next()
+{
+    // Get next non-whitespace char (just return null if at end)
+    int c = peekChar();
+    if(c<0) {
+        if(_depth>0) throw error("Unexpected end of input");
+        return _event = null;
+    }
+
+    // Handle end of container
+    if(c=='}' || c==']') { _index++;
+        boolean obj = c=='}'; if(_depth==0 || _stack[_depth-1]!=obj || obj && _expectValue)
+            throw error("Unexpected '" + (char)c + "'");
+        _depth--; _hasMember = true; _expectValue = _depth==0 || !_stack[_depth-1];
+        return _event = obj? Event.EndObject : Event.EndArray;
+    }
+
+    // Handle separator between members
+    if(_hasMember && _depth>0 && (_stack[_depth-1]? !_expectValue : true)) {
+        if(c!=',') throw error("Expected ',' or close");
+        _index++; c = peekChar(); _hasMember = false;
+        if(c<0) throw error("Unexpected end of input");
+    }
+
+    // Handle key
+    if(_depth>0 && _stack[_depth-1] && !_expectValue) {
+        _string = c=='"'? readString() : readSimpleString();
+        if(peekChar()!=':') throw error("Expected ':'");
+        _index++; _expectValue = true;
+        return _event = Event.Key;
+    }
+
+    // Handle value
+    _expectValue = _depth==0 || !_stack[_depth-1]; _hasMember = true;
+    switch(c) {
+        case '{': _index++; push(true); return _event = Event.StartObject;
+        case '[': _index++; push(false); return _event = Event.StartArray;
+        case '"': _string = readString(); return _event = Event.String;
+        case 't': readWord("true"); _boolean = true; return _event = Event.Boolean;
+        case 'f': readWord("false"); _boolean = false; return _event = Event.Boolean;
+        case 'n': readWord("null"); return _event = Event.Null;
+        default:
+            if(c=='-' || c=='+' || c=='.' || c>='0' && c<='9') { _number = readNumber(); return _event = Event.Number; }
+            throw error("Unexpected '" + (char)c + "'");
+    }
+}
+
+/**
+ * Skips the current value (if current event is start object/array, skips to end).
+ */
+public void skipValue()
+{
+    if(_event!=Event.StartObject && _event!=Event.StartArray) return;
+    int depth = _depth;
+    while(_depth>=depth) next();
+}
+
+/**
+ * Reads the next value as a JSONNode tree (or null if at end of input).
+ */
+public JSONNode readNode()
+{
+    // If current event is key, get it and advance to value (or if at end, just return null)
+    String key = null;
+    if(next()==Event.Key) { key = _string; next(); }
+    if(_event==null) return null;
+    return readNode(key);
+}
+
+/**
+ * Reads the value for current event as a JSONNode tree.
+ */
+protected JSONNode readNode(String aKey)
+{
+    JSONNode node = new JSONNode(); node._key = aKey;
+    switch(_event) {
+
+        // Handle Object and Array: Read children (add directly, since keys are unique in valid JSON)
+        case StartObject: case StartArray: {
+            node._type = _event==Event.StartObject? JSONNode.Type.Object : JSONNode.Type.Array;
+            java.util.List <JSONNode> nodes = node.getNodes();
+            for(Event e=next(); e!=Event.EndObject && e!=Event.EndArray; e=next()) {
+                String key = null; if(e==Event.Key) { key = _string; next(); }
+                nodes.add(readNode(key));
+            }
+        } break;
+
+        // Handle String, Number, Boolean, Null
+        case String: node._type = JSONNode.Type.String; node._value = _string; break;
+        case Number: node._type = JSONNode.Type.Number; node._value = _number; break;
+        case Boolean: node._type = JSONNode.Type.Boolean; node._value = _boolean; break;
+        case Null: break;
+        default: throw error("Unexpected " + _event);
+    }
+    return node;
+}
+
+/**
+ * Pushes a container.
+ */
+private void push(boolean isObject)
+{
+    if(_depth==_stack.length) { boolean s[] = new boolean[_depth*2]; System.arraycopy(_stack, 0, s, 0, _depth);
+        _stack = s; }
+    _stack[_depth++] = isObject; _expectValue = !isObject; _hasMember = false;
+}
+
+/**
+ * Reads a quoted string (current char is quote), decoding escapes.
+ */
+private String readString()
+{
+    _index++; _sb.setLength(0);
+    while(true) {
+        if(_index>=_len && !fill()) throw error("Unterminated string");
+
+        // Gobble run of plain chars
+        int start = _index; char c = 0;
+        while(_index<_len && (c=_buf[_index])!='"' && c!='\\') _index++;
+        if(_index>start) _sb.append(_buf, start, _index-start);
+        if(_index>=_len) continue;
+        _index++;
+
+        // Handle close quote
+        if(c=='"') return _sb.toString();
+
+        // Handle escape
+        int e = readChar(); if(e<0) throw error("Unterminated string");
+        switch(e) {
+            case 'n': _sb.append('\n'); break; case 't': _sb.append('\t'); break;
+            case 'r': _sb.append('\r'); break; case 'b': _sb.append('\b'); break;
+            case 'f': _sb.append('\f'); break;
+            case 'u': { int v = 0;
+                for(int i=0;i<4;i++) { int d = Character.digit(readChar(), 16); if(d<0) throw error("Bad unicode escape");
+                    v = v*16 + d; }
+                _sb.append((char)v);
+            } break;
+            default: _sb.append((char)e);
+        }
+    }
+}
+
+/**
+ * Reads an unquoted key string (letters, digits and underscore).
+ */
+private String readSimpleString()
+{
+    _sb.setLength(0);
+    for(int c=peekRaw(); c>=0 && (Character.isLetterOrDigit(c) || c=='_'); c=peekRaw()) {
+        _sb.append((char)c); _index++; }
+    return _sb.toString();
+}
+
+/**
+ * Reads a number.
+ */
+private Number readNumber()
+{
+    _sb.setLength(0);
+    for(int c=peekRaw(); c>=0 && (c>='0' && c<='9' || c=='-' || c=='+' || c=='.' || c=='e' || c=='E'); c=peekRaw()) {
+        _sb.append((char)c); _index++; }
+    try { return new BigDecimal(_sb.toString()); }
+    catch(NumberFormatException e) { throw error("Bad number: " + _sb); }
+}
+
+/**
+ * Reads given word.
+ */
+private void readWord(String aWord)
+{
+    for(int i=0;i<aWord.length();i++)
+        if(readChar()!=aWord.charAt(i)) throw error("Expected " + aWord);
+}
+
+/**
+ * Returns the next non-whitespace char without consuming it (or -1 if at end).
+ */
+private int peekChar()
+{
+    while(true) {
+        if(_index>=_len && !fill()) return -1;
+        char c = _buf[_index]; if(!Character.isWhitespace(c)) return c;
+        _index++;
+    }
+}
+
+/**
+ * Returns the next char without consuming it (or -1 if at end).
+ */
+private int peekRaw()  { return _index<_len || fill()? _buf[_index] : -1; }
+
+/**
+ * Reads the next char (or -1 if at end).
+ */
+private int readChar()  { return _index<_len || fill()? _buf[_index++] : -1; }
+
+/**
+ * Fills the buffer. Returns false if at end of input.
+ */
+private boolean fill()
+{
+    try {
+        int len = _reader.read(_buf, 0, _buf.length); if(len<=0) return false;
+        _len = len; _index = 0; return true;
+    }
+    catch(IOException e) { throw new RuntimeException(e); }
+}
+
+/**
+ * Returns an exception for given message.
+ */
+private RuntimeException error(String aMsg)  { return new RuntimeException("JSONReader: " + aMsg); }
+
+/**
+ * An InputStream for a ByteBuffer.
+ */
+private static class ByteBufferInputStream extends InputStream {
+    ByteBuffer _bb;
+    ByteBufferInputStream(ByteBuffer aBB)  { _bb = aBB; }
+    public int read()  { return _bb.hasRemaining()? _bb.get() & 0xFF : -1; }
+    public int read(byte theBytes[], int anOff, int aLen)  {
+        if(!_bb.hasRemaining()) return -1;
+        int len = Math.min(aLen, _bb.remaining()); _bb.get(theBytes, anOff, len); return len;
+    }
+}
+
+}
@@ -2,6 +2,8 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.util;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -18,6 +20,12 @@ public class JSONWriter {
     // Whether writer compacts JSON (no indent or newline)
     boolean     _compacted = false;
     
+    // The writer to flush buffer to when streaming (null if building whole string)
+    Writer      _writer;
+    
+    // The buffer size at which buffer is flushed to writer when streaming
+    static final int FLUSH_SIZE = 8192;
+    
 /**
  * Returns the current indent.
  */
@@ -48,6 +56,30 @@ public String getString(JSONNode aNode)  { return getStringBuffer(aNode).toStrin
  */
 public StringBuffer getStringBuffer(JSONNode aNode)  { return append(new StringBuffer(1024), aNode); }
 
+/**
+ * Writes given JSON node to given output stream as UTF-8, flushing as it goes instead of building whole string.
+ */
+public void write(JSONNode aNode, OutputStream aStream)
+{
+    try {
+        _writer = new BufferedWriter(new OutputStreamWriter(aStream, StandardCharsets.UTF_8));
+        StringBuffer sb = append(new StringBuffer(FLUSH_SIZE*2), aNode);
+        flush(sb, 0); _writer.flush();
+    }
+    catch(IOException e) { throw new RuntimeException(e); }
+    finally { _writer = null; }
+}
+
+/**
+ * Flushes given buffer to writer if streaming and buffer is larger than given size.
+ */
+protected void flush(StringBuffer aSB, int aSize)
+{
+    if(_writer==null || aSB.length()<aSize) return;
+    try { _writer.append(aSB); aSB.setLength(0); }
+    catch(IOException e) { throw new RuntimeException(e); }
+}
+
 /**
  * Returns a string buffer for given JSON node.
  */
@@ -78,8 +110,8 @@ protected StringBuffer append(StringBuffer aSB, JSONNode aNode)
             List <JSONNode> nodes = aNode.getNodes();
             for(int i=0, iMax=nodes.size(); i<iMax; i++) { JSONNode child = nodes.get(i);
             
-                // Append child
-                append(aSB, child);
+                // Append child (and flush if streaming)
+                append(aSB, child); flush(aSB, FLUSH_SIZE);
                 
                 // If has next, append separator and whitespace
                 if(i+1<iMax) {
@@ -108,8 +140,8 @@ protected StringBuffer append(StringBuffer aSB, JSONNode aNode)
             // Iterate over items to append items and separators
             for(int i=0, iMax=aNode.getNodeCount(); i<iMax; i++) { boolean hasNext = i+1<iMax;
             
-                // Append item
-                append(aSB, aNode.getNode(i));
+                // Append item (and flush if streaming)
+                append(aSB, aNode.getNode(i)); flush(aSB, FLUSH_SIZE);
                 
                 // If has next, append separator
                 if(hasNext) {
@@ -3,16 +3,19 @@
  */
 package snap.util;
 import java.io.File;
+import java.lang.invoke.*;
 import java.lang.reflect.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class provides an optimized convenience for getting named values from arbitrary objects.
  */
 public class Key {
 
-    // A map of getter class maps for encountered classes (each map has an entry with getter for encountered keys)
-    static Map _getterClasses = new Hashtable(10);
+    // A map of accessors for encountered keys, for each encountered class
+    static ClassValue <Map<String,KeyAccessor>> _accessors = new ClassValue() {
+        protected Map<String,KeyAccessor> computeValue(Class aClass)  { return new ConcurrentHashMap(); }};
 
     /**
      * This is interface is implemented by objects that can get key values themselves.
@@ -81,6 +84,22 @@ public static Object getValueImpl(Object anObj, String aKey)
     return value;
 }
 
+/**
+ * Returns the values for given objects and key (accessor is only looked up when object class changes).
+ */
+public static List getValues(List theObjs, String aKey)
+{
+    List values = new ArrayList(theObjs.size());
+    Class cls = null; KeyAccessor accessor = null;
+    for(Object obj : theObjs) {
+        if(obj==null || obj instanceof Get || "this".equals(aKey) || "idHashCode".equals(aKey)) {
+            values.add(getValue(obj, aKey)); continue; }
+        if(obj.getClass()!=cls) { cls = obj.getClass(); accessor = getAccessor(obj, aKey); }
+        values.add(accessor.get(obj));
+    }
+    return values;
+}
+
 /**
  * Sets a value for given object and key and value.
  */
@@ -172,17 +191,17 @@ public static <T> T getValue(Object anObj, String aKey, Class<T> aClass)
 /**
  * Returns the accessor object for a given object (class) and key.
  */
-public synchronized static KeyAccessor getAccessor(Object anObj, String aKey)
+public static KeyAccessor getAccessor(Object anObj, String aKey)
 {
-    // Get accessor class map for object class (if null, create and add)
-    Map classMap = (Map)_getterClasses.get(anObj.getClass());
-    if(classMap==null)
-        _getterClasses.put(anObj.getClass(), classMap = new Hashtable());
+    // Get accessor map for object class
+    Map <String,KeyAccessor> classMap = _accessors.get(anObj.getClass());
     
-    // Get accessor (if null, create and add)
-    KeyAccessor accessor = (KeyAccessor)classMap.get(aKey);
-    if(accessor==null)
-        classMap.put(aKey, accessor = new KeyAccessor(anObj, aKey));
+    // Get accessor (if null, create and add - not computeIfAbsent, since accessor may get other accessors for class)
+    KeyAccessor accessor = classMap.get(aKey);
+    if(accessor==null) {
+        accessor = new KeyAccessor(anObj, aKey);
+        KeyAccessor acc2 = classMap.putIfAbsent(aKey, accessor); if(acc2!=null) accessor = acc2;
+    }
     
     // Return accessor
     return accessor;
@@ -241,6 +260,9 @@ public static class KeyAccessor {
     // The field, if type is Field
     Field     _field;
     
+    // Method handles for get method/field and set method, taking and returning Object (null if not accessible)
+    MethodHandle _getHandle, _setHandle;
+    
     // A bogus method to act as void
     static Method  _nullMethod = ClassUtils.getMethod(String.class, "toString");
     
@@ -267,10 +289,11 @@ public static class KeyAccessor {
         
         // Try to find get method
         if(getGetMethod()!=null) {
-            _type = Type.Methods; return; }
+            _getHandle = getHandle(_getMethod, _getMethodArgs); _type = Type.Methods; return; }
         
         // See if object has field (ivar)
-        try { _field = anObj.getClass().getField(_rawKey); if(_field!=null) { _type = Type.Field; return; } }
+        try { _field = anObj.getClass().getField(_rawKey);
+            if(_field!=null) { _getHandle = getHandle(_field); _type = Type.Field; return; } }
         catch(Exception e) { }
         
         // See if key is list key
@@ -298,6 +321,14 @@ public static class KeyAccessor {
             // Handle TYPE_METHODS
             case Methods:
                 
+                // If method handle available, invoke it
+                if(_getHandle!=null)
+                    try { return (Object)_getHandle.invokeExact(anObj); }
+                    catch(Throwable e) {
+                        System.err.println("Key: Exception evaluating key " + _getMethod.getName() + " on object of class " + anObj.getClass());
+                        e.printStackTrace(); return null;
+                    }
+                
                 // Invoke method
                 try { return _getMethod.invoke(anObj, _getMethodArgs); }
                 
@@ -323,7 +354,7 @@ public static class KeyAccessor {
                 
             // Handle TYPE_FIELD
             case Field:
-                try { return _field.get(anObj); }
+                try { return _getHandle!=null? (Object)_getHandle.invokeExact(anObj) : _field.get(anObj); }
                 catch(Throwable e) { e.printStackTrace(); return null; }
                 
             // Handle TYPE_ENUM
@@ -434,8 +465,12 @@ public static class KeyAccessor {
         else if(List.class.isAssignableFrom(methodClass))
             value = aValue;
         
-        // Invoke set method
-        method.invoke(anObj, value);
+        // Invoke set method (through method handle if available)
+        MethodHandle handle = _setHandle;
+        if(handle!=null)
+            try { Object rval = (Object)handle.invokeExact(anObj, value); }
+            catch(Throwable e) { throw new InvocationTargetException(e); }
+        else method.invoke(anObj, value);
     }
     
     /** Searches for a set method for given key then caches and returns result. */
@@ -457,9 +492,29 @@ public static class KeyAccessor {
         Class argClass = getMethod.getReturnType();
         
         // Try to get a method of the same name, with no arguments
-        try { return _setMethod = _class.getMethod(key, argClass); }
+        try { Method meth = _class.getMethod(key, argClass); _setHandle = getHandle(meth, null); return _setMethod = meth; }
         catch(Exception e) { _setMethod = _nullMethod; throw e; }
     }
+    
+    /** Returns a handle for given instance method (with given trailing args bound) that takes and returns Objects. */
+    private static MethodHandle getHandle(Method aMethod, Object theArgs[])
+    {
+        if(Modifier.isStatic(aMethod.getModifiers())) return null;
+        try {
+            MethodHandle mh = MethodHandles.publicLookup().unreflect(aMethod);
+            if(theArgs!=null && theArgs.length>0) mh = MethodHandles.insertArguments(mh, 1, theArgs);
+            return mh.asType(mh.type().generic());
+        }
+        catch(Exception e) { return null; }
+    }
+    
+    /** Returns a getter handle for given instance field that takes and returns Object. */
+    private static MethodHandle getHandle(Field aField)
+    {
+        if(Modifier.isStatic(aField.getModifiers())) return null;
+        try { MethodHandle mh = MethodHandles.publicLookup().unreflectGetter(aField); return mh.asType(mh.type().generic()); }
+        catch(Exception e) { return null; }
+    }
 }
 
 /** NoSetMethodException. */
@@ -3,6 +3,10 @@
  */
 package snap.util;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import snap.data.Sort;
 
 /**
@@ -16,11 +20,30 @@ public class KeyChain {
     // Possible children of key chain
     Object        _children;
     
-    // The KeyChain parser
-    static KeyChainParser _parser = new KeyChainParser();
+    // The compiled evaluator (created on first evaluation)
+    KeyChainEval  _eval;
+    
+    // The cache clock when key chain was last returned from cache (approximate access time for eviction)
+    long          _cacheTime;
+    
+    // The pool of idle KeyChain parsers (so cache misses can parse in parallel)
+    static Queue <KeyChainParser> _parsers = new ConcurrentLinkedQueue();
+    
+    // The error from last failed parse
+    static volatile String _error;
 
-    // A shared map of previously encountered key chains
-    static Map <Object,KeyChain>  _keyChains = new Hashtable();
+    // A shared map of recently encountered key chains (least recently used are removed in batches past max size)
+    static Map <String,KeyChain>  _keyChains = new ConcurrentHashMap();
+    
+    // The max number of cached key chains
+    static volatile int   _cacheMaxSize = 10000;
+    
+    // The counts of cache hits and misses and the total parse time in nanoseconds
+    static LongAdder      _hitCount = new LongAdder();
+    static AtomicLong     _missCount = new AtomicLong(), _parseTime = new AtomicLong();
+    
+    // The cache clock (advanced on each cache miss, so cache times order key chains by last access)
+    static AtomicLong     _cacheClock = new AtomicLong();
     
     // A thread local to vend per assignment maps
     static ThreadLocal <Map> _assTL = new ThreadLocal() { public Object initialValue() { return new HashMap(); } };
@@ -52,17 +75,93 @@ public static KeyChain getKeyChain(Object aSource)
     if(!(aSource instanceof String) || ((String)aSource).length()==0)
         return new KeyChain(Op.Literal);
         
-    // Get KeyChain (create and cache if needed) and return
-    KeyChain kchain = _keyChains.get(aSource);
-    if(kchain==null)
-        _keyChains.put(aSource, kchain = createKeyChain((String)aSource));
+    // Get cached KeyChain (without lock), stamp access time and return
+    String str = (String)aSource; KeyChain kchain = _keyChains.get(str);
+    if(kchain!=null) { kchain._cacheTime = _cacheClock.get(); _hitCount.increment(); return kchain; }
+    
+    // Create KeyChain, cache (trimming cache if too big) and return
+    kchain = createKeyChain(str); kchain._cacheTime = _cacheClock.incrementAndGet(); _missCount.incrementAndGet();
+    _keyChains.put(str, kchain);
+    if(_keyChains.size()>_cacheMaxSize) trimCache();
     return kchain;
 }
 
 /**
- * Returns a keyChain for aSource (should be a String or existing RMKeyChain).
+ * Removes least recently used key chains from cache until it is under max size (removes an extra tenth, so misses
+ * don't trim every time). Access times are approximate, so this is an approximate LRU.
+ */
+private static synchronized void trimCache()
+{
+    // Get count to remove (just return if another thread already trimmed)
+    int max = _cacheMaxSize, size = _keyChains.size(); if(size<=max) return;
+    int count = size - max + max/10;
+    
+    // Get entries and snapshot of access times (hits keep stamping them), and get cutoff time for oldest count
+    Map.Entry <String,KeyChain> entries[] = _keyChains.entrySet().toArray(new Map.Entry[0]);
+    long times[] = new long[entries.length]; if(times.length==0) return;
+    for(int i=0;i<entries.length;i++) times[i] = entries[i].getValue()._cacheTime;
+    long sorted[] = times.clone(); Arrays.sort(sorted);
+    long cutoff = sorted[Math.min(count, sorted.length) - 1];
+    
+    // Remove entries accessed at or before cutoff
+    for(int i=0;i<entries.length;i++)
+        if(times[i]<=cutoff)
+            _keyChains.remove(entries[i].getKey(), entries[i].getValue());
+}
+
+/**
+ * Returns a keyChain for given string, using an idle parser from pool (or a new one).
+ */
+private static KeyChain createKeyChain(String aString)
+{
+    KeyChainParser parser = _parsers.poll(); if(parser==null) parser = new KeyChainParser();
+    long time = System.nanoTime();
+    try {
+        KeyChain kchain = parser.keyChain(aString);
+        String error = parser.getAndResetError(); if(error!=null) _error = error;
+        return kchain;
+    }
+    finally { _parseTime.addAndGet(System.nanoTime() - time); _parsers.offer(parser); }
+}
+
+/**
+ * Returns the max number of cached key chains.
+ */
+public static int getCacheMaxSize()  { return _cacheMaxSize; }
+
+/**
+ * Sets the max number of cached key chains.
+ */
+public static void setCacheMaxSize(int aValue)
+{
+    _cacheMaxSize = aValue;
+    if(_keyChains.size()>aValue) trimCache();
+}
+
+/**
+ * Returns the number of cached key chains.
+ */
+public static int getCacheSize()  { return _keyChains.size(); }
+
+/**
+ * Returns the number of times a key chain was found in cache.
+ */
+public static long getCacheHitCount()  { return _hitCount.sum(); }
+
+/**
+ * Returns the number of times a key chain string had to be parsed.
+ */
+public static long getCacheMissCount()  { return _missCount.get(); }
+
+/**
+ * Returns the total time spent parsing key chain strings, in milliseconds.
+ */
+public static double getParseTime()  { return _parseTime.get()/1e6; }
+
+/**
+ * Resets the cache hit/miss counts and parse time.
  */
-private static synchronized KeyChain createKeyChain(String aString)  { return _parser.keyChain(aString); }
+public static void resetCacheCounts()  { _hitCount.reset(); _missCount.set(0); _parseTime.set(0); }
 
 /**
  * Returns a thread-local assignments map.
@@ -131,6 +230,16 @@ public void addChild(Object child)
     if(_children==null) _children = child; // If first child, just set Children to point to it
     else if(_children instanceof List) ((List)_children).add(child); // If Children already list, just add child
     else { List c = new ArrayList(4); c.add(_children); c.add(child); _children = c; } // Else, create list and add
+    _eval = null;
+}
+
+/**
+ * Returns a compiled evaluator for this key chain (cached).
+ */
+public KeyChainEval compile()
+{
+    KeyChainEval eval = _eval;
+    return eval!=null? eval : (_eval = KeyChainEval.compile(this));
 }
 
 /**
@@ -171,6 +280,18 @@ public static Object getValue(Object aRoot, Object anObj, KeyChain aKeyChain)
     // If object is null, just return null
     if(anObj==null) return null;
     
+    // Evaluate compiled key chain
+    return aKeyChain.compile().getValue(aRoot, anObj);
+}
+
+/**
+ * Returns the result of evaluating the given key chain on the given object by interpreting key chain.
+ */
+public static Object getValueInterp(Object aRoot, Object anObj, KeyChain aKeyChain)
+{
+    // If object is null, just return null
+    if(anObj==null) return null;
+    
     // If list, use aggregator
     if(anObj instanceof List) { List list = (List)anObj; //&& !RMGroup.isLeaf(anObj) && !RMGroup.isTopNOthers(anObj))
         Object val = getValueImpl(aRoot, anObj, aKeyChain);
@@ -291,7 +412,7 @@ private static Object getValueBinaryMathOp(Object aRoot, Object anObj, KeyChain
 /**
  * Returns the sum of the two given objects (assumed to be strings or numbers).
  */
-private static Object add(Object obj1, Object obj2)
+static Object add(Object obj1, Object obj2)
 {
     // If strings, do string concat (accounting for nulls)
     if(obj1 instanceof String || obj2 instanceof String)
@@ -421,12 +542,12 @@ public boolean hasOp(Op anOp)  { return false; }
 /**
  * Returns the last error encountered by the key chain parser (or null).
  */
-public static String getError()  { return _parser.getError(); }
+public static String getError()  { return _error; }
 
 /**
  * Returns the last error encountered by the key chain parser and resets parser.
  */
-public static String getAndResetError()  { return _parser.getAndResetError(); }
+public static String getAndResetError()  { String e = _error; _error = null; return e; }
 
 /**
  * Sets the given value for the given key chain + property.
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.util;
+import java.math.BigDecimal;
+import java.util.*;
+import snap.data.Sort;
+import snap.util.KeyChain.Op;
+
+/**
+ * A compiled KeyChain that can be evaluated many times without interpreting the KeyChain tree (see KeyChain.compile()).
+ *
+ * Results are the same as KeyChain.getValueImpl(): Constant sub-expressions are evaluated once at compile time,
+ * integer math and number/string compares skip BigDecimal conversion and Sort.Compare(), and each Key remembers the
+ * accessor for the last object class it saw. Ops without a compiled form (ArrayIndex, FunctionCall) just call the
+ * interpreter.
+ */
+public abstract class KeyChainEval {
+
+    // An object to evaluate constant expressions with
+    private static final Object CONST_OBJ = new Object();
+
+/**
+ * Returns the value of the expression for given root and object (like KeyChain.getValue(aRoot, anObj, aKeyChain)).
+ */
+public final Object getValue(Object aRoot, Object anObj)
+{
+    // If object is null, just return null
+    if(anObj==null) return null;
+
+    // If list, evaluate on list or first item
+    if(anObj instanceof List) { List list = (List)anObj;
+        Object val = eval(aRoot, anObj);
+        if(val==null && list.size()>0) val = eval(aRoot, list.get(0));
+        return val;
+    }
+
+    // Evaluate on object
+    return eval(aRoot, anObj);
+}
+
+/**
+ * Returns the value of the expression for given root and (non-null) object (like KeyChain.getValueImpl()).
+ */
+protected abstract Object eval(Object aRoot, Object anObj);
+
+/**
+ * Returns whether expression always has the same value (for non-null object).
+ */
+protected boolean isConstant()  { return false; }
+
+/**
+ * Returns a compiled evaluator for given KeyChain.
+ */
+public static KeyChainEval compile(KeyChain aKC)
+{
+    KeyChainEval eval = compileImpl(aKC);
+    if(eval.isConstant() && !(eval instanceof Literal))
+        eval = new Literal(eval.eval(null, CONST_OBJ));
+    return eval;
+}
+
+/**
+ * Returns a compiled evaluator for given KeyChain (without folding top level).
+ */
+private static KeyChainEval compileImpl(KeyChain aKC)
+{
+    switch(aKC.getOp()) {
+        case Literal: return new Literal(aKC.getValue());
+        case Add: case Subtract: case Multiply: case Divide: case Mod:
+            return new MathOp(aKC.getOp(), child(aKC,0), child(aKC,1));
+        case Negate: return new Negate(child(aKC,0));
+        case GreaterThan: case LessThan: case Equal: case NotEqual: case GreaterThanOrEqual: case LessThanOrEqual:
+            return new CompareOp(aKC.getOp(), child(aKC,0), child(aKC,1));
+        case Not: return new Not(child(aKC,0));
+        case And: case Or: return new LogicOp(aKC.getOp()==Op.And, child(aKC,0), child(aKC,1));
+        case Key: return new KeyEval(aKC.getValueString());
+        case Chain: { KeyChainEval evals[] = new KeyChainEval[aKC.getChildCount()];
+            for(int i=0;i<evals.length;i++) evals[i] = child(aKC,i);
+            return new Chain(evals); }
+        case Conditional:
+            return new Conditional(child(aKC,0), child(aKC,1), aKC.getChildCount()==3? child(aKC,2) : null);
+        case Assignment: return new Assignment(aKC.getChildString(0), child(aKC,1));
+        default: return new Interp(aKC);
+    }
+}
+
+/**
+ * Returns the compiled evaluator for child at given index of given KeyChain.
+ */
+private static KeyChainEval child(KeyChain aKC, int anIndex)  { return compile(aKC.getChildKeyChain(anIndex)); }
+
+/**
+ * Returns whether all given evaluators are constant.
+ */
+private static boolean isAllConstant(KeyChainEval ... theEvals)
+{
+    for(KeyChainEval eval : theEvals) if(eval!=null && !eval.isConstant()) return false;
+    return true;
+}
+
+/**
+ * Returns a long for given number if it converts to a BigDecimal of the same value with no scale (otherwise null).
+ */
+private static Long getExactLong(Object anObj)
+{
+    if(anObj instanceof Integer || anObj instanceof Short || anObj instanceof Byte) return ((Number)anObj).longValue();
+    if(anObj instanceof Long) { long v = (Long)anObj; return Math.abs(v)<=1L<<53? v : null; }
+    if(anObj instanceof BigDecimal) { BigDecimal bd = (BigDecimal)anObj;
+        return bd.scale()==0 && bd.unscaledValue().bitLength()<63? bd.longValue() : null; }
+    return null;
+}
+
+/**
+ * Literal.
+ */
+private static class Literal extends KeyChainEval {
+    final Object _value;
+    Literal(Object aValue)  { _value = aValue; }
+    protected Object eval(Object aRoot, Object anObj)  { return _value; }
+    protected boolean isConstant()  { return true; }
+}
+
+/**
+ * Math ops: Add, Subtract, Multiply, Divide, Mod. Integer Add/Subtract/Multiply are done as longs.
+ */
+private static class MathOp extends KeyChainEval {
+    final Op _op; final KeyChainEval _eval0, _eval1;
+    MathOp(Op anOp, KeyChainEval e0, KeyChainEval e1)  { _op = anOp; _eval0 = e0; _eval1 = e1; }
+    protected boolean isConstant()  { return isAllConstant(_eval0, _eval1); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        // Get value of operands
+        Object o1 = _eval0.getValue(aRoot, anObj), o2 = _eval1.getValue(aRoot, anObj);
+
+        // If non-numeric operand values (except add), just return
+        if(!(o1 instanceof Number && o2 instanceof Number)) return _op==Op.Add? KeyChain.add(o1, o2) : null;
+
+        // If integer operands, try long math (returns same BigDecimal as MathUtils)
+        if(_op==Op.Add || _op==Op.Subtract || _op==Op.Multiply) {
+            Long l1 = getExactLong(o1), l2 = l1!=null? getExactLong(o2) : null;
+            if(l2!=null) try {
+                long v = _op==Op.Add? Math.addExact(l1, l2) : _op==Op.Subtract? Math.subtractExact(l1, l2) :
+                    Math.multiplyExact(l1, l2);
+                return BigDecimal.valueOf(v);
+            }
+            catch(ArithmeticException e) { }
+        }
+
+        // Handle Math ops: Add, Subtract, Multiply, Divide, Mod
+        switch(_op) {
+            case Add: return KeyChain.add(o1, o2);
+            case Subtract: return MathUtils.subtract((Number)o1, (Number)o2);
+            case Multiply: return MathUtils.multiply((Number)o1, (Number)o2);
+            case Divide: return MathUtils.divide((Number)o1, (Number)o2);
+            default: return MathUtils.mod(((Number)o1).doubleValue(), ((Number)o2).doubleValue());
+        }
+    }
+}
+
+/**
+ * Negate.
+ */
+private static class Negate extends KeyChainEval {
+    final KeyChainEval _eval0;
+    Negate(KeyChainEval e0)  { _eval0 = e0; }
+    protected boolean isConstant()  { return _eval0.isConstant(); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        Object o1 = _eval0.getValue(aRoot, anObj);
+        return o1 instanceof Number? MathUtils.negate((Number)o1) : null;
+    }
+}
+
+/**
+ * Compare ops: GreaterThan, LessThan, Equal, NotEqual, GreaterThanOrEqual, LessThanOrEqual.
+ */
+private static class CompareOp extends KeyChainEval {
+    final Op _op; final KeyChainEval _eval0, _eval1;
+    CompareOp(Op anOp, KeyChainEval e0, KeyChainEval e1)  { _op = anOp; _eval0 = e0; _eval1 = e1; }
+    protected boolean isConstant()  { return isAllConstant(_eval0, _eval1); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        // Get value of operands and compare (numbers as doubles and strings ignoring case, just like Sort.Compare())
+        Object o1 = _eval0.getValue(aRoot, anObj), o2 = _eval1.getValue(aRoot, anObj); int order;
+        if(o1 instanceof Number && o2 instanceof Number) {
+            double d1 = ((Number)o1).doubleValue(), d2 = ((Number)o2).doubleValue();
+            order = d1<d2? Sort.ORDER_ASCEND : d1>d2? Sort.ORDER_DESCEND : Sort.ORDER_SAME;
+        }
+        else if(o1 instanceof String && o2 instanceof String) {
+            int o = ((String)o1).compareToIgnoreCase((String)o2);
+            order = o<0? Sort.ORDER_ASCEND : o>0? Sort.ORDER_DESCEND : Sort.ORDER_SAME;
+        }
+        else order = Sort.Compare(o1, o2);
+
+        // Return result for op
+        switch(_op) {
+            case GreaterThan: return order==Sort.ORDER_DESCEND;
+            case LessThan: return order==Sort.ORDER_ASCEND;
+            case Equal: return order==Sort.ORDER_SAME;
+            case NotEqual: return order!=Sort.ORDER_SAME;
+            case GreaterThanOrEqual: return order!=Sort.ORDER_ASCEND;
+            default: return order!=Sort.ORDER_DESCEND;
+        }
+    }
+}
+
+/**
+ * Not.
+ */
+private static class Not extends KeyChainEval {
+    final KeyChainEval _eval0;
+    Not(KeyChainEval e0)  { _eval0 = e0; }
+    protected boolean isConstant()  { return _eval0.isConstant(); }
+    protected Object eval(Object aRoot, Object anObj)  { return !SnapUtils.boolValue(_eval0.getValue(aRoot, anObj)); }
+}
+
+/**
+ * Logic ops: And, Or (both operands are always evaluated, like interpreter).
+ */
+private static class LogicOp extends KeyChainEval {
+    final boolean _and; final KeyChainEval _eval0, _eval1;
+    LogicOp(boolean isAnd, KeyChainEval e0, KeyChainEval e1)  { _and = isAnd; _eval0 = e0; _eval1 = e1; }
+    protected boolean isConstant()  { return isAllConstant(_eval0, _eval1); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        boolean b1 = SnapUtils.boolValue(_eval0.getValue(aRoot, anObj));
+        boolean b2 = SnapUtils.boolValue(_eval1.getValue(aRoot, anObj));
+        return _and? (b1 && b2) : (b1 || b2);
+    }
+}
+
+/**
+ * Key, with accessor for last object class (falls back to assignments if value is null).
+ */
+private static class KeyEval extends KeyChainEval {
+    final String _key; final boolean _special; AccessorCache _cache;
+    KeyEval(String aKey)  { _key = aKey; _special = "this".equals(aKey) || "idHashCode".equals(aKey); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        // Get value: If object can get key value, have it, otherwise use accessor for object class
+        Object value;
+        if(anObj instanceof Key.Get) value = ((Key.Get)anObj).getKeyValue(_key);
+        else if(_special) value = Key.getValueImpl(anObj, _key);
+        else {
+            AccessorCache cache = _cache; Class cls = anObj.getClass();
+            if(cache==null || cache._class!=cls) _cache = cache = new AccessorCache(cls, Key.getAccessor(anObj, _key));
+            value = cache._accessor.get(anObj);
+        }
+
+        // If null, try assignments
+        if(value==null) value = KeyChain.getAssignments().get(_key);
+        return value;
+    }
+}
+
+/**
+ * An accessor for a class.
+ */
+private static class AccessorCache {
+    final Class _class; final Key.KeyAccessor _accessor;
+    AccessorCache(Class aClass, Key.KeyAccessor anAccessor)  { _class = aClass; _accessor = anAccessor; }
+}
+
+/**
+ * Chain.
+ */
+private static class Chain extends KeyChainEval {
+    final KeyChainEval _evals[];
+    Chain(KeyChainEval theEvals[])  { _evals = theEvals; }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        Object value = anObj;
+        for(KeyChainEval eval : _evals) value = eval.getValue(aRoot, value);
+        return value;
+    }
+}
+
+/**
+ * Conditional.
+ */
+private static class Conditional extends KeyChainEval {
+    final KeyChainEval _eval0, _eval1, _eval2;
+    Conditional(KeyChainEval e0, KeyChainEval e1, KeyChainEval e2)  { _eval0 = e0; _eval1 = e1; _eval2 = e2; }
+    protected boolean isConstant()  { return isAllConstant(_eval0, _eval1, _eval2); }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        if(SnapUtils.boolValue(_eval0.getValue(aRoot, anObj))) return _eval1.getValue(aRoot, anObj);
+        return _eval2!=null? _eval2.getValue(aRoot, anObj) : null;
+    }
+}
+
+/**
+ * Assignment.
+ */
+private static class Assignment extends KeyChainEval {
+    final String _key; final KeyChainEval _eval1;
+    Assignment(String aKey, KeyChainEval e1)  { _key = aKey; _eval1 = e1; }
+    protected Object eval(Object aRoot, Object anObj)
+    {
+        Object value = _eval1.getValue(aRoot, anObj);
+        KeyChain.getAssignments().put(_key, value); return "";
+    }
+}
+
+/**
+ * Ops that are just interpreted.
+ */
+private static class Interp extends KeyChainEval {
+    final KeyChain _kc;
+    Interp(KeyChain aKC)  { _kc = aKC; }
+    protected Object eval(Object aRoot, Object anObj)  { return KeyChain.getValueImpl(aRoot, anObj, _kc); }
+}
+
+}
@@ -34,6 +34,16 @@ public String getError() { return _error; }
  */
 public String getAndResetError() { String e = _error; _error = null; return e; }
 
+/**
+ * Override to tokenize with combined DFA.
+ */
+protected Tokenizer createTokenizer()
+{
+    Tokenizer tz = super.createTokenizer();
+    tz.setUseDFA(true);
+    return tz;
+}
+
 /**
  * Load rule from rule file and install handlers.
  */
@@ -38,6 +38,16 @@ public XMLElement parseXML(Object aSource) throws Exception
  */
 protected Tokenizer createTokenizerImpl()  { return new XMLTokenizer(); }
 
+/**
+ * Override to tokenize with combined DFA.
+ */
+protected Tokenizer createTokenizer()
+{
+    Tokenizer tz = super.createTokenizer();
+    tz.setUseDFA(true);
+    return tz;
+}
+
 /**
  * A Tokenizer subclass to read XML contents.
  */
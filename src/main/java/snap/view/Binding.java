@@ -24,6 +24,16 @@ public class Binding implements Cloneable, XMLArchiver.Archivable {
     
     // The format to be used
     //Format          _format;
+    
+    // The keys of key if it is a simple chain of keys (empty if not)
+    String          _keys[];
+    
+    // The model value, first key value and observed model objects from last tracked evaluation (objects null if not)
+    Object          _modelValue, _modelRoot;
+    SnapObject      _modelObjs[];
+    
+    // Whether an observed model object has changed since last tracked evaluation
+    boolean         _modelChanged;
 
 /**
  * Creates a new binding.
@@ -68,7 +78,28 @@ public String getKey()  { return _key; }
 /**
  * Sets the key that is used to get the property value from the bound object.
  */
-public void setKey(String aKey)  { _key = aKey; }
+public void setKey(String aKey)  { _key = aKey; _keys = null; _modelObjs = null; }
+
+/**
+ * Returns the keys of key if it is a simple chain of keys (like "Selection.Name"), otherwise null.
+ */
+public String[] getKeyChainKeys()
+{
+    // If already set, just return
+    if(_keys!=null) return _keys.length>0? _keys : null;
+    
+    // Get keys from key chain (op must be Key or Chain of Keys)
+    KeyChain kchain = _key!=null && _key.length()>0? KeyChain.getKeyChain(_key) : null;
+    String keys[] = new String[0];
+    if(kchain!=null && kchain.getOp()==KeyChain.Op.Key) keys = new String[] { kchain.getValueString() };
+    else if(kchain!=null && kchain.getOp()==KeyChain.Op.Chain) { keys = new String[kchain.getChildCount()];
+        for(int i=0;i<keys.length;i++) { KeyChain kc = kchain.getChildKeyChain(i);
+            if(kc.getOp()!=KeyChain.Op.Key) { keys = new String[0]; break; }
+            keys[i] = kc.getValueString(); }
+    }
+    _keys = keys;
+    return _keys.length>0? _keys : null;
+}
 
 /**
  * Returns the conversion key used to get conversion map to convert bound object value to UI node.
@@ -98,7 +129,7 @@ public Binding clone()
     // Do normal object cone, clear UI node and return
     Binding clone; try { clone = (Binding)super.clone(); }
     catch(CloneNotSupportedException e) { return null; }
-    clone._view = null;
+    clone._view = null; clone._modelObjs = null; clone._modelValue = clone._modelRoot = null;
     return clone;
 }
 
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.view;
+import java.util.*;
+import snap.gfx.Rect;
+
+/**
+ * A repaint region made of a small set of disjoint rects, so sparse updates (like a caret in one corner and a
+ * progress bar in another) don't repaint everything in between.
+ *
+ * An added rect is merged with an existing rect when their union bounds cost less to paint than the two separately
+ * (each rect also costs a fixed area for the extra paint pass). Otherwise the parts of it that aren't already covered
+ * are added. When there are too many rects, the pair that wastes the least area is merged.
+ */
+public class DirtyRegion {
+
+    // The rects
+    List <Rect>      _rects = new ArrayList();
+
+    // The max number of rects
+    int              _maxCount;
+
+    // The area that each separate rect is assumed to cost to paint (prefers merging small, nearby rects)
+    double           _rectCost;
+
+/**
+ * Creates a new DirtyRegion.
+ */
+public DirtyRegion()  { this(8, 64*64); }
+
+/**
+ * Creates a new DirtyRegion for given max number of rects and cost area for each rect.
+ */
+public DirtyRegion(int aMaxCount, double aRectCost)  { _maxCount = Math.max(aMaxCount,1); _rectCost = aRectCost; }
+
+/**
+ * Returns the rects.
+ */
+public List <Rect> getRects()  { return _rects; }
+
+/**
+ * Returns the number of rects.
+ */
+public int getRectCount()  { return _rects.size(); }
+
+/**
+ * Returns whether region is empty.
+ */
+public boolean isEmpty()  { return _rects.size()==0; }
+
+/**
+ * Returns the bounds of all rects.
+ */
+public Rect getBounds()
+{
+    Rect bnds = new Rect(); for(Rect r : _rects) bnds.union(r);
+    return bnds;
+}
+
+/**
+ * Returns the total area of rects.
+ */
+public double getArea()  { double area = 0; for(Rect r : _rects) area += area(r); return area; }
+
+/**
+ * Adds a rect to region.
+ */
+public void add(Rect aRect)
+{
+    // If empty, just return
+    if(aRect==null || aRect.isEmpty()) return;
+    Rect rect = aRect.clone();
+
+    // Merge with any rect where union is cheaper than separate rects (start over, since merged rect grew)
+    for(int i=0;i<_rects.size();i++) { Rect r = _rects.get(i);
+        if(r.contains(rect)) return;
+        Rect union = r.getUnionRect(rect);
+        if(area(union) <= area(r) + area(rect) - overlap(r,rect) + _rectCost) {
+            _rects.remove(i); rect = union; i = -1; }
+    }
+
+    // Add parts of rect that aren't covered by other rects
+    List <Rect> parts = new ArrayList(); parts.add(rect);
+    for(Rect r : _rects) {
+        if(overlap(r,rect)<=0) continue;
+        List <Rect> parts2 = new ArrayList();
+        for(Rect part : parts) subtract(part, r, parts2);
+        parts = parts2;
+    }
+    _rects.addAll(parts);
+
+    // If too many rects, merge cheapest pairs
+    while(_rects.size()>_maxCount)
+        mergeCheapest();
+}
+
+/**
+ * Merges the pair of rects whose union wastes the least area (and any other rects that union overlaps).
+ */
+protected void mergeCheapest()
+{
+    // Find cheapest pair
+    int i0 = 0, i1 = 1; double cost = Double.MAX_VALUE;
+    for(int i=0;i<_rects.size();i++) { Rect r0 = _rects.get(i);
+        for(int j=i+1;j<_rects.size();j++) { Rect r1 = _rects.get(j);
+            double c = area(r0.getUnionRect(r1)) - area(r0) - area(r1);
+            if(c<cost) { cost = c; i0 = i; i1 = j; }
+        }
+    }
+
+    // Remove pair and merge in any rects that union overlaps (until none do), then add
+    Rect union = _rects.get(i0).getUnionRect(_rects.get(i1));
+    _rects.remove(i1); _rects.remove(i0);
+    for(int i=0;i<_rects.size();i++) { Rect r = _rects.get(i);
+        if(overlap(r,union)>0) { _rects.remove(i); union.union(r); i = -1; } }
+    _rects.add(union);
+}
+
+/**
+ * Clears the region.
+ */
+public void clear()  { _rects.clear(); }
+
+/**
+ * Adds the parts of a rect that are outside another rect to given list (up to four bands).
+ */
+private static void subtract(Rect aRect, Rect aRect2, List <Rect> theParts)
+{
+    if(overlap(aRect,aRect2)<=0) { theParts.add(aRect); return; }
+    Rect irect = aRect.getIntersectRect(aRect2);
+    double x = aRect.x, y = aRect.y, mx = aRect.getMaxX(), my = aRect.getMaxY();
+    double ix = irect.x, iy = irect.y, imx = irect.getMaxX(), imy = irect.getMaxY();
+    if(iy>y) theParts.add(new Rect(x, y, mx - x, iy - y));
+    if(imy<my) theParts.add(new Rect(x, imy, mx - x, my - imy));
+    if(ix>x) theParts.add(new Rect(x, iy, ix - x, imy - iy));
+    if(imx<mx) theParts.add(new Rect(imx, iy, mx - imx, imy - iy));
+}
+
+/**
+ * Returns the area of a rect.
+ */
+private static double area(Rect aRect)  { return aRect.width*aRect.height; }
+
+/**
+ * Returns the area of the intersection of two rects (zero if they don't overlap).
+ */
+private static double overlap(Rect aRect1, Rect aRect2)
+{
+    double w = Math.min(aRect1.getMaxX(), aRect2.getMaxX()) - Math.max(aRect1.x, aRect2.x);
+    double h = Math.min(aRect1.getMaxY(), aRect2.getMaxY()) - Math.max(aRect1.y, aRect2.y);
+    return w>0 && h>0? w*h : 0;
+}
+
+/**
+ * Standard toString implementation.
+ */
+public String toString()  { return "DirtyRegion { Rects:" + _rects + " }"; }
+
+}
@@ -5,6 +5,10 @@ package snap.view;
 
 /**
  * A label subclass used to render items in Lists, Tables, Trees, Browsers.
+ *
+ * If list has cell reuse turned on (ListView.setCellReuse()), cells are reused for other items as list scrolls: the
+ * text, graphics, font and tool tip are reset before a cell is configured again, so a cell configure method should set
+ * any other attribute it changes for every item.
  */
 public class ListCell <T> extends Label {
     
@@ -53,4 +57,15 @@ public int getCol()  { return _col; }
  */
 public boolean isSelected()  { return _sel; }
 
+/**
+ * Rebinds cell to given item, row, column and selection and resets text, graphics, font and tool tip.
+ */
+protected void rebind(T anItem, int aRow, int aCol, boolean isSel)
+{
+    _item = anItem; _row = aRow; _col = aCol; _sel = isSel;
+    setText(null); setGraphic(null); setGraphicAfter(null);
+    for(int i=getChildCount()-1;i>=0;i--) if(getChild(i)!=_strView) removeChild(i);
+    setFont(null); setToolTip(null);
+}
+
 }
\ No newline at end of file
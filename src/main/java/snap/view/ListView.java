@@ -4,6 +4,7 @@
 package snap.view;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 import snap.gfx.*;
 import snap.util.*;
 
@@ -18,6 +19,12 @@ public class ListView <T> extends ParentView implements View.Selectable <T> {
     // The row height
     double                _rowHeight;
     
+    // The function to return the row height for an item (null for fixed row height)
+    ToDoubleFunction <T>  _rowHeightFunc;
+    
+    // The row heights, if row height function is set (created on demand)
+    RowHeights            _rowHeights;
+    
     // The cell padding
     Insets                _cellPad = getCellPaddingDefault();
     
@@ -54,6 +61,15 @@ public class ListView <T> extends ParentView implements View.Selectable <T> {
     // The layout for cells
     ViewLayout.VBoxLayout _layout = new ViewLayout.VBoxLayout(this);
     
+    // Whether cells are reused for other items (rebound instead of recreated)
+    boolean               _cellReuse;
+    
+    // The cells removed from list, to be rebound to new items (if cell reuse)
+    List <ListCell>       _cellPool = new ArrayList();
+    
+    // The max number of pooled cells
+    static final int      CELL_POOL_MAX = 128;
+    
     // Shared CellPadding default
     static Insets         _cellPadDefault = new Insets(2,2,2,4);
     
@@ -93,7 +109,7 @@ public void setItems(List <T> theItems)
     if(theItems!=null) _items.addAll(theItems);
     setSelectedItem(sitem);
     relayout();
-    _sampleWidth = _sampleHeight = -1;
+    _sampleWidth = _sampleHeight = -1; _rowHeights = null;
     relayoutParent();
 }
 
@@ -160,14 +176,14 @@ public void setSelectionInterval(int aStart, int anEnd)
 /**
  * Returns the selected item.
  */
-public T getSelectedItem()  { return _selIndex>=0 && _selIndex<_items.size()? _items.get(_selIndex) : null; }
+public T getSelectedItem()  { List <T> items = getItems(); return _selIndex>=0 && _selIndex<items.size()? items.get(_selIndex) : null; }
 
 /**
  * Sets the selected index.
  */
 public void setSelectedItem(T anItem)
 {
-    int index = _items.indexOf(anItem);
+    int index = getItems().indexOf(anItem);
     setSelectedIndex(index);
 }
 
@@ -202,7 +218,48 @@ public double getRowHeight()
 /**
  * Sets the row height.
  */
-public void setRowHeight(double aValue)  { _rowHeight = aValue; }
+public void setRowHeight(double aValue)  { _rowHeight = aValue; _rowHeights = null; }
+
+/**
+ * Returns the height of row at given index.
+ */
+public double getRowHeight(int anIndex)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getHeight(anIndex) : getRowHeight();
+}
+
+/**
+ * Returns the Y of row at given index.
+ */
+public double getRowY(int anIndex)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getY(anIndex) : anIndex*getRowHeight();
+}
+
+/**
+ * Returns the function to return the row height for an item (null for fixed row height).
+ */
+public ToDoubleFunction <T> getRowHeightFunction()  { return _rowHeightFunc; }
+
+/**
+ * Sets the function to return the row height for an item (for variable row heights).
+ */
+public void setRowHeightFunction(ToDoubleFunction <T> aFunc)
+{
+    _rowHeightFunc = aFunc; _rowHeights = null;
+    relayout(); relayoutParent();
+}
+
+/**
+ * Returns the row heights, if row height function is set.
+ */
+protected RowHeights getRowHeights()
+{
+    if(_rowHeights!=null || _rowHeightFunc==null) return _rowHeights;
+    return _rowHeights = RowHeights.getRowHeights(getItems(), _rowHeightFunc, getRowHeight());
+}
 
 /**
  * Returns the cell padding.
@@ -230,10 +287,19 @@ public Insets getCellPaddingDefault()  { return _cellPadDefault; }
  */
 public int getRowAt(double aY)
 {
-    int index = (int)(aY/getRowHeight());
+    int index = getRowIndexAt(aY);
     return Math.min(index, getItems().size()-1);
 }
 
+/**
+ * Returns the row index at given Y location, including rows past the end of items.
+ */
+protected int getRowIndexAt(double aY)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getRowAt(aY) : (int)(aY/getRowHeight());
+}
+
 /**
  * Called to set method for rendering.
  */
@@ -295,6 +361,10 @@ public void updateItems(T ... theItems)
         if(theItems!=null && theItems.length>0) Collections.addAll(_updateItems, theItems);
         else _updateItems.addAll(getItems());
     }
+    if(_rowHeights!=null) {
+        if(!_rowHeights.updateItems(getItems(), _rowHeightFunc, theItems)) _rowHeights = null;
+        relayoutParent();
+    }
     relayout();
 }
 
@@ -312,13 +382,47 @@ public void updateIndex(int anIndex)
  */
 protected void updateCellAt(int anIndex)
 {
+    // If cell can be reused, just rebind to item and configure
     int cindex = anIndex - _cellStart;
-    ListCell cell = createCell(anIndex), oldCell = getCell(cindex);
+    ListCell oldCell = getCell(cindex);
+    if(isCellReusable(oldCell)) {
+        bindCell(oldCell, anIndex); configureCell(oldCell);
+        oldCell.layout(); return;
+    }
+    
+    // Otherwise replace cell
+    ListCell cell = createCell(anIndex);
     configureCell(cell); cell.setBounds(oldCell.getBounds());
     cell.layout();
     removeChild(cindex); addChild(cell, cindex);
 }
 
+/**
+ * Removes the cell at given index and adds it to cell pool (if reusable).
+ */
+protected void removeCell(int anIndex)
+{
+    ListCell cell = (ListCell)removeChild(anIndex);
+    if(isCellReusable(cell) && _cellPool.size()<CELL_POOL_MAX)
+        _cellPool.add(cell);
+}
+
+/**
+ * Returns whether cells are reused for other items as list scrolls or updates (rebound instead of recreated).
+ */
+public boolean isCellReuse()  { return _cellReuse; }
+
+/**
+ * Sets whether cells are reused for other items as list scrolls or updates (rebound instead of recreated). Only text,
+ * graphics, font and tool tip are reset, so cell configure should set any other attribute it changes for every item.
+ */
+public void setCellReuse(boolean aValue)  { _cellReuse = aValue; if(!aValue) _cellPool.clear(); }
+
+/**
+ * Returns whether cell can be rebound to another item (false if no cell reuse or cell configure added listeners).
+ */
+protected boolean isCellReusable(ListCell aCell)  { return _cellReuse && aCell._evtAdptr==null; }
+
 /**
  * Returns the cell at given index.
  */
@@ -332,7 +436,7 @@ protected double getPrefWidthImpl(double aH)  { if(_sampleWidth<0) calcSampleSiz
 /**
  * Returns the preferred height.
  */
-protected double getPrefHeightImpl(double aW)  { return getRowHeight()*_items.size(); }
+protected double getPrefHeightImpl(double aW)  { return getRowY(getItems().size()); }
 
 /**
  * Override to layout children with VBox layout.
@@ -340,15 +444,15 @@ protected double getPrefHeightImpl(double aW)  { return getRowHeight()*_items.si
 protected void layoutChildren()
 {
     // Update CellStart/CellEnd for current ClipBounds
-    Rect clip = getClipBoundsAll(); if(clip==null) clip = getBoundsInside(); double rh = getRowHeight();
+    Rect clip = getClipBoundsAll(); if(clip==null) clip = getBoundsInside();
     
     // Update CellStart/CellEnd for current ClipBounds
-    _cellStart = (int)Math.max(clip.getY()/rh,0);
-    _cellEnd = (int)(clip.getMaxY()/rh);
+    _cellStart = Math.max(getRowIndexAt(clip.getY()),0);
+    _cellEnd = getRowIndexAt(clip.getMaxY());
     
-    // Remove cells before and/or after new visible range
-    while(getChildCount()>0 && getCell(0).getRow()<_cellStart) removeChild(0);
-    for(int i=getChildCount()-1; i>=0 && getCell(i).getRow()>_cellEnd; i--) removeChild(i);
+    // Remove cells before and/or after new visible range (they go to cell pool)
+    while(getChildCount()>0 && getCell(0).getRow()<_cellStart) removeCell(0);
+    for(int i=getChildCount()-1; i>=0 && getCell(i).getRow()>_cellEnd; i--) removeCell(i);
     
     // Update cells in visible range: If row cell already set, update it, otherwise create, configure and add
     for(int i=_cellStart,cindex=0;i<=_cellEnd;i++,cindex++) {
@@ -358,7 +462,7 @@ protected void layoutChildren()
             if(i<cell.getRow()) {
                 ListCell cell2 = createCell(i); addChild(cell2,cindex);
                 configureCell(cell2);
-                cell.setBounds(0,i*rh,getWidth(),rh); cell.layout();
+                cell2.setBounds(0,getRowY(i),getWidth(),getRowHeight(i)); cell2.layout();
             }
             else if(item!=cell.getItem())
                 updateCellAt(i);
@@ -366,7 +470,7 @@ protected void layoutChildren()
         else {
             ListCell cell = createCell(i); addChild(cell);
             configureCell(cell);
-            cell.setBounds(0,i*rh,getWidth(),rh); cell.layout();
+            cell.setBounds(0,getRowY(i),getWidth(),getRowHeight(i)); cell.layout();
         }
     }
     
@@ -383,17 +487,35 @@ protected void layoutChildren()
 }
 
 /**
- * Creates a cell for item at index.
+ * Creates a cell for item at index (or rebinds a pooled cell).
  */
 protected ListCell createCell(int anIndex)
 {
-    T item = anIndex>=0 && anIndex<_items.size()? _items.get(anIndex) : null;
+    // If pooled cell available, rebind it
+    if(_cellPool.size()>0) {
+        ListCell cell = _cellPool.remove(_cellPool.size()-1);
+        bindCell(cell, anIndex); return cell;
+    }
+    
+    // Otherwise create new cell
+    List <T> items = getItems(); T item = anIndex>=0 && anIndex<items.size()? items.get(anIndex) : null;
     ListCell cell = new ListCell(this, item, anIndex, getColIndex(), _selIndex==anIndex);
     cell.setPadding(getCellPadding());
-    cell.setPrefHeight(getRowHeight());
+    cell.setPrefHeight(getRowHeight(anIndex));
     return cell;
 }
 
+/**
+ * Binds a cell to item at index.
+ */
+protected void bindCell(ListCell aCell, int anIndex)
+{
+    List <T> items = getItems(); T item = anIndex>=0 && anIndex<items.size()? items.get(anIndex) : null;
+    aCell.rebind(item, anIndex, getColIndex(), _selIndex==anIndex);
+    aCell.setPadding(getCellPadding());
+    aCell.setPrefHeight(getRowHeight(anIndex));
+}
+
 /**
  * Called to configure a cell.
  */
@@ -437,7 +559,7 @@ protected int getColIndex()  { return 0; }
 public Insets getInsetsAll()
 {
     Insets ins = super.getInsetsAll();
-    if(_cellStart>0) ins = Insets.add(ins, _cellStart*getRowHeight(), 0, 0, 0);
+    if(_cellStart>0) ins = Insets.add(ins, getRowY(_cellStart), 0, 0, 0);
     return ins;
 }
 
@@ -458,8 +580,8 @@ public void setHeight(double aValue)  { if(aValue==getHeight()) return; super.se
 public void paintAll(Painter aPntr)
 {
     super.paintAll(aPntr);
-    Rect clip = aPntr.getClipBounds(); double rh = getRowHeight();
-    int cellStart = (int)Math.max(clip.getY()/rh,0), cellEnd = (int)(clip.getMaxY()/rh);
+    Rect clip = aPntr.getClipBounds();
+    int cellStart = Math.max(getRowIndexAt(clip.getY()),0), cellEnd = getRowIndexAt(clip.getMaxY());
     if(cellStart!=_cellStart || cellEnd!=_cellEnd)
         relayout();
 }
@@ -61,7 +61,7 @@ public void addItem(MenuItem aMenuItem)
 {
     // Add item
     _items.add(aMenuItem);
-    aMenuItem._parentMenu = this;
+    aMenuItem._parentMenu = this; clearNameIndexes();
     
     // If child is menu, add arrow graphic
     if(aMenuItem instanceof Menu)
@@ -85,6 +85,15 @@ public View getChild(String aName)
     return null;
 }
 
+/**
+ * Override to include child menu items.
+ */
+protected void addNamedViews(Map <String,View> aMap)
+{
+    super.addNamedViews(aMap);
+    for(View node : _items) if(node.getName()!=null) aMap.putIfAbsent(node.getName(), node);
+}
+
 /**
  * Returns a popup node for this menu.
  */
@@ -100,6 +100,15 @@ public boolean isSeparator()
  */
 public Menu getParentMenu()  { return _parentMenu; }
 
+/**
+ * Override to clear name index of parent menu.
+ */
+protected void clearNameIndexes()
+{
+    super.clearNameIndexes();
+    if(_parentMenu!=null) _parentMenu.clearNameIndexes();
+}
+
 /**
  * Returns the default alignment for button.
  */
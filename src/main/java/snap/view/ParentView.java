@@ -20,6 +20,18 @@ public class ParentView extends View {
     // Whether this node is performing layout
     boolean        _inLayout;
     
+    // A map of named descendants for getChild(name), in lookup order (created on first lookup, cleared on change)
+    Map <String,View>  _nameIndex;
+    
+    // Whether to check name index lookups against a search of descendants (for debugging)
+    static boolean     _checkNameIndex;
+    
+    // A grid of children by bounds for painting and hit-testing (created on first use if enough children)
+    ViewGrid           _childGrid;
+    
+    // The number of children needed to use a child grid
+    static int         _childGridMin = 64;
+    
     // Constants for properties
     public static final String Child_Prop = "Child";
     
@@ -56,7 +68,8 @@ protected void addChild(View aChild, int anIndex)
     
     // Add child to Children list
     if(_children==Collections.EMPTY_LIST) _children = new ArrayList();
-    _children.add(anIndex, aChild);
+    _children.add(anIndex, aChild); clearNameIndexes();
+    if(_childGrid!=null) { if(anIndex==_children.size()-1) _childGrid.add(aChild, anIndex); else _childGrid = null; }
     relayout(); relayoutParent(); setNeedsLayoutDeep(true); repaint();
     
     // Fire property change
@@ -69,7 +82,7 @@ protected void addChild(View aChild, int anIndex)
 protected View removeChild(int anIndex)
 {
     // Remove child from children list and clear parent
-    View child = _children.remove(anIndex); child.setParent(null);
+    View child = _children.remove(anIndex); child.setParent(null); clearNameIndexes(); _childGrid = null;
     relayout(); relayoutParent(); repaint();
     
     // Fire property change and return
@@ -108,18 +121,62 @@ public View[] getChildArray()
 }
 
 /**
- * Returns the child with given name.
+ * Returns the child with given name (the first found in depth first search of descendants with same owner).
  */
 public View getChild(String aName)
+{
+    View view = getNameIndex().get(aName);
+    if(_checkNameIndex && view!=getChildSearch(aName))
+        throw new IllegalStateException("ParentView.getChild: Name index is stale for " + aName + " in " + this);
+    return view;
+}
+
+/**
+ * Returns the child with given name by searching descendants (depth first, descendants with same owner), without index.
+ */
+protected View getChildSearch(String aName)
 {
     for(View cnode : getChildren()) {
         if(aName.equals(cnode.getName())) return cnode;
         if(cnode instanceof ParentView && cnode.getOwner()==getOwner()) {
-            View n = ((ParentView)cnode).getChild(aName); if(n!=null) return n; }
+            View n = ((ParentView)cnode).getChildSearch(aName); if(n!=null) return n; }
     }
     return null;
 }
 
+/**
+ * Returns whether getChild(name) checks name index lookups against a search of descendants (for debugging).
+ */
+public static boolean isCheckNameIndex()  { return _checkNameIndex; }
+
+/**
+ * Sets whether getChild(name) checks name index lookups against a search of descendants (for debugging).
+ */
+public static void setCheckNameIndex(boolean aValue)  { _checkNameIndex = aValue; }
+
+/**
+ * Returns the map of named descendants for getChild(name).
+ */
+protected Map <String,View> getNameIndex()
+{
+    if(_nameIndex!=null) return _nameIndex;
+    Map <String,View> map = new HashMap(); addNamedViews(map);
+    return _nameIndex = map;
+}
+
+/**
+ * Adds named descendants to given map in depth first order, keeping first view for each name (only searches child
+ * descendants if child has same owner).
+ */
+protected void addNamedViews(Map <String,View> aMap)
+{
+    for(View child : getChildren()) {
+        if(child.getName()!=null) aMap.putIfAbsent(child.getName(), child);
+        if(child instanceof ParentView && child.getOwner()==getOwner())
+            ((ParentView)child).addNamedViews(aMap);
+    }
+}
+
 /**
  * Returns the index of the given child in this node's children list.
  */
@@ -146,7 +203,7 @@ public View getChildAt(Point aPnt)  { return getChildAt(aPnt.x, aPnt.y); }
  */
 public View getChildAt(double aX, double aY)
 {
-    List <View> children = getChildren();
+    List <View> children = getChildrenIn(new Rect(aX, aY, 0, 0));
     for(int i=children.size()-1; i>=0; i--) { View child = children.get(i); if(!child.isPickable()) continue;
         Point p = child.parentToLocal(aX, aY);
         if(child.contains(p.x,p.y))
@@ -160,7 +217,7 @@ public View getChildAt(double aX, double aY)
  */
 public List <View> getChildrenAt(Shape aShape)
 {
-    List <View> children = getChildren(), hit = new ArrayList();
+    List <View> children = getChildrenIn(aShape.getBounds().getInsetRect(-1)), hit = new ArrayList();
     for(int i=children.size()-1; i>=0; i--) { View child = children.get(i); if(!child.isPickable()) continue;
         Shape shp = child.parentToLocal(aShape);
         if(child.intersects(shp))
@@ -169,6 +226,30 @@ public List <View> getChildrenAt(Shape aShape)
     return hit;
 }
 
+/**
+ * Returns the children whose bounds in parent coords might intersect given rect, in order (uses child grid if there
+ * are many children, otherwise returns all children). Callers should still test each child.
+ */
+public List <View> getChildrenIn(Rect aRect)
+{
+    ViewGrid grid = getChildGrid();
+    return grid!=null? grid.getViews(aRect) : getChildren();
+}
+
+/**
+ * Returns the grid of children by bounds (null if not enough children to need one).
+ */
+public ViewGrid getChildGrid()
+{
+    if(getChildCount()<_childGridMin) return _childGrid = null;
+    return _childGrid!=null? _childGrid : (_childGrid = new ViewGrid(this));
+}
+
+/**
+ * Called when a child's bounds or transform change.
+ */
+protected void childBoundsChanged(View aChild)  { if(_childGrid!=null) _childGrid.update(aChild); }
+
 /**
  * Returns the managed children.
  */
@@ -218,8 +299,8 @@ protected void paintChildren(Painter aPntr)
     // Get clip
     Shape clip = aPntr.getClip();
     
-    // Iterate over children and paint any that intersect clip
-    for(View child : getChildren()) {
+    // Iterate over children near clip and paint any that intersect clip
+    for(View child : getChildrenIn(clip.getBounds())) {
         if(!child.isVisible()) continue;
         Shape clip2 = child.parentToLocal(clip);
         if(clip2.intersects(child.getBoundsInside())) {
@@ -243,8 +324,9 @@ protected void paintAbove(Painter aPntr)  { }
  */
 public void layout()
 {
-    if(_inLayout) return; _inLayout = true;
-    layoutChildren(); _inLayout = false;
+    if(_inLayout) return; _inLayout = true; startPrefCache();
+    try { layoutChildren(); }
+    finally { _inLayout = false; stopPrefCache(); }
 }
 
 /**
@@ -257,11 +339,15 @@ protected void layoutChildren()  { }
  */
 public void layoutDeep()
 {
-    if(_needsLayout) layout();
-    if(_needsLayoutDeep)
-    for(View child : getChildren())
-        if(child instanceof ParentView && (((ParentView)child)._needsLayout || ((ParentView)child)._needsLayoutDeep))
-            ((ParentView)child).layoutDeep();
+    startPrefCache();
+    try {
+        if(_needsLayout) layout();
+        if(_needsLayoutDeep)
+        for(View child : getChildren())
+            if(child instanceof ParentView && (((ParentView)child)._needsLayout||((ParentView)child)._needsLayoutDeep))
+                ((ParentView)child).layoutDeep();
+    }
+    finally { stopPrefCache(); }
     _needsLayout = _needsLayoutDeep = false;
 }
 
@@ -298,7 +384,7 @@ protected void setNeedsLayoutDeep(boolean aVal)
 /**
  * Override Node version to really request layout from RootView.
  */
-public void relayout()  { setNeedsLayout(true); }
+public void relayout()  { clearPrefCache(); setNeedsLayout(true); }
 
 /**
  * Override to request layout.
@@ -32,6 +32,12 @@ public class RootView extends ParentView {
     // A map of dirty info
     Map <View,Rect>          _dirtyRects = new HashMap();
     
+    // The region requested to be painted (accumulated until next paintViews)
+    DirtyRegion              _paintRegion = new DirtyRegion();
+    
+    // The painted area of last paint, total painted area and number of paints
+    double                   _paintArea, _paintAreaTotal; int _paintCount;
+    
     // PaintLater runnable
     Runnable                 _plater, _platerShared = () -> paintLater();
     
@@ -286,21 +292,20 @@ public synchronized void paintLater()
     // Layout all views that need it
     layoutDeep();
 
-    // Calculate composite repaint rect from all dirty views/rects
-    Rect rect = null; if(_dirtyRects.size()==0)  { _plater = null; return; }
+    // Add repaint rects from all dirty views/rects to paint region
+    if(_dirtyRects.size()==0)  { _plater = null; return; }
     View views[] = _dirtyRects.keySet().toArray(new View[_dirtyRects.size()]);
     for(View n : views) { Rect r = _dirtyRects.get(n);
         Transform tfm = n!=this? n.getLocalToParent(this) : Transform.IDENTITY;
         Rect vr = n.getVisRect(); vr = tfm.createTransformedShape(vr).getBounds();
         r = tfm.createTransformedShape(r).getBounds();
         r = r.getIntersectRect(vr);
-        if(rect==null) rect = r;
-        else rect.union(r);
+        r.snap(); _paintRegion.add(r);
     }
     
-    // Round rect and request real repaint
-    rect.snap();
-    getHelper().requestPaint(rect);
+    // Request real repaint of region bounds
+    Rect rect = _paintRegion.getBounds();
+    if(!rect.isEmpty()) getHelper().requestPaint(rect);
     
     // Clear dirty rects, reset runnable and return
     _dirtyRects.clear(); _plater = null; _pc++;
@@ -308,19 +313,55 @@ public synchronized void paintLater()
 }
 
 /**
- * Paint views.
+ * Paint views. If given rect is the bounds of the requested paint region, each region rect is painted separately.
  */
 public void paintViews(Painter aPntr, Rect aRect)
 {
+    Rect rects[] = getPaintRects(aRect); double area = 0;
     aPntr.save(); if(_frames!=null) startTime();
-    aPntr.clip(aRect);
-    if(getFill()==null) aPntr.clearRect(aRect.x,aRect.y,aRect.width,aRect.height);
-    if(_debug && _pc%2==0) paintDebug(this, aPntr, aRect);
-    else paintAll(aPntr);
+    for(Rect rect : rects) {
+        aPntr.save(); aPntr.clip(rect);
+        if(getFill()==null) aPntr.clearRect(rect.x,rect.y,rect.width,rect.height);
+        if(_debug && _pc%2==0) paintDebug(this, aPntr, rect);
+        else paintAll(aPntr);
+        aPntr.restore(); area += rect.width*rect.height;
+    }
     aPntr.restore();
     if(_frames!=null) { stopTime(); if(_pc%20==0) printTime(); }
+    _paintArea = area; _paintAreaTotal += area; _paintCount++;
+}
+
+/**
+ * Returns the rects to paint for given paint rect (and clears paint region).
+ */
+protected synchronized Rect[] getPaintRects(Rect aRect)
+{
+    boolean useRgn = _paintRegion.getRectCount()>1 && _paintRegion.getBounds().equals(aRect);
+    Rect rects[] = useRgn? _paintRegion.getRects().toArray(new Rect[0]) : new Rect[] { aRect };
+    _paintRegion.clear();
+    return rects;
 }
 
+/**
+ * Returns the area painted by last paintViews() call.
+ */
+public double getPaintArea()  { return _paintArea; }
+
+/**
+ * Returns the total area painted by paintViews() calls.
+ */
+public double getPaintAreaTotal()  { return _paintAreaTotal; }
+
+/**
+ * Returns the number of paintViews() calls.
+ */
+public int getPaintCount()  { return _paintCount; }
+
+/**
+ * Resets the paint area and count.
+ */
+public void resetPaintCounts()  { _paintArea = _paintAreaTotal = 0; _paintCount = 0; }
+
 /**
  * Dispatch event.
  */
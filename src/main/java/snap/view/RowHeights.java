@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.view;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The heights of the rows of a ListView, TableView or TreeView that has variable row heights. Heights are kept in a
+ * prefix-sum tree, so the Y of a row and the row at a Y are found in log time, and a row height change costs log time.
+ *
+ * Rows past the end of the items have the default row height (lists fill the rest of their bounds with empty cells).
+ */
+public class RowHeights {
+
+    // The height of each row
+    double      _heights[];
+
+    // The prefix-sum (Fenwick) tree of row heights
+    double      _tree[];
+
+    // The height of rows past the end
+    double      _defHeight;
+
+    // The highest power of two that is less than or equal to the row count
+    int         _topBit;
+
+/**
+ * Creates a new RowHeights for given heights and default height.
+ */
+public RowHeights(double theHeights[], double aDefHeight)
+{
+    // Set heights and default height
+    int count = theHeights.length; _heights = theHeights; _defHeight = aDefHeight>0? aDefHeight : 1;
+
+    // Build tree in linear time
+    _tree = new double[count+1];
+    for(int i=1;i<=count;i++) { _tree[i] += _heights[i-1];
+        int j = i + (i & -i); if(j<=count) _tree[j] += _tree[i]; }
+    _topBit = count>0? Integer.highestOneBit(count) : 0;
+}
+
+/**
+ * Returns the number of rows.
+ */
+public int getRowCount()  { return _heights.length; }
+
+/**
+ * Returns the height of rows past the end.
+ */
+public double getDefaultHeight()  { return _defHeight; }
+
+/**
+ * Returns the height of given row.
+ */
+public double getHeight(int anIndex)  { return anIndex>=0 && anIndex<_heights.length? _heights[anIndex] : _defHeight; }
+
+/**
+ * Sets the height of given row.
+ */
+public void setHeight(int anIndex, double aValue)
+{
+    double delta = aValue - _heights[anIndex]; if(delta==0) return;
+    _heights[anIndex] = aValue;
+    for(int i=anIndex+1;i<_tree.length;i+=i&-i) _tree[i] += delta;
+}
+
+/**
+ * Replaces the rows in given range with rows of given heights (for rows added or removed). Tree entries for rows before
+ * range are kept, so only the entries for rows from start on are rebuilt.
+ */
+public void replaceRows(int aStart, int anEnd, double theHeights[])
+{
+    // Get new heights with range replaced
+    int count = _heights.length - (anEnd - aStart) + theHeights.length;
+    double heights[] = new double[count];
+    System.arraycopy(_heights, 0, heights, 0, aStart);
+    System.arraycopy(theHeights, 0, heights, aStart, theHeights.length);
+    System.arraycopy(_heights, anEnd, heights, aStart + theHeights.length, _heights.length - anEnd);
+    
+    // Get new tree: entries up to start only cover unchanged rows, entries after get heights plus the entries below them
+    double tree[] = new double[count+1];
+    System.arraycopy(_tree, 0, tree, 0, aStart+1);
+    for(int i=aStart+1;i<=count;i++) tree[i] += heights[i-1];
+    for(int i=1;i<=count;i++) { int j = i + (i & -i); if(j>aStart && j<=count) tree[j] += tree[i]; }
+    
+    // Set heights and tree
+    _heights = heights; _tree = tree;
+    _topBit = count>0? Integer.highestOneBit(count) : 0;
+}
+
+/**
+ * Returns the Y of given row (the sum of the heights of the rows before it).
+ */
+public double getY(int anIndex)
+{
+    int count = _heights.length; if(anIndex<=0) return anIndex*_defHeight;
+    int end = Math.min(anIndex, count); double y = 0;
+    for(int i=end;i>0;i-=i&-i) y += _tree[i];
+    return anIndex>count? y + (anIndex-count)*_defHeight : y;
+}
+
+/**
+ * Returns the total height of rows.
+ */
+public double getTotal()  { return getY(_heights.length); }
+
+/**
+ * Returns the row at given Y (rows past the end are counted with default height).
+ */
+public int getRowAt(double aY)
+{
+    if(aY<0) return (int)(aY/_defHeight);
+
+    // Find the number of rows whose total height is less than or equal to Y
+    int count = _heights.length, pos = 0; double rem = aY;
+    for(int bit=_topBit;bit>0;bit>>=1) { int next = pos + bit;
+        if(next<=count && _tree[next]<=rem) { pos = next; rem -= _tree[next]; } }
+
+    // If past end, add rows with default height
+    return pos<count? pos : count + (int)(rem/_defHeight);
+}
+
+/**
+ * Returns new RowHeights for given items and row height function (null if function is null).
+ */
+public static <T> RowHeights getRowHeights(List <T> theItems, ToDoubleFunction <T> aFunc, double aDefHeight)
+{
+    if(aFunc==null) return null;
+    double heights[] = new double[theItems.size()];
+    for(int i=0;i<heights.length;i++) heights[i] = Math.max(aFunc.applyAsDouble(theItems.get(i)), 0);
+    return new RowHeights(heights, aDefHeight);
+}
+
+/**
+ * Updates the heights of given items (all items if none given) with given function. Returns false if item count
+ * has changed (heights must be rebuilt).
+ */
+public <T> boolean updateItems(List <T> theItems, ToDoubleFunction <T> aFunc, T theUpdated[])
+{
+    if(theItems.size()!=_heights.length) return false;
+    if(theUpdated==null || theUpdated.length==0) {
+        for(int i=0, iMax=_heights.length;i<iMax;i++)
+            setHeight(i, Math.max(aFunc.applyAsDouble(theItems.get(i)), 0));
+    }
+    else for(T item : theUpdated) { int index = theItems.indexOf(item);
+        if(index>=0) setHeight(index, Math.max(aFunc.applyAsDouble(item), 0)); }
+    return true;
+}
+
+}
@@ -57,6 +57,11 @@ public void setResizable(boolean aValue)
  */
 public double getRowHeight()  { return getTable().getRowHeight(); }
 
+/**
+ * Override to get row heights from table.
+ */
+protected RowHeights getRowHeights()  { return getTable().getRowHeights(); }
+
 /**
  * Sets the selected index.
  */
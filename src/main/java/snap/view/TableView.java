@@ -4,6 +4,7 @@
 package snap.view;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 import snap.gfx.Color;
 import snap.util.*;
 
@@ -32,6 +33,12 @@ public class TableView <T> extends ParentView implements View.Selectable <T> {
     
     // Row height
     int                     _rowHeight = 24;
+    
+    // The function to return the row height for an item (null for fixed row height)
+    ToDoubleFunction <T>    _rowHeightFunc;
+    
+    // The row heights, if row height function is set (created on demand)
+    RowHeights              _rowHeights;
 
     // The Cell Configure method
     Consumer <ListCell<T>>  _cellConf;
@@ -59,6 +66,7 @@ public void setItems(List <T> theItems)
     if(ListUtils.equalsId(theItems, _items) || SnapUtils.equals(theItems,_items)) return;
     _items.clear();
     if(theItems!=null) _items.addAll(theItems);
+    _rowHeights = null;
     for(TableCol tcol : getCols()) tcol.setItems(theItems);
 }
 
@@ -72,6 +80,10 @@ public void setItems(T ... theItems)  { setItems(theItems!=null? Arrays.asList(t
  */
 public void updateItems(T ... theItems)
 {
+    if(_rowHeights!=null) {
+        if(!_rowHeights.updateItems(getItems(), _rowHeightFunc, theItems)) _rowHeights = null;
+        relayoutParent();
+    }
     for(TableCol tcol : getCols()) tcol.updateItems(theItems);
 }
 
@@ -177,6 +189,31 @@ public int getRowHeight()  { return _rowHeight; }
 public void setRowHeight(int aValue)
 {
     firePropChange("RowHeight", _rowHeight, _rowHeight = aValue);
+    _rowHeights = null;
+}
+
+/**
+ * Returns the function to return the row height for an item (null for fixed row height).
+ */
+public ToDoubleFunction <T> getRowHeightFunction()  { return _rowHeightFunc; }
+
+/**
+ * Sets the function to return the row height for an item (for variable row heights).
+ */
+public void setRowHeightFunction(ToDoubleFunction <T> aFunc)
+{
+    _rowHeightFunc = aFunc; _rowHeights = null;
+    for(TableCol tcol : getCols()) tcol.relayout();
+    relayoutParent();
+}
+
+/**
+ * Returns the row heights, if row height function is set.
+ */
+protected RowHeights getRowHeights()
+{
+    if(_rowHeights!=null || _rowHeightFunc==null) return _rowHeights;
+    return _rowHeights = RowHeights.getRowHeights(getItems(), _rowHeightFunc, getRowHeight());
 }
 
 /**
@@ -271,7 +308,11 @@ public void setSelectedCol(int anIndex)  { _selCol = anIndex; }
 /**
  * Returns the row index at given point.
  */
-public int getRowAt(double aX, double aY)  { return (int)(aY/getRowHeight()); }
+public int getRowAt(double aX, double aY)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getRowAt(aY) : (int)(aY/getRowHeight());
+}
 
 /**
  * Override to reset cells.
@@ -304,7 +345,11 @@ protected double getPrefWidthImpl(double aH)
 /**
  * Returns the preferred height.
  */
-protected double getPrefHeightImpl(double aW)  { return getRowHeight()*getItems().size(); }
+protected double getPrefHeightImpl(double aW)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getTotal() : getRowHeight()*getItems().size();
+}
 
 /**
  * Override to layout children with VBox layout.
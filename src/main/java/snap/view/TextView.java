@@ -47,6 +47,13 @@ public class TextView extends ParentView implements PropChangeListener {
     // Whether to hide carent
     boolean               _hideCaret;
     
+    // The timer for background layout of estimated lines (lazy layout) and the y below which to lay them out
+    ViewTimer             _layoutTimer;
+    double                _layoutY;
+    
+    // Whether background layout changed text size since parent was last relayed out
+    boolean               _layoutChanged;
+    
     // Whether to send action on return
     boolean              _sendActionOnReturn;
 
@@ -214,6 +221,16 @@ public boolean isRich()  { return !getTextBox().isSingleStyle(); }
  */
 public void setRich(boolean aValue)  { getTextBox().setSingleStyle(!aValue); }
 
+/**
+ * Returns whether text box only lays out lines when shown (lines below are laid out in background).
+ */
+public boolean isLazyLayout()  { return getTextBox().isLazyLayout(); }
+
+/**
+ * Sets whether text box only lays out lines when shown (for huge text).
+ */
+public void setLazyLayout(boolean aValue)  { getTextBox().setLazyLayout(aValue); }
+
 /**
  * Returns whether text area sends action on return.
  */
@@ -636,22 +653,23 @@ protected void paintFront(Painter aPntr)
         tbox.setX(dx); tbox.setY(dy);
     }
     
-    // Paint selection
+    // Lay out estimated lines in clip (if lazy layout) and lay out lines below in background
+    TextBox tbox = getTextBox();
+    if(tbox.getEstimatedLineCount()>0) {
+        if(tbox.layoutLinesForY(clip.getMinY(), clip.getMaxY())) getEnv().runLater(() -> relayoutParent());
+        _layoutY = clip.getMaxY(); setLayoutAnim(true);
+    }
+    
+    // Paint selection (after clip lines are laid out, so it isn't drawn with estimated line geometry)
     paintSel(aPntr);
     
     // Add text
     int s = -1, e = -1;
-    for(int i=0, iMax=getLineCount(); i<iMax; i++) { TextBoxLine line = getLine(i);
+    for(int i=tbox.getLineIndexForY(clip.getMinY()), iMax=getLineCount(); i<iMax; i++) { TextBoxLine line = getLine(i);
         if(line.getMaxY()<clip.getMinY()) continue;
         if(line.getY()>clip.getMaxY()) break;
         if(s==-1) s = i; e = i;
-        for(int j=0,jMax=line.getTokenCount(); j<jMax;j++) { TextBoxToken token = line.getToken(j);
-            double tx = token.getX(), tb = token.getBaseline();
-            aPntr.setFont(token.getFont()); aPntr.setPaint(token.getColor());
-            aPntr.drawString(token.getString(), tx, tb, token.getStyle().getCharSpacing());
-            if(token.isUnderlined()) {
-                aPntr.setStroke(Stroke.Stroke1); aPntr.drawLine(tx, tb+3, tx + token.getWidth(), tb+3); }
-        }
+        tbox.paintLine(aPntr, line);
     }
 }
 
@@ -896,6 +914,42 @@ private void setCaretAnim(boolean aValue)
     else { _caretTimer.stop(); _caretTimer = null; _hideCaret = false; repaintSel(); }
 }
 
+/**
+ * Sets whether timer is laying out estimated lines in background (a chunk of lines each tick, stops when done).
+ */
+private void setLayoutAnim(boolean aValue)
+{
+    if(aValue==(_layoutTimer!=null)) return;
+    if(aValue) {
+        _layoutTimer = new ViewTimer(25, t -> layoutMore(t));
+        _layoutTimer.start();
+    }
+    else {
+        _layoutTimer.stop(); _layoutTimer = null;
+        if(_layoutChanged) { _layoutChanged = false; relayoutParent(); }
+    }
+}
+
+/**
+ * Lays out a chunk of estimated lines in background (stops timer when done). If text size changed, relayouts parent
+ * every tenth tick (about 4 times a second) and when timer stops.
+ */
+private void layoutMore(ViewTimer aTimer)
+{
+    // If not showing, just stop
+    if(!isShowing()) { setLayoutAnim(false); return; }
+    
+    // Lay out more lines (stop if none)
+    TextBox tbox = getTextBox();
+    double pw = isWrapText()? 0 : tbox.getPrefWidth(), ph = tbox.getPrefHeight();
+    if(!tbox.layoutMore(_layoutY, 500)) { setLayoutAnim(false); return; }
+    
+    // If text size changed, mark changed and relayout parent every tenth tick
+    if(tbox.getPrefHeight()!=ph || !isWrapText() && tbox.getPrefWidth()!=pw)
+        _layoutChanged = true;
+    if(_layoutChanged && aTimer.getCount()%10==0) { _layoutChanged = false; relayoutParent(); }
+}
+
 /**
  * Copies the current selection onto the clip board, then deletes the current selection.
  */
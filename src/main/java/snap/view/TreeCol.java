@@ -33,6 +33,20 @@ public TreeCol()
  */
 public TreeView getTree()  { return (TreeView)getParent(); }
 
+/**
+ * Override to return tree items.
+ */
+public List <T> getItems()  { TreeView tree = getTree(); return tree!=null? tree.getItems() : super.getItems(); }
+
+/**
+ * Override to just reset for change to tree items (tree items are shared and tree restores selection).
+ */
+public void setItems(List <T> theItems)
+{
+    _sampleWidth = _sampleHeight = -1; _rowHeights = null;
+    relayout(); relayoutParent();
+}
+
 /**
  * Returns the header value.
  */
@@ -64,6 +78,11 @@ public void setResizable(boolean aValue)
  */
 public double getRowHeight()  { return getTree().getRowHeight(); }
 
+/**
+ * Override to get row heights from tree.
+ */
+protected RowHeights getRowHeights()  { return getTree().getRowHeights(); }
+
 /**
  * Sets the selected index.
  */
@@ -3,9 +3,7 @@
  */
 package snap.view;
 import java.lang.reflect.Array;
-import java.util.List;
 import snap.gfx.Image;
-import snap.util.*;
 
 /**
  * An interface for providing tree item information.
@@ -30,12 +28,7 @@ public void setTree(TreeView aTree)  { _tree = aTree; }
  */
 public T getParent(T anItem)
 {
-    List <T> items = _tree.getItems();
-    int index = ListUtils.indexOfId(items, anItem); if(index<0) return null;
-    for(int i=index-1;i>=0;i--) { T item = items.get(i);
-        if(isParent(item) && getTree().isExpanded(item) && ArrayUtils.containsId(_tree.getChildren(item), anItem))
-            return item; }
-    return null;
+    return _tree!=null? (T)_tree._items.getParent(anItem) : null;
 }
 
 /**
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.view;
+import java.util.*;
+import snap.util.ListUtils;
+
+/**
+ * The visible rows of a TreeView, as a list of items backed by a tree of nodes.
+ *
+ * Each node keeps the number of visible rows in its subtree and a prefix-sum (Fenwick) tree of its children's row
+ * counts, so row to item and item to row are found in O(depth * log(children)) and expand/collapse just change the
+ * counts on the path to the root. Children are only resolved when their parent is expanded (when they become visible)
+ * and are dropped when it collapses.
+ */
+public class TreeRows <T> extends AbstractList <T> {
+
+    // The tree
+    TreeView <T>         _tree;
+
+    // The root node (not a row itself, its children are the top level items)
+    Node <T>             _root = new Node(null, null, 0);
+
+    // The node for each visible item (by identity, so items equal to a visible item elsewhere still get their own row)
+    Map <T,Node<T>>      _nodes = new IdentityHashMap();
+
+/**
+ * Creates a new TreeRows for given tree.
+ */
+public TreeRows(TreeView <T> aTree)  { _tree = aTree; _root._expanded = true; setChildren(_root, new Node[0]); }
+
+/**
+ * Creates a new TreeRows for given tree and top level items (items that are expanded show their children).
+ */
+public TreeRows(TreeView <T> aTree, List <T> theItems)
+{
+    this(aTree);
+
+    // Create nodes for items (skip items already added as children of an earlier expanded item)
+    List <Node<T>> nodes = new ArrayList(theItems.size());
+    for(T item : theItems) {
+        if(_nodes.containsKey(item)) continue;
+        nodes.add(createNode(item, _root, nodes.size()));
+    }
+    setChildren(_root, nodes.toArray(new Node[0]));
+}
+
+/**
+ * Returns the number of rows.
+ */
+public int size()  { return _root._size; }
+
+/**
+ * Returns the item at given row.
+ */
+public T get(int anIndex)
+{
+    if(anIndex<0 || anIndex>=_root._size) throw new IndexOutOfBoundsException("Index: " + anIndex + ", Size: " + size());
+
+    // Descend from root: at each node, find the child whose subtree contains row
+    Node <T> node = _root; int row = anIndex;
+    while(true) {
+        if(node!=_root) { if(row==0) return node._item; row--; }
+        int cindex = node.getChildAt(row);
+        row -= node.getPrefix(cindex);
+        node = node._children[cindex];
+    }
+}
+
+/**
+ * Returns the row of given item (or -1 if not visible).
+ */
+public int indexOf(Object anItem)
+{
+    Node <T> node = _nodes.get(anItem);
+    return node!=null? getRow(node) : -1;
+}
+
+/**
+ * Returns the row of given node.
+ */
+protected int getRow(Node <T> aNode)
+{
+    int row = 0;
+    for(Node <T> n=aNode; n._parent!=null; n=n._parent) { Node <T> par = n._parent;
+        row += par.getPrefix(n._index) + (par!=_root? 1 : 0); }
+    return row;
+}
+
+/**
+ * Returns the parent of given visible item (null if top level or not visible).
+ */
+public T getParent(T anItem)
+{
+    Node <T> node = _nodes.get(anItem);
+    return node!=null && node._parent!=_root? node._parent._item : null;
+}
+
+/**
+ * Returns whether given visible item is expanded.
+ */
+public boolean isExpanded(T anItem)  { Node <T> node = _nodes.get(anItem); return node!=null && node._expanded; }
+
+/**
+ * Expands given visible item (resolves children). Returns whether item was found and collapsed.
+ */
+public boolean expand(T anItem)
+{
+    Node <T> node = _nodes.get(anItem); if(node==null || node._expanded) return false;
+    T citems[] = _tree.getChildren(anItem);
+    List <Node<T>> nodes = new ArrayList(citems.length);
+    for(T citem : citems) { if(_nodes.containsKey(citem)) continue;
+        nodes.add(createNode(citem, node, nodes.size())); }
+    int old = node._size; node._expanded = true;
+    setChildren(node, nodes.toArray(new Node[0]));
+    sizeChanged(node, node._size - old);
+    return true;
+}
+
+/**
+ * Collapses given visible item (drops children). Returns whether item was found and expanded.
+ */
+public boolean collapse(T anItem)
+{
+    Node <T> node = _nodes.get(anItem); if(node==null || !node._expanded) return false;
+    for(Node <T> child : node._children) removeNodes(child);
+    int old = node._size; node._expanded = false;
+    setChildren(node, new Node[0]);
+    sizeChanged(node, node._size - old);
+    return true;
+}
+
+/**
+ * Returns whether given rows have the same items in the same order.
+ */
+public boolean equalsRows(TreeRows <T> theRows)
+{
+    if(theRows.size()!=size()) return false;
+    List <T> items = new ArrayList(size()), items2 = new ArrayList(size());
+    addItems(_root, items); theRows.addItems(theRows._root, items2);
+    return ListUtils.equalsId(items, items2) || items.equals(items2);
+}
+
+/**
+ * Adds visible items of given node to list, in row order.
+ */
+protected void addItems(Node <T> aNode, List <T> theItems)
+{
+    if(aNode!=_root) theItems.add(aNode._item);
+    for(Node <T> child : aNode._children) addItems(child, theItems);
+}
+
+/**
+ * Override to return items in row order without per-row lookup.
+ */
+public Object[] toArray()  { List <T> items = new ArrayList(size()); addItems(_root, items); return items.toArray(); }
+
+/**
+ * Creates node for given item (and nodes for children if item is expanded).
+ */
+protected Node <T> createNode(T anItem, Node <T> aParent, int anIndex)
+{
+    // Create node and register
+    Node <T> node = new Node(anItem, aParent, anIndex);
+    _nodes.putIfAbsent(anItem, node);
+
+    // If item is expanded, create nodes for children (item may have changed Parent state)
+    List <Node<T>> nodes = Collections.EMPTY_LIST;
+    if(_tree.isExpanded(anItem)) {
+        if(!_tree.isParent(anItem)) _tree.setExpanded(anItem, false);
+        else {
+            node._expanded = true; T citems[] = _tree.getChildren(anItem); nodes = new ArrayList(citems.length);
+            for(T citem : citems) { if(_nodes.containsKey(citem)) continue;
+                nodes.add(createNode(citem, node, nodes.size())); }
+        }
+    }
+
+    // Set children and return
+    setChildren(node, nodes.toArray(new Node[0]));
+    return node;
+}
+
+/**
+ * Sets the children of a node and updates its size and prefix sums.
+ */
+private void setChildren(Node <T> aNode, Node <T> theChildren[])
+{
+    int count = theChildren.length; int sums[] = new int[count+1], size = 0;
+    for(int i=1;i<=count;i++) { int csize = theChildren[i-1]._size; size += csize; sums[i] += csize;
+        int j = i + (i & -i); if(j<=count) sums[j] += sums[i]; }
+    aNode._children = theChildren; aNode._sums = sums;
+    aNode._size = (aNode!=_root? 1 : 0) + size;
+}
+
+/**
+ * Removes given node and its descendants from node map (and their tree props).
+ */
+private void removeNodes(Node <T> aNode)
+{
+    if(_nodes.get(aNode._item)==aNode) { _nodes.remove(aNode._item); _tree._props.remove(aNode._item); }
+    for(Node <T> child : aNode._children) removeNodes(child);
+}
+
+/**
+ * Adds given delta to the size of given node's ancestors.
+ */
+private void sizeChanged(Node <T> aNode, int aDelta)
+{
+    if(aDelta==0) return;
+    for(Node <T> n=aNode; n._parent!=null; n=n._parent) { Node <T> par = n._parent;
+        for(int i=n._index+1;i<par._sums.length;i+=i&-i) par._sums[i] += aDelta;
+        par._size += aDelta; }
+    modCount++;
+}
+
+/**
+ * A node for a visible item.
+ */
+static class Node <T> {
+
+    // The item, parent node and index in parent
+    T           _item; Node <T> _parent; int _index;
+
+    // Whether node is expanded
+    boolean     _expanded;
+
+    // The child nodes and prefix-sum (Fenwick) tree of child sizes
+    Node <T>    _children[]; int _sums[];
+
+    // The number of visible rows in this subtree (including this node)
+    int         _size;
+
+    /** Creates a new node. */
+    Node(T anItem, Node <T> aParent, int anIndex)  { _item = anItem; _parent = aParent; _index = anIndex; }
+
+    /** Returns the sum of the sizes of the children before given index. */
+    int getPrefix(int anIndex)
+    {
+        int sum = 0; for(int i=anIndex;i>0;i-=i&-i) sum += _sums[i];
+        return sum;
+    }
+
+    /** Returns the index of the child whose rows contain given row (relative to first child). */
+    int getChildAt(int aRow)
+    {
+        int count = _children.length, pos = 0, rem = aRow;
+        for(int bit=count>0? Integer.highestOneBit(count) : 0;bit>0;bit>>=1) { int next = pos + bit;
+            if(next<=count && _sums[next]<=rem) { pos = next; rem -= _sums[next]; } }
+        return pos;
+    }
+}
+
+}
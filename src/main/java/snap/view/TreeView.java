@@ -4,6 +4,7 @@
 package snap.view;
 import java.util.*;
 import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
 import snap.gfx.*;
 import snap.util.*;
 
@@ -18,8 +19,8 @@ public class TreeView <T> extends ParentView implements View.Selectable <T> {
     // Whether to show root handle
     boolean                 _rootHandle;
     
-    // The items
-    List <T>                _items = new ArrayList();
+    // The items (visible rows)
+    TreeRows <T>            _items = new TreeRows(this);
     
     // The selected index
     int                     _selIndex = -1;
@@ -32,6 +33,12 @@ public class TreeView <T> extends ParentView implements View.Selectable <T> {
     
     // Row height
     int                     _rowHeight = 20;
+    
+    // The function to return the row height for an item (null for fixed row height)
+    ToDoubleFunction <T>    _rowHeightFunc;
+    
+    // The row heights, if row height function is set (created on demand)
+    RowHeights              _rowHeights;
 
     // The Cell Configure method
     Consumer <ListCell<T>>  _cellConf;
@@ -96,6 +103,31 @@ public int getRowHeight()  { return _rowHeight; }
 public void setRowHeight(int aValue)
 {
     firePropChange("RowHeight", _rowHeight, _rowHeight = aValue);
+    _rowHeights = null;
+}
+
+/**
+ * Returns the function to return the row height for an item (null for fixed row height).
+ */
+public ToDoubleFunction <T> getRowHeightFunction()  { return _rowHeightFunc; }
+
+/**
+ * Sets the function to return the row height for an item (for variable row heights).
+ */
+public void setRowHeightFunction(ToDoubleFunction <T> aFunc)
+{
+    _rowHeightFunc = aFunc; _rowHeights = null;
+    for(TreeCol tcol : getCols()) tcol.relayout();
+    relayoutParent();
+}
+
+/**
+ * Returns the row heights, if row height function is set.
+ */
+protected RowHeights getRowHeights()
+{
+    if(_rowHeights!=null || _rowHeightFunc==null) return _rowHeights;
+    return _rowHeights = RowHeights.getRowHeights(getItems(), _rowHeightFunc, getRowHeight());
 }
 
 /**
@@ -153,36 +185,27 @@ public List <T> getItems()  { return _items; }
  */
 public void setItems(List <T> theItems)
 {
-    // Expand items that are already expanded
-    List <T> items = theItems;
-    for(int i=0; i<items.size(); i++) { T item = items.get(i);
-        if(isExpanded(item)) {
-            if(!isParent(item)) { setExpanded(item,false); continue; } // Item may have changed Parent state
-            if(items==theItems) items = new ArrayList(items);
-            T citems[] = getChildren(item);
-            for(int j=0,jMax=citems.length;j<jMax;j++) { T itm = citems[j];
-                if(!ListUtils.containsId(items,itm)) items.add(i+j+1, itm); }
-        }
-    }
-    setItemsImpl(items);
+    // Create rows for items (items that are already expanded show their children), just return if unchanged
+    TreeRows <T> rows = new TreeRows(this, theItems!=null? theItems : Collections.EMPTY_LIST);
+    if(rows.equalsRows(_items)) return;
+    
+    // Set rows
+    T sitem = getSelectedItem();
+    _items = rows; _rowHeights = null;
+    itemsChanged(sitem);
+    
+    // Clear props for removed items (props are keyed by equals, nodes by identity)
+    Set <T> items = new HashSet(_items._nodes.keySet());
+    for(Iterator <T> i=_props.keySet().iterator(); i.hasNext(); ) if(!items.contains(i.next())) i.remove();
 }
     
 /**
- * Sets the items.
+ * Called when rows change to reset columns and restore selected item.
  */
-protected void setItemsImpl(List <T> theItems)
+protected void itemsChanged(T aSelItem)
 {
-    // If already set, just return
-    if(equalsItems(theItems)) return;
-    T sitem = getSelectedItem();
-    _items.clear();
-    _items.addAll(theItems);
-    for(TreeCol tcol : getCols()) tcol.setItems(theItems);
-    setSelectedItem(sitem);
-    
-    // Clear props for removed items
-    Set <T> oldItems = new HashSet(_props.keySet());
-    for(T item : oldItems) if(!_items.contains(item)) _props.remove(item);
+    for(TreeCol tcol : getCols()) tcol.setItems(_items);
+    setSelectedItem(aSelItem);
 }
 
 /**
@@ -195,6 +218,10 @@ public void setItems(T ... theItems)  { setItems(Arrays.asList(theItems)); }
  */
 public void updateItems(T ... theItems)
 {
+    if(_rowHeights!=null) {
+        if(!_rowHeights.updateItems(getItems(), _rowHeightFunc, theItems)) _rowHeights = null;
+        relayoutParent();
+    }
     for(TreeCol tcol : getCols()) tcol.updateItems(theItems);
 }
 
@@ -252,7 +279,7 @@ public void setSelectionInterval(int aStart, int anEnd)
 /**
  * Returns the selected item.
  */
-public T getSelectedItem()  { return _selIndex>=0? _items.get(_selIndex) : null; }
+public T getSelectedItem()  { return _selIndex>=0 && _selIndex<_items.size()? _items.get(_selIndex) : null; }
 
 /**
  * Sets the selected index.
@@ -281,12 +308,25 @@ public void setSelectedCol(int anIndex)  { _selCol = anIndex; }
 /**
  * Returns the row index at given point.
  */
-public int getRowAt(double aX, double aY)  { return (int)(aY/getRowHeight()); }
+public int getRowAt(double aX, double aY)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getRowAt(aY) : (int)(aY/getRowHeight());
+}
 
 /**
  * Expands all tree nodes.
  */
-public void expandAll()  { for(int i=0;i<getItems().size();i++) expandItem(getItems().get(i)); }
+public void expandAll()
+{
+    // Expand each row (rows of expanded items are added after them, so they get expanded too)
+    T sitem = getSelectedItem(); boolean changed = false;
+    for(int i=0;i<_items.size();i++) { T item = _items.get(i);
+        if(isParent(item) && !isExpanded(item) && _items.expand(item)) { setExpanded(item, true); changed = true; } }
+    
+    // If changed, reset row heights and columns and update all cells
+    if(changed) { _rowHeights = null; itemsChanged(sitem); updateItems(); }
+}
 
 /**
  * Expands the given item.
@@ -294,11 +334,11 @@ public void expandAll()  { for(int i=0;i<getItems().size();i++) expandItem(getIt
 public void expandItem(T anItem)
 {
     if(!isParent(anItem) || isExpanded(anItem)) return;
-    List items = new ArrayList(getItems());
-    int index = items.indexOf(anItem); if(index<0) return;
-    for(T item : getChildren(anItem)) items.add(++index, item);
-    setItemsImpl(items);
+    T sitem = getSelectedItem(); int size = _items.size();
+    if(!_items.expand(anItem)) return;
     setExpanded(anItem, true);
+    rowsChanged(anItem, size);
+    itemsChanged(sitem);
     updateItems(anItem);
 }
 
@@ -308,33 +348,37 @@ public void expandItem(T anItem)
 public void collapseItem(T anItem)
 {
     if(!isParent(anItem) || !isExpanded(anItem)) return;
-    List items = new ArrayList(getItems());
-    int index = items.indexOf(anItem); if(index<0) return;
-    removeCollapsedItems(getChildren(anItem), items); //for(T i : getChildren(anItem)) items.remove(i);
+    T sitem = getSelectedItem(); int size = _items.size();
+    if(!_items.collapse(anItem)) return;
     setExpanded(anItem, false);
-    setItemsImpl(items);
+    rowsChanged(anItem, size);
+    itemsChanged(sitem);
     updateItems(anItem);
 }
 
 /**
- * Expands the given item.
+ * Updates row heights for rows added or removed after given item's row by expand or collapse (instead of rebuilding).
  */
-public void toggleItem(T anItem)
+protected void rowsChanged(T anItem, int anOldSize)
 {
-    if(isExpanded(anItem)) collapseItem(anItem);
-    else expandItem(anItem);
+    // If no row heights, just return (if they don't match old rows, clear them to be rebuilt)
+    if(_rowHeights==null) return;
+    int row = _items.indexOf(anItem), delta = _items.size() - anOldSize;
+    if(row<0 || _rowHeights.getRowCount()!=anOldSize) { _rowHeights = null; return; }
+    
+    // Replace rows after item with heights of added rows (or none, if rows were removed)
+    double heights[] = new double[Math.max(delta, 0)];
+    for(int i=0;i<heights.length;i++) heights[i] = Math.max(_rowHeightFunc.applyAsDouble(_items.get(row+1+i)), 0);
+    _rowHeights.replaceRows(row+1, row+1+Math.max(-delta, 0), heights);
 }
 
 /**
- * Removes collapsed items from a list recursively.
+ * Expands the given item.
  */
-protected void removeCollapsedItems(T theItems[], List theList)
+public void toggleItem(T anItem)
 {
-    for(T item : theItems) {
-        theList.remove(item);
-        if(isParent(item) && isExpanded(item))
-            removeCollapsedItems(getChildren(item), theList);
-    }
+    if(isExpanded(anItem)) collapseItem(anItem);
+    else expandItem(anItem);
 }
 
 /**
@@ -460,7 +504,11 @@ protected double getPrefWidthImpl(double aH)
 /**
  * Returns the preferred height.
  */
-protected double getPrefHeightImpl(double aW)  { return getRowHeight()*getItems().size(); }
+protected double getPrefHeightImpl(double aW)
+{
+    RowHeights rheights = getRowHeights();
+    return rheights!=null? rheights.getTotal() : getRowHeight()*getItems().size();
+}
 
 /**
  * Override to layout children with VBox layout.
@@ -56,6 +56,12 @@ public class View implements XMLArchiver.Archivable {
     // The view preferred width and height
     double          _prefWidth = -1, _prefHeight = -1;
     
+    // The cached computed preferred width and height (only used during layout)
+    PrefCache       _prefWidthCache, _prefHeightCache;
+    
+    // The current pref cache generation, the depth of active layout calls and the pref cache hit/miss counts
+    static int      _prefCacheGen, _prefCacheDepth; static long _prefCacheHits, _prefCacheMisses;
+    
     // Whether view is disabled
     boolean         _disabled;
     
@@ -222,6 +228,7 @@ public void setName(String aName)
 {
     if(SnapUtils.equals(aName, _name)) return;
     firePropChange(Name_Prop, _name, _name=StringUtils.min(aName));
+    clearNameIndexes();
 }
 
 /**
@@ -237,6 +244,7 @@ public void setX(double aValue)
     if(aValue==_x) return;
     repaintInParent(null);
     firePropChange(X_Prop, _x, _x=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -253,6 +261,7 @@ public void setY(double aValue)
     if(aValue==_y) return;
     repaintInParent(null);
     firePropChange(Y_Prop, _y, _y=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -268,6 +277,7 @@ public void setWidth(double aValue)
 {
     double old = _width; if(aValue==old) return;
     firePropChange(Width_Prop, old, _width=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     relayout();
     repaintInParent(new Rect(0,0,Math.max(old,aValue),getHeight()));
 }
@@ -284,6 +294,7 @@ public void setHeight(double aValue)
 {
     double old = _height; if(aValue==old) return;
     firePropChange(Height_Prop, old, _height=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     relayout();
     repaintInParent(new Rect(0,0,getWidth(),Math.max(old,aValue)));
 }
@@ -371,6 +382,7 @@ public void setTransX(double aValue)
     if(aValue==_tx) return;
     repaintInParent(null);
     firePropChange(TransX_Prop, _tx, _tx=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -387,6 +399,7 @@ public void setTransY(double aValue)
     if(aValue==_ty) return;
     repaintInParent(null);
     firePropChange(TransY_Prop, _ty, _ty=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -403,6 +416,7 @@ public void setRotate(double theDegrees)
     if(theDegrees==_rot) return;
     repaintInParent(null);
     firePropChange(Rotate_Prop, _rot, _rot=theDegrees);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -419,6 +433,7 @@ public void setScaleX(double aValue)
     if(aValue==_sx) return;
     repaintInParent(null);
     firePropChange(ScaleX_Prop, _sx, _sx=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -435,6 +450,7 @@ public void setScaleY(double aValue)
     if(aValue==_sy) return;
     repaintInParent(null);
     firePropChange(ScaleY_Prop, _sy, _sy=aValue);
+    if(_parent!=null) _parent.childBoundsChanged(this);
     repaintInParent(null);
 }
 
@@ -1252,7 +1268,20 @@ public double getPrefWidth()  { return getPrefWidth(-1); }
 /**
  * Returns the view preferred width.
  */
-public double getPrefWidth(double aH)  { return _prefWidth>=0? _prefWidth : getPrefWidthImpl(aH); }
+public double getPrefWidth(double aH)
+{
+    // If set, just return
+    if(_prefWidth>=0) return _prefWidth;
+    
+    // If not in layout, just compute
+    if(_prefCacheDepth==0) return getPrefWidthImpl(aH);
+    
+    // Return cached value or compute and cache
+    if(_prefWidthCache==null) _prefWidthCache = new PrefCache();
+    double pw = _prefWidthCache.get(aH); if(pw>=0) { _prefCacheHits++; return pw; }
+    _prefCacheMisses++;
+    return _prefWidthCache.put(aH, getPrefWidthImpl(aH));
+}
 
 /**
  * Sets the view preferred width.
@@ -1277,7 +1306,20 @@ public double getPrefHeight()  { return getPrefHeight(-1); }
 /**
  * Returns the view preferred height.
  */
-public double getPrefHeight(double aW)  { return _prefHeight>=0? _prefHeight : getPrefHeightImpl(aW); }
+public double getPrefHeight(double aW)
+{
+    // If set, just return
+    if(_prefHeight>=0) return _prefHeight;
+    
+    // If not in layout, just compute
+    if(_prefCacheDepth==0) return getPrefHeightImpl(aW);
+    
+    // Return cached value or compute and cache
+    if(_prefHeightCache==null) _prefHeightCache = new PrefCache();
+    double ph = _prefHeightCache.get(aW); if(ph>=0) { _prefCacheHits++; return ph; }
+    _prefCacheMisses++;
+    return _prefHeightCache.put(aW, getPrefHeightImpl(aW));
+}
 
 /**
  * Sets the view preferred height.
@@ -1294,6 +1336,40 @@ public void setPrefHeight(double aHeight)
  */
 protected double getPrefWidthImpl(double aH)  { return 0; }
 
+/**
+ * Clears the cached preferred width/height.
+ */
+protected void clearPrefCache()
+{
+    if(_prefWidthCache!=null) _prefWidthCache._gen = -1;
+    if(_prefHeightCache!=null) _prefHeightCache._gen = -1;
+}
+
+/**
+ * Called when layout starts. Preferred sizes are cached until outermost layout ends (and cleared on next layout).
+ */
+protected static void startPrefCache()  { if(_prefCacheDepth++==0) _prefCacheGen++; }
+
+/**
+ * Called when layout ends.
+ */
+protected static void stopPrefCache()  { _prefCacheDepth--; }
+
+/**
+ * Returns the number of times a preferred size was found in cache.
+ */
+public static long getPrefCacheHitCount()  { return _prefCacheHits; }
+
+/**
+ * Returns the number of times a preferred size was computed during layout.
+ */
+public static long getPrefCacheMissCount()  { return _prefCacheMisses; }
+
+/**
+ * Resets the preferred size cache hit/miss counts.
+ */
+public static void resetPrefCacheCounts()  { _prefCacheHits = _prefCacheMisses = 0; }
+
 /**
  * Calculates the preferred height.
  */
@@ -1539,13 +1615,14 @@ public void setRealClassName(String aName)
 /**
  * Called to relayout.
  */
-public void relayout()  { }
+public void relayout()  { clearPrefCache(); }
 
 /**
  * Called to notify parents to relayout because preferred sizes have potentially changed.
  */
 public void relayoutParent()
 {
+    clearPrefCache();
     ParentView par = getParent(); if(par==null) return;
     par.relayout(); par.relayoutParent();
 }
@@ -1642,10 +1719,19 @@ public ViewOwner getOwner()  { return _owner; }
 public void setOwner(ViewOwner anOwner)
 {
     if(_owner!=null) return;
-    _owner = anOwner;
+    _owner = anOwner; clearNameIndexes();
     if(_evtAdptr!=null && _evtAdptr.isEnabled(Action)) anOwner.enableEvents(this, Action);
 }
 
+/**
+ * Clears the name index of this view and its parents (called when names, children or owners change).
+ */
+protected void clearNameIndexes()
+{
+    for(View view=this; view!=null; view=view.getParent())
+        if(view instanceof ParentView) ((ParentView)view)._nameIndex = null;
+}
+
 /**
  * Returns the owner of given class.
  */
@@ -2153,4 +2239,27 @@ public interface Selectable <T> {
     default void setSelectedItem(T anItem)  { int i = getItems().indexOf(anItem); setSelectedIndex(i); }
 }
 
+/**
+ * A cached preferred width or height, for no constraint and for last constraint.
+ */
+static class PrefCache {
+    
+    // The generation, the value for no constraint, and the last constraint and its value
+    int _gen = -1; double _val, _arg, _argVal;
+    
+    /** Returns the cached value for given constraint (or -1 if not cached). */
+    double get(double anArg)
+    {
+        if(_gen!=_prefCacheGen) { _gen = _prefCacheGen; _val = _argVal = -1; }
+        return anArg<0? _val : anArg==_arg? _argVal : -1;
+    }
+    
+    /** Sets the cached value for given constraint. */
+    double put(double anArg, double aValue)
+    {
+        if(anArg<0) _val = aValue; else { _arg = anArg; _argVal = aValue; }
+        return aValue;
+    }
+}
+
 }
\ No newline at end of file
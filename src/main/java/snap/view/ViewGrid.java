@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.view;
+import java.util.*;
+import snap.gfx.*;
+
+/**
+ * A uniform grid of the children of a ParentView by their bounds in parent coords, so painting, hit-testing and
+ * range queries only need to look at children near a given rect.
+ *
+ * The cell size is chosen from the average child size when the grid is built. Children that span too many cells are
+ * kept in a separate list that every query checks. Returned children are in parent order and are a superset of those
+ * that intersect the rect (bounds are axis-aligned bounds of the transformed child), so callers still test each one.
+ */
+public class ViewGrid {
+
+    // The parent view
+    ParentView             _parent;
+
+    // The cell size
+    double                 _cellSize;
+
+    // The children in each cell, keyed by packed cell column and row
+    Map <Long,List<Entry>> _cells = new HashMap();
+
+    // The children that span too many cells
+    List <Entry>           _big = new ArrayList();
+
+    // The entry for each child
+    Map <View,Entry>       _entries = new IdentityHashMap();
+
+    // The current query mark (to avoid returning a child twice)
+    int                    _mark;
+
+    // The max number of cells a child can be added to before it goes in big list
+    static final int       MAX_CELLS = 64;
+
+/**
+ * Creates a new ViewGrid for given parent.
+ */
+public ViewGrid(ParentView aParent)
+{
+    _parent = aParent;
+    int ccount = aParent.getChildCount();
+
+    // Get cell size from average child size (twice that, so most children are in one to four cells)
+    double size = 0; int count = 0;
+    for(int i=0;i<ccount;i++) { Rect bnds = getBounds(aParent.getChild(i));
+        if(bnds.width>0 || bnds.height>0) { size += Math.max(bnds.width, bnds.height); count++; } }
+    _cellSize = count>0? Math.max(size/count*2, 1) : 64;
+
+    // Add children
+    for(int i=0;i<ccount;i++) add(aParent.getChild(i), i);
+}
+
+/**
+ * Returns the cell size.
+ */
+public double getCellSize()  { return _cellSize; }
+
+/**
+ * Returns the number of children in grid.
+ */
+public int getViewCount()  { return _entries.size(); }
+
+/**
+ * Adds a child at given index in parent.
+ */
+public void add(View aView, int anIndex)
+{
+    Entry entry = new Entry(aView, anIndex); _entries.put(aView, entry);
+    addEntry(entry);
+}
+
+/**
+ * Updates a child when its bounds or transform changes.
+ */
+public void update(View aView)
+{
+    Entry entry = _entries.get(aView); if(entry==null) return;
+    removeEntry(entry);
+    addEntry(entry);
+}
+
+/**
+ * Returns the children whose bounds in parent coords might intersect given rect, in parent order.
+ */
+public List <View> getViews(Rect aRect)
+{
+    // Get cell range (if more cells than children, just check every child)
+    int x0 = cell(aRect.x), y0 = cell(aRect.y), x1 = cell(aRect.getMaxX()), y1 = cell(aRect.getMaxY());
+    List <Entry> entries = new ArrayList(); int mark = ++_mark;
+    if((double)(x1-x0+1)*(y1-y0+1) > _entries.size()) {
+        for(Entry entry : _entries.values())
+            if(entry.intersects(aRect)) entries.add(entry);
+    }
+
+    // Otherwise, add entries in cells (and big entries) that intersect rect
+    else {
+        for(int y=y0;y<=y1;y++) for(int x=x0;x<=x1;x++) { List <Entry> cell = _cells.get(key(x,y)); if(cell==null) continue;
+            for(Entry entry : cell)
+                if(entry._mark!=mark && entry.intersects(aRect)) { entry._mark = mark; entries.add(entry); } }
+        for(Entry entry : _big)
+            if(entry.intersects(aRect)) entries.add(entry);
+    }
+
+    // Sort by index and return views
+    Collections.sort(entries, (e1,e2) -> e1._index - e2._index);
+    List <View> views = new ArrayList(entries.size());
+    for(Entry entry : entries) views.add(entry._view);
+    return views;
+}
+
+/**
+ * Adds an entry to cells for its current bounds.
+ */
+private void addEntry(Entry anEntry)
+{
+    // Get bounds and cell range
+    Rect bnds = anEntry._bounds = getBounds(anEntry._view);
+    int x0 = anEntry._x0 = cell(bnds.x), y0 = anEntry._y0 = cell(bnds.y);
+    int x1 = anEntry._x1 = cell(bnds.getMaxX()), y1 = anEntry._y1 = cell(bnds.getMaxY());
+
+    // If too many cells, add to big list
+    if((double)(x1-x0+1)*(y1-y0+1) > MAX_CELLS) { _big.add(anEntry); anEntry._x0 = Integer.MAX_VALUE; return; }
+
+    // Add to cells
+    for(int y=y0;y<=y1;y++) for(int x=x0;x<=x1;x++) { Long key = key(x,y);
+        List <Entry> cell = _cells.get(key); if(cell==null) _cells.put(key, cell = new ArrayList(4));
+        cell.add(anEntry); }
+}
+
+/**
+ * Removes an entry from cells for its last bounds.
+ */
+private void removeEntry(Entry anEntry)
+{
+    if(anEntry._x0==Integer.MAX_VALUE) { _big.remove(anEntry); return; }
+    for(int y=anEntry._y0;y<=anEntry._y1;y++) for(int x=anEntry._x0;x<=anEntry._x1;x++) { Long key = key(x,y);
+        List <Entry> cell = _cells.get(key); if(cell==null) continue;
+        cell.remove(anEntry); if(cell.size()==0) _cells.remove(key); }
+}
+
+/**
+ * Returns the cell column or row for given coord.
+ */
+private int cell(double aValue)
+{
+    double c = Math.floor(aValue/_cellSize);
+    return c<-1e9? -1000000000 : c>1e9? 1000000000 : (int)c;
+}
+
+/**
+ * Returns the key for given cell column and row.
+ */
+private static Long key(int aX, int aY)  { return ((long)aX<<32) | (aY & 0xffffffffL); }
+
+/**
+ * Returns the bounds of given child in parent coords.
+ */
+private static Rect getBounds(View aView)
+{
+    if(aView.isLocalToParentSimple())
+        return new Rect(aView.getX() + aView.getTransX(), aView.getY() + aView.getTransY(), aView.getWidth(),
+            aView.getHeight());
+    return aView.localToParent(aView.getBoundsInside()).getBounds();
+}
+
+/**
+ * An entry for a child.
+ */
+private static class Entry {
+
+    // The view, its index in parent, bounds in parent coords and cell range
+    View _view; int _index; Rect _bounds; int _x0, _y0, _x1, _y1;
+
+    // The last query mark
+    int _mark;
+
+    /** Creates a new entry. */
+    Entry(View aView, int anIndex)  { _view = aView; _index = anIndex; }
+
+    /** Returns whether entry bounds intersect given rect (edges touching counts). */
+    boolean intersects(Rect aRect)
+    {
+        Rect b = _bounds;
+        return b.x<=aRect.getMaxX() && aRect.x<=b.getMaxX() && b.y<=aRect.getMaxY() && aRect.y<=b.getMaxY();
+    }
+}
+
+}
@@ -2,6 +2,7 @@
  * Copyright (c) 2010, ReportMill Software. All rights reserved.
  */
 package snap.view;
+import java.lang.ref.WeakReference;
 import java.text.DateFormat;
 import java.util.*;
 import snap.gfx.*;
@@ -39,6 +40,15 @@ public abstract class ViewOwner implements EventListener {
     // Map of RunOne runnables
     Map <String,Runnable>     _runOnceMap = new HashMap();
     
+    // Whether bindings with chained keys reuse last value until their observed model objects change
+    boolean                   _bindingTracking;
+    
+    // The tracked bindings for each observed model object
+    Map <SnapObject,List<Binding>>  _modelObjs = new IdentityHashMap();
+    
+    // The listener for observed model objects
+    PropChangeListener        _modelLsnr;
+    
     // The view environment
     ViewEnv                   _env = ViewEnv.getEnv();
     
@@ -374,8 +384,8 @@ protected void resetViewBindings(View aView)
     
     // Iterate over view children and recurse
     if(aView instanceof ParentView) { ParentView pview = (ParentView)aView;
-        for(View child : pview.getChildren())
-            resetViewBindings(child); }
+        for(int i=0, iMax=pview.getChildCount(); i<iMax; i++)
+            resetViewBindings(pview.getChild(i)); }
 }
 
 /**
@@ -401,13 +411,14 @@ protected Object getBindingViewValue(Binding aBinding)
 }
 
 /**
- * Sets the view value for the given binding from the key value.
+ * Sets the view value for the given binding from the key value (if different).
  */
 protected void setBindingViewValue(Binding aBinding)
 {
     View view = aBinding.getView(View.class); if(view==null) return;
     String pname = aBinding.getPropertyName();
     Object value = getBindingModelValue(aBinding);
+    if(value!=null && value.equals(view.getValue(pname))) return;
     view.setValue(pname, value);
 }
 
@@ -417,8 +428,7 @@ protected void setBindingViewValue(Binding aBinding)
 protected Object getBindingModelValue(Binding aBinding)
 {
     // Get binding key and value
-    String key = aBinding.getKey();
-    Object value = getModelValue(key);
+    Object value = getModelValue(aBinding);
     
     // If conversion key is present, do conversion
     String convKey = aBinding.getConversionKey();
@@ -445,6 +455,85 @@ protected void setBindingModelValue(Binding aBinding)
 {
     Object value = getBindingViewValue(aBinding); // Get value from view
     setModelValue(aBinding.getKey(), value); // Set value in model
+    aBinding._modelChanged = true; // In case model object doesn't fire change
+}
+
+/**
+ * Returns the model value for a binding key. For keys that chain through observable model objects (SnapObjects, like
+ * "Selection.Name"), the first key is always evaluated, but the rest of the chain is only evaluated again if the
+ * first key value is a different object or one of the model objects in the chain has fired a property change.
+ */
+protected Object getModelValue(Binding aBinding)
+{
+    // If not tracking or key isn't a chain of keys, just return value
+    String keys[] = _bindingTracking? aBinding.getKeyChainKeys() : null;
+    if(keys==null || keys.length<2) return getModelValue(aBinding.getKey());
+    
+    // Get first key value (if same as last time and no observed object has changed, return last value)
+    Object root = GFXEnv.getEnv().getKeyChainValue(this, keys[0]);
+    if(root!=null && root==aBinding._modelRoot && aBinding._modelObjs!=null && !aBinding._modelChanged)
+        return aBinding._modelValue;
+    
+    // Evaluate rest of chain and get model objects (if any object isn't observable, binding isn't tracked)
+    SnapObject objs[] = new SnapObject[keys.length-1]; Object value = root;
+    for(int i=1;i<keys.length && value!=null;i++) {
+        if(objs!=null && value instanceof SnapObject) objs[i-1] = (SnapObject)value; else objs = null;
+        value = GFXEnv.getEnv().getKeyChainValue(value, keys[i]);
+    }
+    
+    // If no value, just return normal value (might come from model values map); otherwise update tracking and return
+    if(value==null) { setBindingModelObjects(aBinding, null, null, null); return getModelValue(aBinding.getKey()); }
+    setBindingModelObjects(aBinding, root, objs, value);
+    return value;
+}
+
+/**
+ * Sets the observed model objects and value for a tracked binding (objects can be null to stop tracking).
+ */
+protected void setBindingModelObjects(Binding aBinding, Object aRoot, SnapObject theObjs[], Object aValue)
+{
+    // Remove binding from old objects (and stop observing objects with no more bindings)
+    if(aBinding._modelObjs!=null) for(SnapObject obj : aBinding._modelObjs) {
+        List <Binding> bindings = _modelObjs.get(obj); if(bindings==null) continue;
+        ListUtils.removeId(bindings, aBinding);
+        if(bindings.size()==0) { _modelObjs.remove(obj); obj.removePropChangeListener(getModelListener()); }
+    }
+    
+    // Set objects, value and root
+    aBinding._modelObjs = theObjs; aBinding._modelRoot = theObjs!=null? aRoot : null;
+    aBinding._modelValue = theObjs!=null? aValue : null; aBinding._modelChanged = false;
+    
+    // Add binding to new objects (and start observing new objects)
+    if(theObjs!=null) for(SnapObject obj : theObjs) {
+        List <Binding> bindings = _modelObjs.get(obj);
+        if(bindings==null) { _modelObjs.put(obj, bindings = new ArrayList()); obj.addPropChangeListener(getModelListener()); }
+        if(!ListUtils.containsId(bindings, aBinding)) bindings.add(aBinding);
+    }
+}
+
+/**
+ * Returns the listener for observed model objects (marks their bindings as changed). The listener only holds this owner
+ * weakly, so long-lived model objects don't keep discarded owners (and their UI) alive.
+ */
+protected PropChangeListener getModelListener()
+{
+    return _modelLsnr!=null? _modelLsnr : (_modelLsnr=new ModelListener(this));
+}
+
+/**
+ * Returns whether bindings with chained keys reuse last value until their observed model objects change.
+ */
+public boolean isBindingTracking()  { return _bindingTracking; }
+
+/**
+ * Sets whether bindings with chained keys reuse last value until their observed model objects change.
+ */
+public void setBindingTracking(boolean aValue)
+{
+    _bindingTracking = aValue; if(aValue) return;
+    for(List <Binding> bindings : _modelObjs.values()) for(Binding binding : bindings) binding._modelObjs = null;
+    for(SnapObject obj : _modelObjs.keySet()) obj.removePropChangeListener(getModelListener());
+    _modelObjs.clear();
 }
 
 /**
@@ -680,4 +769,25 @@ public void beep()  { ViewUtils.beep(); }
  */
 public ViewEnv getEnv()  { return _env; }
 
+/**
+ * A listener for observed model objects that holds owner weakly (and removes itself once owner is gone).
+ */
+private static class ModelListener implements PropChangeListener {
+
+    // The owner
+    WeakReference <ViewOwner> _owner;
+    
+    /** Creates a new ModelListener. */
+    ModelListener(ViewOwner anOwner)  { _owner = new WeakReference<ViewOwner>(anOwner); }
+    
+    /** Marks bindings of source object as changed (or stops listening if owner is gone). */
+    public void propertyChange(PropChange aPC)
+    {
+        ViewOwner owner = _owner.get();
+        if(owner==null) { ((SnapObject)aPC.getSource()).removePropChangeListener(this); return; }
+        List <Binding> bindings = owner._modelObjs.get(aPC.getSource());
+        if(bindings!=null) for(Binding binding : bindings) binding._modelChanged = true;
+    }
+}
+
 }
\ No newline at end of file
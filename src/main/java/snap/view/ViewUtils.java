@@ -177,7 +177,7 @@ public static View getChildAt(View aView, double aX, double aY)  { return getChi
 public static <T extends View> T getChildAt(View aView, double aX, double aY, Class <T> aClass)
 {
     ParentView par = aView instanceof ParentView? (ParentView)aView : null; if(par==null) return null;
-    List <View> children = par.getChildren();
+    List <View> children = par.getChildrenIn(new Rect(aX, aY, 0, 0));
     for(int i=children.size()-1; i>=0; i--) { View child = children.get(i); if(!child.isPickable()) continue;
         Point p = child.parentToLocal(aX, aY);
         if(child.contains(p.x,p.y) && (aClass==null || aClass.isInstance(child)))
@@ -212,7 +212,7 @@ public static View getDeepestChildAt(View aView, double aX, double aY)  { return
 public static <T extends View> T getDeepestChildAt(View aView, double aX, double aY, Class <T> aClass)
 {
     ParentView par = aView instanceof ParentView? (ParentView)aView : null; if(par==null) return null;
-    List <View> children = par.getChildren();
+    List <View> children = par.getChildrenIn(new Rect(aX, aY, 0, 0));
     for(int i=children.size()-1; i>=0; i--) { View child = children.get(i); if(!child.isPickable()) continue;
         Point p = child.parentToLocal(aX, aY);
         if(child.contains(p.x,p.y)) {
@@ -122,8 +122,13 @@ public boolean intersects(double aX, double aY, double aW, double aH)
  */
 public <T extends SnapActor> List <T> getActorsInRange(double aRadius, Class <T> aClass)
 {
+    // Get children near range (any child with center in range has bounds that intersect range rect)
+    Rect rect = new Rect(getCenterX() - aRadius, getCenterY() - aRadius, aRadius*2, aRadius*2);
+    List <View> children = getScene().getChildrenIn(rect);
+
+    // Add actors in range (in reverse order)
     List actors = new ArrayList();
-    for(int i=getScene().getChildren().size()-1; i>=0; i--) { View child = getScene().getChild(i);
+    for(int i=children.size()-1; i>=0; i--) { View child = children.get(i);
         if(aClass==null || aClass.isInstance(child)) {
             if(getDistance((SnapActor)child)<=aRadius)
                 actors.add(child); } }
@@ -108,7 +108,7 @@ public SnapActor getActor(String aName)
  */
 public <T extends SnapActor> T getActorAt(double aX, double aY, Class <T> aClass)
 {
-    for(View child : getChildren()) { if(!(child instanceof SnapActor)) continue;
+    for(View child : getChildrenIn(new Rect(aX, aY, 0, 0))) { if(!(child instanceof SnapActor)) continue;
         if(aClass==null || aClass.isInstance(child)) { Point point = child.parentToLocal(aX, aY);
             if(child.contains(point.getX(), point.getY()))
                 return (T)child; } }
@@ -121,7 +121,7 @@ public <T extends SnapActor> T getActorAt(double aX, double aY, Class <T> aClass
 public <T extends SnapActor> List<T> getActorsAt(double aX, double aY, Class <T> aClass)
 {
     List <T> actors = new ArrayList();
-    for(View child : getChildren()) { if(!(child instanceof SnapActor)) continue;
+    for(View child : getChildrenIn(new Rect(aX, aY, 0, 0))) { if(!(child instanceof SnapActor)) continue;
         if(aClass==null || aClass.isInstance(child)) { Point point = child.parentToLocal(aX, aY);
             if(child.contains(point.getX(), point.getY()))
                 actors.add((T)child); } }
@@ -16,7 +16,7 @@ public class FTPSite extends WebSite {
 /**
  * Returns the ftp client.
  */
-protected FTPClient getFTPClient()  { return _ftpClient!=null? _ftpClient : (_ftpClient=createFTPClient()); }
+protected synchronized FTPClient getFTPClient()  { return _ftpClient!=null? _ftpClient : (_ftpClient=createFTPClient()); }
 
 /**
  * Creates the FTPClient.
@@ -30,14 +30,14 @@ protected FTPClient createFTPClient()
     return ftp;
 }
 
-// Override to clear ftp client
-public void setUserName(String aName) { super.setUserName(aName); _ftpClient = null; }
-public void setPassword(String aPassword)  { super.setPassword(aPassword); _ftpClient = null; }
+// Override to clear ftp client (synchronized, like the client methods, since the single connection isn't thread-safe)
+public void setUserName(String aName) { super.setUserName(aName); synchronized(this) { _ftpClient = null; } }
+public void setPassword(String aPassword)  { super.setPassword(aPassword); synchronized(this) { _ftpClient = null; } }
 
 /**
  * Returns the file at path.
  */
-protected FileHeader getFileHeader(String aPath)
+protected synchronized FileHeader getFileHeader(String aPath)
 {
     // Make sure we're connected
     FTPClient ftpc = getFTPClient(); try { ftpc.setConnected(true); }
@@ -60,7 +60,7 @@ protected FileHeader getFileHeader(String aPath)
 /**
  * Returns files at path.
  */
-public List <FileHeader> getFileHeaders(String aPath)
+public synchronized List <FileHeader> getFileHeaders(String aPath)
 {
     // Make sure we're connected
     FTPClient ftpc = getFTPClient(); try { ftpc.setConnected(true); }
@@ -90,7 +90,7 @@ public List <FileHeader> getFileHeaders(String aPath)
 /**
  * Gets file bytes.
  */
-public byte[] getFileBytes(String aPath)
+public synchronized byte[] getFileBytes(String aPath)
 {
     // Make sure we're connected
     FTPClient ftpc = getFTPClient(); try { ftpc.setConnected(true); }
@@ -105,7 +105,7 @@ public byte[] getFileBytes(String aPath)
 /**
  * Writes file bytes.
  */
-public long saveFileImpl(WebFile aFile) throws Exception
+public synchronized long saveFileImpl(WebFile aFile) throws Exception
 {
     // Make sure we're connected
     FTPClient ftpc = getFTPClient(); try { ftpc.setConnected(true); }
@@ -130,7 +130,7 @@ public long saveFileImpl(WebFile aFile) throws Exception
 /**
  * Deletes file.
  */
-public void deleteFileImpl(WebFile aFile) throws Exception
+public synchronized void deleteFileImpl(WebFile aFile) throws Exception
 {
     // Make sure we're connected
     FTPClient ftpc = getFTPClient(); try { ftpc.setConnected(true); }
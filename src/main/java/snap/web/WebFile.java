@@ -37,8 +37,11 @@ public class WebFile extends SnapObject implements Comparable<WebFile> {
     // The file size
     long              _size;
     
-    // The file bytes
-    byte              _bytes[];
+    // The file bytes (can be released by site WebFileCache if they match site)
+    volatile byte     _bytes[];
+    
+    // The file cache entry for file bytes (if bytes are cached)
+    volatile WebFileCache.Entry _cacheEntry;
     
     // The directory files
     List <WebFile>    _files;
@@ -209,18 +212,28 @@ public boolean isBytesSet()  { return _bytes!=null; }
 /**
  * Returns the file bytes.
  */
-public synchronized byte[] getBytes()
+public byte[] getBytes()
 {
     // If already set, just return
-    if(_bytes!=null) return _bytes;
+    WebSite site = getSite();
+    byte bytes[] = _bytes; if(bytes!=null) { site.getFileCache().accessed(this); return bytes; }
     
-    // Set request for bytes for URL
-    WebSite site = getSite(); WebURL url = getURL();
-    WebResponse resp = site.getResponse(new WebRequest(url)); //getURL().getResponse();
-    if(resp.getCode()==WebResponse.OK) _exists = true;
-    if(resp.getException()!=null)
-        throw new ResponseException(resp);
-    return _bytes = resp.getBytes();
+    // Get bytes from site (synchronized, so only one thread loads file)
+    synchronized(this) {
+        bytes = _bytes; if(bytes!=null) return bytes;
+        
+        // Set request for bytes for URL
+        WebURL url = getURL();
+        WebResponse resp = site.getResponse(new WebRequest(url)); //getURL().getResponse();
+        if(resp.getCode()==WebResponse.OK) _exists = true;
+        if(resp.getException()!=null)
+            throw new ResponseException(resp);
+        _bytes = bytes = resp.getBytes();
+    }
+    
+    // Add to site file cache (outside file lock, since cache can release bytes of other files) and return
+    site.getFileCache().loaded(this, bytes);
+    return bytes;
 }
 
 /**
@@ -228,11 +241,24 @@ public synchronized byte[] getBytes()
  */
 public void setBytes(byte theBytes[])
 {
-    if(ArrayUtils.equals(theBytes, _bytes)) return;
-    firePropChange(Bytes_Prop, _bytes, _bytes = theBytes);
-    setSize(theBytes!=null? theBytes.length : 0); // Update size
+    // Set bytes under file lock (so file cache can't release them) and remove from cache, since they no longer match site
+    byte old[];
+    synchronized(this) {
+        if(ArrayUtils.equals(theBytes, _bytes)) return;
+        old = _bytes; _bytes = theBytes;
+        getSite().getFileCache().remove(this);
+    }
+    
+    // Fire prop change and update size
+    firePropChange(Bytes_Prop, old, theBytes);
+    setSize(theBytes!=null? theBytes.length : 0);
 }
 
+/**
+ * Releases given bytes if they are still the file bytes (called by file cache when bytes are evicted).
+ */
+protected synchronized void releaseBytes(byte theBytes[])  { if(_bytes==theBytes) _bytes = null; }
+
 /**
  * Returns whether files have been set/loaded for directory.
  */
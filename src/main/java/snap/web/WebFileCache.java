@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2010, ReportMill Software. All rights reserved.
+ */
+package snap.web;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache of loaded WebFile bytes. When total bytes exceed the max size, the bytes of the least recently
+ * used files are released (file headers and directory listings are kept) and are reloaded on next WebFile.getBytes().
+ *
+ * Only bytes that match the site are cached: bytes set with WebFile.setBytes() are kept until the file is saved.
+ * Sites use the shared cache unless given their own with WebSite.setFileCache().
+ */
+public class WebFileCache {
+
+    // The max size of cached bytes
+    long                            _maxSize;
+
+    // The current size of cached bytes
+    long                            _size;
+
+    // The cache entry for each cached file (by identity, since files for the same URL can be different instances)
+    Map <WebFile,Entry>             _files = new IdentityHashMap();
+
+    // The counts of misses, evictions and evicted bytes
+    long                            _missCount, _evictCount, _evictSize;
+    
+    // The count of hits (counted without lock, so cache hits don't serialize)
+    LongAdder                       _hitCount = new LongAdder();
+
+    // The shared cache
+    static WebFileCache             _shared;
+
+/**
+ * Creates a new WebFileCache for given max size in bytes.
+ */
+public WebFileCache(long aMaxSize)  { _maxSize = aMaxSize; }
+
+/**
+ * Returns the max size of cached bytes.
+ */
+public synchronized long getMaxSize()  { return _maxSize; }
+
+/**
+ * Sets the max size of cached bytes (releases bytes if needed).
+ */
+public void setMaxSize(long aValue)
+{
+    List <Entry> evicted; synchronized(this) { _maxSize = aValue; evicted = trim(); }
+    release(evicted);
+}
+
+/**
+ * Returns the current size of cached bytes.
+ */
+public synchronized long getSize()  { return _size; }
+
+/**
+ * Returns the number of files with cached bytes.
+ */
+public synchronized int getFileCount()  { return _files.size(); }
+
+/**
+ * Returns the number of times cached bytes were returned.
+ */
+public long getHitCount()  { return _hitCount.sum(); }
+
+/**
+ * Returns the number of times bytes were loaded from site.
+ */
+public synchronized long getMissCount()  { return _missCount; }
+
+/**
+ * Returns the number of times file bytes were released.
+ */
+public synchronized long getEvictionCount()  { return _evictCount; }
+
+/**
+ * Returns the total size of released bytes.
+ */
+public synchronized long getEvictionSize()  { return _evictSize; }
+
+/**
+ * Resets the hit, miss and eviction counts.
+ */
+public synchronized void resetCounts()  { _hitCount.reset(); _missCount = _evictCount = _evictSize = 0; }
+
+/**
+ * Called when file bytes are loaded from site (caller shouldn't hold a file lock, since other files can be released).
+ */
+public void loaded(WebFile aFile, byte theBytes[])
+{
+    synchronized(this) { _missCount++; }
+    add(aFile, theBytes);
+}
+
+/**
+ * Called when cached file bytes are returned (just marks file entry as used, without lock).
+ */
+public void accessed(WebFile aFile)
+{
+    Entry entry = aFile._cacheEntry;
+    if(entry!=null && entry._cache==this) { entry._time = System.nanoTime(); _hitCount.increment(); }
+}
+
+/**
+ * Adds file bytes to cache (releases least recently used bytes if needed).
+ */
+public void add(WebFile aFile, byte theBytes[])
+{
+    List <Entry> evicted;
+    synchronized(this) {
+        remove(aFile); if(theBytes==null) return;
+        Entry entry = new Entry(this, aFile, theBytes); _files.put(aFile, entry); aFile._cacheEntry = entry;
+        _size += theBytes.length;
+        evicted = trim();
+    }
+    release(evicted);
+}
+
+/**
+ * Removes file from cache (so its bytes won't be released).
+ */
+public synchronized void remove(WebFile aFile)
+{
+    Entry entry = _files.remove(aFile); if(entry==null) return;
+    _size -= entry._bytes.length;
+    if(aFile._cacheEntry==entry) aFile._cacheEntry = null;
+}
+
+/**
+ * Removes least recently used entries until size is within max size (most recent file is always kept) and returns
+ * them, so their bytes can be released outside cache lock.
+ */
+protected List <Entry> trim()
+{
+    // If within max size, just return
+    if(_size<=_maxSize || _files.size()<=1) return Collections.EMPTY_LIST;
+    
+    // Get entries in access order and remove oldest until size is within max size
+    List <Entry> entries = new ArrayList(_files.values()), evicted = new ArrayList();
+    Collections.sort(entries, (e1,e2) -> Long.compare(e1._time, e2._time));
+    for(int i=0, iMax=entries.size()-1; i<iMax && _size>_maxSize; i++) { Entry entry = entries.get(i);
+        _files.remove(entry._file); if(entry._file._cacheEntry==entry) entry._file._cacheEntry = null;
+        _size -= entry._bytes.length; _evictCount++; _evictSize += entry._bytes.length;
+        evicted.add(entry);
+    }
+    return evicted;
+}
+
+/**
+ * Releases the bytes of given evicted entries (under each file's lock, if file bytes are still the cached bytes).
+ */
+protected void release(List <Entry> theEntries)
+{
+    for(Entry entry : theEntries) entry._file.releaseBytes(entry._bytes);
+}
+
+/**
+ * Returns the shared cache (max size is an eighth of max memory, but at least 16MB).
+ */
+public static synchronized WebFileCache getShared()
+{
+    if(_shared!=null) return _shared;
+    long max = Math.max(Runtime.getRuntime().maxMemory()/8, 16*1024*1024);
+    return _shared = new WebFileCache(max);
+}
+
+/**
+ * Standard toString implementation.
+ */
+public synchronized String toString()
+{
+    return String.format("WebFileCache { Size:%d MaxSize:%d Files:%d Hits:%d Misses:%d Evictions:%d EvictedSize:%d }",
+        _size, _maxSize, _files.size(), getHitCount(), _missCount, _evictCount, _evictSize);
+}
+
+/**
+ * A cached file with its bytes and last access time.
+ */
+static class Entry {
+
+    // The cache, file and cached bytes
+    WebFileCache _cache; WebFile _file; byte _bytes[];
+    
+    // The last access time
+    volatile long _time = System.nanoTime();
+    
+    /** Creates a new entry. */
+    Entry(WebFileCache aCache, WebFile aFile, byte theBytes[])  { _cache = aCache; _file = aFile; _bytes = theBytes; }
+}
+
+}
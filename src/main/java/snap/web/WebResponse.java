@@ -178,6 +178,17 @@ public Throwable getException()  { return _exception; }
  */
 public void setException(Throwable aThrowable)  { _exception = aThrowable; }
 
+/**
+ * Returns a copy of this response for given request (for a request that waited on another request's response).
+ */
+public WebResponse copyForRequest(WebRequest aRequest)
+{
+    WebResponse copy = new WebResponse(); copy._request = aRequest;
+    copy._code = _code; copy._time = _time; copy._dataType = _dataType; copy._bytes = _bytes; copy._text = _text;
+    copy._fileHdr = _fileHdr; copy._files = _files; copy._exception = _exception;
+    return copy;
+}
+
 /**
  * Standard toString implementation.
  */
@@ -4,6 +4,7 @@
 package snap.web;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 import snap.data.DataType;
 import snap.util.*;
 
@@ -22,7 +23,10 @@ public abstract class WebSite extends SnapObject implements PropChangeListener {
     String                    _password;
     
     // The map of files previously vended by this data source
-    Map <String,WebFile>      _files = new HashMap();
+    Map <String,WebFile>      _files = new ConcurrentHashMap();
+    
+    // The HEAD/GET requests in progress (by type and URL), so concurrent requests for a URL share one response
+    Map <String,CompletableFuture<WebResponse>> _requests = new ConcurrentHashMap();
     
     // A WebSite that can be used for writing persistent support files
     WebSite                   _sandbox;
@@ -32,6 +36,15 @@ public abstract class WebSite extends SnapObject implements PropChangeListener {
     
     // The class loader for this WebSite
     WebClassLoader            _clsLdr;
+    
+    // The cache for file bytes (null for shared cache)
+    WebFileCache              _fileCache;
+    
+    // The number of shared requests the current thread is getting a response for (in any site)
+    static ThreadLocal <int[]> _reqDepth = ThreadLocal.withInitial(() -> new int[1]);
+    
+    // The shared executor for async requests (created on first use)
+    static volatile ExecutorService _executor;
 
 /**
  * Returns the URL.
@@ -99,14 +112,57 @@ public WebFile getRootDir()  { WebFile f = getFile("/"); return f!=null? f : cre
 public WebResponse getResponse(WebRequest aRequest)
 {
     switch(aRequest.getType())  {
-        case HEAD: return doHead(aRequest);
-        case GET: return doGet(aRequest);
+        case HEAD: case GET: return getResponseShared(aRequest);
         case PUT: return doPut(aRequest);
         case DELETE: return doDelete(aRequest);
     }
     return null;
 }
 
+/**
+ * Returns a response for a HEAD or GET request. If another thread is already getting a response for the same type
+ * and URL, this just waits for that response instead of making another request.
+ *
+ * Nested requests (a site getting its container file from parent site while getting a shared response) are never
+ * shared: a thread that holds a shared request never waits on another, so two threads can't wait on each other.
+ */
+protected WebResponse getResponseShared(WebRequest aRequest)
+{
+    // If thread is already getting a shared response, just do request
+    int depth[] = _reqDepth.get();
+    if(depth[0]>0)
+        return aRequest.getType()==WebRequest.Type.HEAD? doHead(aRequest) : doGet(aRequest);
+    
+    // Get key for request and add request (if request already in progress in another thread, wait for it)
+    String key = aRequest.getType() + " " + aRequest.getURL().getString();
+    CompletableFuture <WebResponse> req = new CompletableFuture(), other = _requests.putIfAbsent(key, req);
+    if(other!=null) {
+        try { return other.join().copyForRequest(aRequest); }
+        catch(CompletionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            throw e;
+        }
+    }
+    
+    // Do request, complete shared request and remove
+    depth[0]++;
+    try {
+        WebResponse resp = aRequest.getType()==WebRequest.Type.HEAD? doHead(aRequest) : doGet(aRequest);
+        req.complete(resp);
+        return resp;
+    }
+    catch(RuntimeException | Error e) { req.completeExceptionally(e); throw e; }
+    finally { depth[0]--; _requests.remove(key, req); }
+}
+
+/**
+ * Returns a response for a request in a background thread.
+ */
+public CompletableFuture <WebResponse> getResponseAsync(WebRequest aRequest)
+{
+    return CompletableFuture.supplyAsync(() -> getResponse(aRequest), getExecutor());
+}
+
 /**
  * Handles a head request.
  */
@@ -136,7 +192,7 @@ protected WebResponse doHead(WebRequest aRequest)
 /**
  * Handle a get request.
  */
-protected synchronized WebResponse doGet(WebRequest aRequest)
+protected WebResponse doGet(WebRequest aRequest)
 {
     // Handle file
     WebResponse resp = doHead(aRequest);
@@ -181,20 +237,20 @@ public WebFile createFile(String aPath, boolean isDir)  { return createFile(new
 /**
  * Returns a new file for given file header, regardless of whether it exists in the data source.
  */
-public synchronized WebFile createFile(FileHeader fileHdr)
+public WebFile createFile(FileHeader fileHdr)
 {
     // Get standardized path
     String path = PathUtils.getNormalized(fileHdr.getPath());
     
-    // Get cached file for path - if not found, create and put new file in cache and configure (synched get/put)
+    // Get cached file for path - if not found, create and put new file in cache and configure (atomic get/put)
     WebFile file = _files.get(path);
-    if(file==null) {
-        file = new WebFile(); file._path = path; file._dir = fileHdr.isDir(); file._site = this;
-        file._lastModTime = fileHdr.getLastModifiedTime(); file._size = fileHdr.getSize();
-        _files.put(path, file);
-        file.addPropChangeListener(this);
-        file.setDataType(DataType.getPathDataType(path));
-    }
+    if(file==null) file = _files.computeIfAbsent(path, p -> {
+        WebFile f = new WebFile(); f._path = p; f._dir = fileHdr.isDir(); f._site = this;
+        f._lastModTime = fileHdr.getLastModifiedTime(); f._size = fileHdr.getSize();
+        f.addPropChangeListener(this);
+        f.setDataType(DataType.getPathDataType(p));
+        return f;
+    });
     
     // Return file
     return file;
@@ -203,7 +259,7 @@ public synchronized WebFile createFile(FileHeader fileHdr)
 /**
  * Returns the individual file with the given path.
  */
-public synchronized WebFile getFile(String aPath) throws ResponseException
+public WebFile getFile(String aPath) throws ResponseException
 {
     // Get file from files cache
     String path = PathUtils.getNormalized(aPath);
@@ -231,6 +287,36 @@ public synchronized WebFile getFile(String aPath) throws ResponseException
     return file;
 }
 
+/**
+ * Returns the individual file with the given path, fetched in a background thread (completes with null if not found).
+ */
+public CompletableFuture <WebFile> getFileAsync(String aPath)
+{
+    // If file is cached, just return completed future
+    WebFile file = _files.get(PathUtils.getNormalized(aPath));
+    if(file!=null && file.getExists())
+        return CompletableFuture.completedFuture(file);
+    
+    // Return future for getFile in background
+    return CompletableFuture.supplyAsync(() -> getFile(aPath), getExecutor());
+}
+
+/**
+ * Returns the executor used for async requests.
+ */
+protected Executor getExecutor()
+{
+    if(_executor!=null) return _executor;
+    synchronized (WebSite.class) {
+        if(_executor!=null) return _executor;
+        int count = Math.max(4, Runtime.getRuntime().availableProcessors()*2);
+        ThreadPoolExecutor exec = new ThreadPoolExecutor(count, count, 30, TimeUnit.SECONDS, new LinkedBlockingQueue(),
+            r -> { Thread t = new Thread(r, "WebSite Loader"); t.setDaemon(true); return t; });
+        exec.allowCoreThreadTimeOut(true);
+        return _executor = exec;
+    }
+}
+
 /**
  * Save file.
  */
@@ -258,6 +344,11 @@ protected void saveFile(WebFile aFile) throws ResponseException
     
     // Set File.Exists
     aFile.setExists(true);
+    
+    // Since file bytes now match site, add to file cache
+    byte bytes[] = aFile._bytes;
+    if(aFile.isFile() && bytes!=null)
+        getFileCache().add(aFile, bytes);
 }
 
 /**
@@ -383,6 +474,16 @@ public synchronized void resetFile(WebFile aFile)
  */
 public synchronized void resetFiles()  { for(WebFile file : _files.values()) resetFile(file); }
 
+/**
+ * Returns the cache for loaded file bytes (the shared cache by default).
+ */
+public WebFileCache getFileCache()  { return _fileCache!=null? _fileCache : WebFileCache.getShared(); }
+
+/**
+ * Sets the cache for loaded file bytes.
+ */
+public void setFileCache(WebFileCache aCache)  { _fileCache = aCache; }
+
 /**
  * Returns a standard java.io.File, if available.
  */